@@ -0,0 +1,117 @@
+package universalfa;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the FA hot paths on a random complete FA of states x alphabetSize.
+    Stepping and lookup take one symbol per operation and whole-string runs are normalized to one character per operation,
+    so under '-prof gc' the gc.alloc.rate.norm column is bytes per character. displayTransitionTable is per call.
+    Run as 'java -jar target/benchmarks.jar AutomatonBenchmark -prof gc', sizes can be overridden with '-p states=...'. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AutomatonBenchmark
+{
+    static final int INPUT_LENGTH = 1 << 16; // Characters of the input, a power of two so stepping wraps with a mask
+
+    @Param({"100", "10000"})
+    public int states; // Number of states of the FA
+
+    @Param({"2", "26", "256"})
+    public int alphabetSize; // Number of symbols of the FA
+
+    FiniteAutomataMachine machine;
+    String input; // Random input over the alphabet
+    String[] symbols; // Characters of the input as strings, so NextState and checkSymbol are timed without creating them
+    PrintStream discard = new PrintStream(OutputStream.nullOutputStream()); // Takes the output of the printing paths
+    int state = 0; // State carried from one stepping operation to the next
+    int position = 0; // Next symbol of the stepping operations
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(42);
+        machine = BenchmarkMachines.randomMachine(states, alphabetSize, random);
+        input = BenchmarkMachines.randomInput(alphabetSize, INPUT_LENGTH, random);
+        symbols = new String[INPUT_LENGTH];
+        for (int i = 0; i < INPUT_LENGTH; i++)
+        {
+            symbols[i] = Character.toString(input.charAt(i));
+        }
+        machine.compile();
+    }
+
+    /** One NextState call, starting over from state 0 when the FA dies. */
+    @Benchmark
+    public int nextState()
+    {
+        int next = machine.NextState(state, symbols[position++ & (INPUT_LENGTH - 1)]);
+        state = next == CompiledAutomaton.NO_TRANSITION ? 0 : next;
+        return next;
+    }
+
+    /** One checkSymbol call. */
+    @Benchmark
+    public boolean checkSymbol()
+    {
+        return machine.checkSymbol(symbols[position++ & (INPUT_LENGTH - 1)]);
+    }
+
+    /** Whole-string acceptance, per character. */
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public boolean accepts()
+    {
+        return machine.accepts(input);
+    }
+
+    /** test(String), acceptance plus its printed verdict, per character. */
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public void test()
+    {
+        PrintStream console = System.out;
+        System.setOut(discard);
+        try
+        {
+            machine.test(input);
+        }
+        finally
+        {
+            System.setOut(console);
+        }
+    }
+
+    /** Sorting and range display of the whole transition table, with the output discarded. */
+    @Benchmark
+    public void displayTransitionTable()
+    {
+        PrintStream console = System.out;
+        System.setOut(discard);
+        try
+        {
+            machine.displayTransitionTable();
+        }
+        finally
+        {
+            System.setOut(console);
+        }
+    }
+}
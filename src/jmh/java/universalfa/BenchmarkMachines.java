@@ -0,0 +1,302 @@
+package universalfa;
+
+import java.util.*;
+
+/** Machines and inputs for the benchmarks, all over single-character symbols starting at '!' */
+class BenchmarkMachines
+{
+    static final int KEYWORD_LENGTH = 3; // Length of the keyword of keywordMachine and keywordSearch
+    static final double HOT_SHARE = 0.95; // Share of the transitions of skewedMachine that lead to a hot state
+
+    /** Builds an FA where every state has a random destination on every symbol.
+        @param numberOfStates  Number of states.
+        @param alphabetSize  Number of symbols, single characters starting at '!'.
+        @param random  The random source.
+        @return  The FA. */
+    static FiniteAutomataMachine randomMachine(int numberOfStates, int alphabetSize, Random random)
+    {
+        Alphabet alpha = new Alphabet(alphabetSize);
+        for (int i = 0; i < alphabetSize; i++)
+        {
+            alpha.addSymbol(Character.toString((char) ('!' + i)));
+        }
+        States sta = new States(numberOfStates);
+        for (int i = 0; i < numberOfStates; i++)
+        {
+            if (random.nextBoolean())
+            {
+                sta.setFinalState(i);
+            }
+        }
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            for (int i = 0; i < alphabetSize; i++)
+            {
+                machine.addTransition(Integer.toString(state), Character.toString((char) ('!' + i)), Integer.toString(random.nextInt(numberOfStates)));
+            }
+        }
+        return machine;
+    }
+
+    /** Builds an NFA that accepts the strings over the symbols of randomMachine with a symbol of the first half
+        of the alphabet at a given distance from the end.
+        @param depth  Number of symbols after the marked one.
+        @param alphabetSize  Number of symbols, single characters starting at '!'.
+        @return  The FA. */
+    static FiniteAutomataMachine blowupMachine(int depth, int alphabetSize)
+    {
+        Alphabet alpha = new Alphabet(alphabetSize);
+        for (int i = 0; i < alphabetSize; i++)
+        {
+            alpha.addSymbol(Character.toString((char) ('!' + i)));
+        }
+        States sta = new States(depth + 2);
+        sta.setFinalState(depth + 1);
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        for (int i = 0; i < (alphabetSize + 1) / 2; i++)
+        {
+            machine.addTransition("0", Character.toString((char) ('!' + i)), "1");
+        }
+        for (int state = 0; state <= depth; state++)
+        {
+            for (int i = 0; i < alphabetSize; i++)
+            {
+                machine.addTransition(Integer.toString(state), Character.toString((char) ('!' + i)), Integer.toString(state == 0 ? 0 : state + 1));
+            }
+        }
+        return machine;
+    }
+
+    /** Builds an FA that accepts the strings over the symbols of randomMachine that contain a random keyword.
+        @param alphabetSize  Number of symbols, single characters starting at '!'.
+        @param random  The random source.
+        @return  The FA. */
+    static FiniteAutomataMachine keywordMachine(int alphabetSize, Random random)
+    {
+        String any = "[" + escape('!') + "-" + escape((char) ('!' + alphabetSize - 1)) + "]*";
+        StringBuilder pattern = new StringBuilder(any);
+        for (int i = 0; i < KEYWORD_LENGTH; i++)
+        {
+            pattern.append(escape((char) ('!' + random.nextInt(alphabetSize))));
+        }
+        return FiniteAutomataMachine.fromRegex(pattern.append(any).toString());
+    }
+
+    /** Builds an FA that accepts a random keyword over the symbols of randomMachine, to be searched for.
+        @param alphabetSize  Number of symbols, single characters starting at '!'.
+        @param random  The random source.
+        @return  The FA. */
+    static FiniteAutomataMachine keywordSearch(int alphabetSize, Random random)
+    {
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < KEYWORD_LENGTH; i++)
+        {
+            pattern.append(escape((char) ('!' + random.nextInt(alphabetSize))));
+        }
+        return FiniteAutomataMachine.fromRegex(pattern.toString());
+    }
+
+    /** Builds an FA that reads identifiers, numbers, runs of spaces and single operators, tagged 0 to 3 in that order.
+        @return  The FA. */
+    static FiniteAutomataMachine lexerMachine()
+    {
+        String letters = "abcdefghijklmnopqrstuvwxyz";
+        String digits = "0123456789";
+        String operators = "+-*/=();";
+        String symbols = letters + digits + " " + operators;
+        Alphabet alpha = new Alphabet(symbols.length());
+        for (int i = 0; i < symbols.length(); i++)
+        {
+            alpha.addSymbol(Character.toString(symbols.charAt(i)));
+        }
+        States sta = new States(5);
+        for (int type = 0; type < 4; type++) // State type + 1 ends a token of that type
+        {
+            sta.setTokenType(type + 1, type);
+        }
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        for (int i = 0; i < symbols.length(); i++)
+        {
+            String symbol = Character.toString(symbols.charAt(i));
+            if (letters.contains(symbol))
+            {
+                machine.addTransition("0", symbol, "1");
+            }
+            if (letters.contains(symbol) || digits.contains(symbol))
+            {
+                machine.addTransition("1", symbol, "1");
+            }
+            if (digits.contains(symbol))
+            {
+                machine.addTransition("0", symbol, "2");
+                machine.addTransition("2", symbol, "2");
+            }
+            if (symbol.equals(" "))
+            {
+                machine.addTransition("0", symbol, "3");
+                machine.addTransition("3", symbol, "3");
+            }
+            if (operators.contains(symbol))
+            {
+                machine.addTransition("0", symbol, "4");
+            }
+        }
+        return machine;
+    }
+
+    /** Builds source text for lexerMachine, random tokens of one to eight characters.
+        @param length  Number of characters.
+        @param random  The random source.
+        @return  The text. */
+    static String lexerInput(int length, Random random)
+    {
+        StringBuilder source = new StringBuilder(length + 8);
+        while (source.length() < length)
+        {
+            int size = 1 + random.nextInt(8);
+            switch (random.nextInt(4))
+            {
+                case 0:
+                    for (int i = 0; i < size; i++)
+                    {
+                        source.append((char) ('a' + random.nextInt(26)));
+                    }
+                    break;
+                case 1:
+                    for (int i = 0; i < size; i++)
+                    {
+                        source.append((char) ('0' + random.nextInt(10)));
+                    }
+                    break;
+                case 2:
+                    source.append("+-*/=();".charAt(random.nextInt(8)));
+                    break;
+                default:
+                    break;
+            }
+            source.append(' ');
+        }
+        return source.substring(0, length);
+    }
+
+    /** Escapes a character for a regular expression, letters and digits stand for themselves. */
+    static String escape(char c)
+    {
+        return Character.isLetterOrDigit(c) ? Character.toString(c) : "\\" + c;
+    }
+
+    /** Builds an FA where every state has a random destination on a few random symbols.
+        @param numberOfStates  Number of states.
+        @param alphabetSize  Number of symbols, single characters starting at '!'.
+        @param outDegree  Number of transitions of each state, at most alphabetSize.
+        @param random  The random source.
+        @return  The FA. */
+    static FiniteAutomataMachine sparseMachine(int numberOfStates, int alphabetSize, int outDegree, Random random)
+    {
+        Alphabet alpha = new Alphabet(alphabetSize);
+        for (int i = 0; i < alphabetSize; i++)
+        {
+            alpha.addSymbol(Character.toString((char) ('!' + i)));
+        }
+        States sta = new States(numberOfStates);
+        for (int i = 0; i < numberOfStates; i++)
+        {
+            if (random.nextBoolean())
+            {
+                sta.setFinalState(i);
+            }
+        }
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            int first = random.nextInt(alphabetSize); // Consecutive symbols, so each state's symbols are distinct
+            for (int i = 0; i < outDegree; i++)
+            {
+                char symbol = (char) ('!' + (first + i) % alphabetSize);
+                machine.addTransition(Integer.toString(state), Character.toString(symbol), Integer.toString(random.nextInt(numberOfStates)));
+            }
+        }
+        return machine;
+    }
+
+    /** Builds a complete FA where most transitions lead to a few hot states, numbered at random among the others.
+        @param numberOfStates  Number of states.
+        @param hotStates  Number of hot states.
+        @param alphabetSize  Number of symbols, single characters starting at '!'.
+        @param random  The random source.
+        @return  The FA. */
+    static FiniteAutomataMachine skewedMachine(int numberOfStates, int hotStates, int alphabetSize, Random random)
+    {
+        int[] hot = new int[hotStates];
+        for (int i = 0; i < hotStates; i++)
+        {
+            hot[i] = random.nextInt(numberOfStates);
+        }
+        hot[0] = 0; // The initial state is hot
+        AutomatonBuilder builder = new AutomatonBuilder(new int[] {'!', '!' + alphabetSize - 1}, new String[0]);
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            builder.addState(random.nextBoolean());
+        }
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            for (int i = 0; i < alphabetSize; i++)
+            {
+                int target = random.nextDouble() < HOT_SHARE ? hot[random.nextInt(hotStates)] : random.nextInt(numberOfStates);
+                builder.addTransition(state, '!' + i, '!' + i, target);
+            }
+        }
+        return new FiniteAutomataMachine(builder);
+    }
+
+    /** Steps a machine over a string, starting over from state 0 whenever it dies.
+        @return  The last state, so the work cannot be dropped. */
+    static int step(CompiledAutomaton machine, String input)
+    {
+        int state = 0;
+        for (int i = 0; i < input.length(); i++)
+        {
+            state = machine.nextState(state, machine.charColumns[input.charAt(i)]);
+            if (state == CompiledAutomaton.NO_TRANSITION)
+            {
+                state = 0;
+            }
+        }
+        return state;
+    }
+
+    /** Builds a string by following random transitions from state 0, so a run never dies on it. */
+    static String randomWalk(CompiledAutomaton machine, int length, Random random)
+    {
+        StringBuilder input = new StringBuilder(length);
+        int state = 0;
+        int[] row = new int[machine.alphabetSize];
+        while (input.length() < length)
+        {
+            int count = 0;
+            for (int column = 0; column < machine.alphabetSize; column++)
+            {
+                if (machine.nextState(state, column) != CompiledAutomaton.NO_TRANSITION)
+                {
+                    row[count++] = column;
+                }
+            }
+            int column = row[random.nextInt(count)];
+            input.append(machine.symbolMap.classFirst[column]);
+            state = machine.nextState(state, column);
+        }
+        return input.toString();
+    }
+
+    /** Builds a random string over the symbols of randomMachine. */
+    static String randomInput(int alphabetSize, int length, Random random)
+    {
+        StringBuilder input = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            input.append((char) ('!' + random.nextInt(alphabetSize)));
+        }
+        return input.toString();
+    }
+}
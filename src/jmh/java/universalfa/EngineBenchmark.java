@@ -0,0 +1,292 @@
+package universalfa;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks that compare the evaluation engines on machines built for them, per character of input.
+    Each group shares a state, so its benchmarks run on the same machines and input.
+    Run as 'java -jar target/benchmarks.jar EngineBenchmark -prof gc'. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EngineBenchmark
+{
+    static final int INPUT_LENGTH = 1 << 20; // Characters of every input
+    static final int ALPHABET_SIZE = 26; // Symbols of every machine but the lexer
+    static final int SHORT_LENGTH = 16; // Length of the strings of the metrics benchmarks
+    static final int SPARSE_STATES = 1 << 14; // States of the sparse machine
+    static final int SPARSE_OUT_DEGREE = 3; // Transitions per state of the sparse machine
+    static final int LAYOUT_STATES = 1 << 18; // States of the machine of the layout benchmarks
+    static final int LAYOUT_HOT_STATES = 1 << 12; // States most transitions of that machine lead to
+    static final int SET_SIZE = 16; // Machines evaluated together by the machine set benchmarks
+    static final int BLOWUP_DEPTH = 16; // Distance from the end of the marked symbols in the NFA whose DFA has 2^(depth+1) states
+
+    /** A machine with few transitions per state, as sparse rows and as a dense matrix of the same cells */
+    @State(Scope.Thread)
+    public static class Sparse
+    {
+        CompiledAutomaton sparse;
+        CompiledAutomaton dense;
+        String walk; // Follows transitions, so a run never dies on it
+
+        @Setup
+        public void setUp()
+        {
+            Random random = new Random(42);
+            sparse = BenchmarkMachines.sparseMachine(SPARSE_STATES, ALPHABET_SIZE, SPARSE_OUT_DEGREE, random).compile();
+            int[] matrix = new int[SPARSE_STATES * sparse.alphabetSize];
+            for (int state = 0; state < SPARSE_STATES; state++)
+            {
+                for (int column = 0; column < sparse.alphabetSize; column++)
+                {
+                    matrix[state * sparse.alphabetSize + column] = sparse.nextState(state, column);
+                }
+            }
+            dense = new CompiledAutomaton(sparse.symbolMap, sparse.finalStates, matrix);
+            walk = BenchmarkMachines.randomWalk(sparse, INPUT_LENGTH, random);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public boolean sparseStep(Sparse s)
+    {
+        return s.sparse.accepts(s.walk);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public boolean denseStep(Sparse s)
+    {
+        return s.dense.accepts(s.walk);
+    }
+
+    /** A large machine whose input mostly stays in a few scattered hot states, before and after a profiled renumbering */
+    @State(Scope.Thread)
+    public static class Layout
+    {
+        CompiledAutomaton scattered;
+        CompiledAutomaton packed;
+        String input;
+
+        @Setup
+        public void setUp()
+        {
+            Random random = new Random(42);
+            FiniteAutomataMachine skewed = BenchmarkMachines.skewedMachine(LAYOUT_STATES, LAYOUT_HOT_STATES, ALPHABET_SIZE, random);
+            String sample = BenchmarkMachines.randomInput(ALPHABET_SIZE, INPUT_LENGTH, random);
+            scattered = skewed.compile();
+            packed = skewed.relayout(skewed.profile(Collections.singletonList(sample))).compile();
+            input = BenchmarkMachines.randomInput(ALPHABET_SIZE, INPUT_LENGTH, random);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public int originalLayout(Layout s)
+    {
+        return BenchmarkMachines.step(s.scattered, s.input);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public int profiledLayout(Layout s)
+    {
+        return BenchmarkMachines.step(s.packed, s.input);
+    }
+
+    /** Several keyword machines over the same input, one at a time and in one pass */
+    @State(Scope.Thread)
+    public static class Rules
+    {
+        List<FiniteAutomataMachine> rules = new ArrayList<FiniteAutomataMachine>();
+        MachineSet vectorSet;
+        MachineSet productSet;
+        boolean[] results = new boolean[SET_SIZE];
+        String input;
+
+        @Setup
+        public void setUp()
+        {
+            Random random = new Random(42);
+            for (int i = 0; i < SET_SIZE; i++)
+            {
+                rules.add(BenchmarkMachines.keywordMachine(ALPHABET_SIZE, random));
+            }
+            vectorSet = new MachineSet(rules);
+            productSet = new MachineSet(rules);
+            productSet.setProduct(64L << 20);
+            input = BenchmarkMachines.randomInput(ALPHABET_SIZE, INPUT_LENGTH, random);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public int separateMachines(Rules s)
+    {
+        int accepted = 0;
+        for (FiniteAutomataMachine rule: s.rules)
+        {
+            accepted += rule.accepts(s.input) ? 1 : 0;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public int machineSetVector(Rules s)
+    {
+        return s.vectorSet.accepts(s.input, s.results);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public int machineSetProduct(Rules s)
+    {
+        return s.productSet.accepts(s.input, s.results);
+    }
+
+    /** An NFA whose DFA blows up, evaluated through the DFA state cache and bit-parallel */
+    @State(Scope.Thread)
+    public static class Blowup
+    {
+        FiniteAutomataMachine cached;
+        FiniteAutomataMachine bitParallel;
+        String input;
+
+        @Setup
+        public void setUp()
+        {
+            cached = BenchmarkMachines.blowupMachine(BLOWUP_DEPTH, ALPHABET_SIZE);
+            cached.setSubsetBudget(1 << (BLOWUP_DEPTH + 1));
+            bitParallel = BenchmarkMachines.blowupMachine(BLOWUP_DEPTH, ALPHABET_SIZE);
+            bitParallel.setSubsetBudget(0);
+            input = BenchmarkMachines.randomInput(ALPHABET_SIZE, INPUT_LENGTH, new Random(42));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public boolean nfaStateCache(Blowup s)
+    {
+        return s.cached.accepts(s.input);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public boolean nfaBitParallel(Blowup s)
+    {
+        return s.bitParallel.accepts(s.input);
+    }
+
+    /** Matches of one keyword anywhere in the input */
+    @State(Scope.Thread)
+    public static class Search
+    {
+        FiniteAutomataMachine keyword;
+        long[] matches = new long[1 << 16];
+        long lastEnd; // Written by the listener, so the reported matches cannot be dropped
+        MatchListener listener = new MatchListener()
+        {
+            public void match(int start, int end)
+            {
+                lastEnd = end;
+            }
+        };
+        String input;
+
+        @Setup
+        public void setUp()
+        {
+            Random random = new Random(42);
+            keyword = BenchmarkMachines.keywordSearch(ALPHABET_SIZE, random);
+            input = BenchmarkMachines.randomInput(ALPHABET_SIZE, INPUT_LENGTH, random);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public int searchAll(Search s)
+    {
+        return s.keyword.findAll(s.input, s.listener);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public int searchLeftmostLongest(Search s)
+    {
+        return s.keyword.findLeftmostLongest(s.input, s.matches);
+    }
+
+    /** Identifiers, numbers, spaces and operators split by maximal munch */
+    @State(Scope.Thread)
+    public static class Lexer
+    {
+        FiniteAutomataMachine tokenizer;
+        TokenBuffer tokens = new TokenBuffer();
+        String source;
+
+        @Setup
+        public void setUp()
+        {
+            tokenizer = BenchmarkMachines.lexerMachine();
+            source = BenchmarkMachines.lexerInput(INPUT_LENGTH, new Random(42));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public int tokenize(Lexer s)
+    {
+        s.tokens.clear();
+        return s.tokenizer.tokenize(s.source, s.tokens);
+    }
+
+    /** Short strings with metrics off and on, the overhead is per string */
+    @State(Scope.Thread)
+    public static class Metrics
+    {
+        @Param({"false", "true"})
+        public boolean metrics;
+
+        FiniteAutomataMachine machine;
+        List<String> inputs = new ArrayList<String>();
+        boolean[] results;
+
+        @Setup
+        public void setUp()
+        {
+            Random random = new Random(42);
+            machine = BenchmarkMachines.randomMachine(1000, ALPHABET_SIZE, random);
+            String input = BenchmarkMachines.randomInput(ALPHABET_SIZE, INPUT_LENGTH, random);
+            for (int i = 0; i < INPUT_LENGTH; i += SHORT_LENGTH)
+            {
+                inputs.add(input.substring(i, i + SHORT_LENGTH));
+            }
+            results = new boolean[inputs.size()];
+            machine.setMetrics(metrics ? new EvaluationMetrics() : null);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUT_LENGTH)
+    public boolean acceptAllShort(Metrics s)
+    {
+        s.machine.acceptAll(s.inputs, s.results);
+        return s.results[0];
+    }
+}
@@ -0,0 +1,88 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that holds the alphabet of the FA */
+class Alphabet
+{
+    String[] alphabet; // Array for storing user-inputted symbols
+    int numberOfSymbols = 0; // Number of symbols that is in the array
+    int[] ranges = new int[0]; // Character ranges as first, last pairs, each kept as one entry instead of a symbol per character
+    int numberOfRanges = 0; // Number of pairs in the ranges array
+
+    /** Constructor with a given size */
+    Alphabet(int alphabetSize)
+    {
+        alphabet = new String[alphabetSize];
+    }
+
+    /** Copy constuctor */
+    Alphabet(Alphabet alpha)
+    {
+        this.alphabet = Arrays.copyOf(alpha.alphabet, alpha.getNumberOfSymbols());
+        this.numberOfSymbols = alpha.getNumberOfSymbols();
+        this.ranges = Arrays.copyOf(alpha.ranges, alpha.ranges.length);
+        this.numberOfRanges = alpha.numberOfRanges;
+    }
+
+    /** Adds a symbol into the alphabet array.
+        @param s  A symbol to be added. */
+    public void addSymbol(String s)
+    {
+        if (isFull())
+        {
+            increaseCapacity();
+        }
+        alphabet[numberOfSymbols] = s;
+        numberOfSymbols++;
+    }
+
+    /** Adds every character from first to last into the alphabet as one range.
+        @param first  The first character of the range.
+        @param last  The last character of the range. */
+    public void addRange(char first, char last)
+    {
+        if (2 * numberOfRanges == ranges.length)
+        {
+            ranges = Arrays.copyOf(ranges, Math.max(2, 2 * ranges.length));
+        }
+        ranges[2 * numberOfRanges] = first;
+        ranges[2 * numberOfRanges + 1] = last;
+        numberOfRanges++;
+    }
+
+    /** Checks if the alphabet array is full.
+        @return  True if array is full. */
+    private boolean isFull()
+    {
+        return numberOfSymbols == alphabet.length;
+    }
+
+    /** Increases the size of the alphabet array to add more symbols if needed. */
+    private void increaseCapacity()
+    {
+        int newLength = 1 + alphabet.length;
+        alphabet = Arrays.copyOf(alphabet, newLength);
+    }
+
+    /** Retrieves the number of symbols in the alphabet array.
+        @return  Number of symbols. */
+    public int getNumberOfSymbols()
+    {
+        return alphabet.length;
+    }
+
+    /** Retrieves the alphabet array.
+        @return  Alphabet array. */
+    public String[] getArray()
+    {
+        return alphabet;
+    }
+
+    /** Retrieves the character ranges.
+        @return  Array of first, last pairs, one per range. */
+    public int[] getRanges()
+    {
+        return Arrays.copyOf(ranges, 2 * numberOfRanges);
+    }
+}
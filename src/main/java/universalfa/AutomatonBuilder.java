@@ -0,0 +1,306 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that builds an FA incrementally, with its transitions in growable primitive arrays.
+    Each transition is one (source, first, last, destination) entry, a range of characters staying one entry.
+    Appends are amortised constant time and a repeat of a stored entry is dropped on insert through a hash
+    index, so a large FA builds in linear time with no limit on its size. build() freezes what has been
+    added so far into an immutable compiled machine, the builder can go on afterwards. */
+class AutomatonBuilder
+{
+    final int[] alphabetRanges; // Characters of the alphabet as sorted, disjoint first, last pairs
+    final String[] longSymbols; // Alphabet symbols longer than one character, in sorted order
+    boolean[] finalStates = new boolean[16]; // True if final state, grows with the states
+    int numberOfStates = 0;
+    int[] from = new int[16]; // Entry i goes from from[i] to to[i] on the characters first[i] to last[i]
+    int[] first = new int[16]; // EPSILON_LABEL for an epsilon transition, -2 - i for longer symbol i
+    int[] last = new int[16];
+    int[] to = new int[16];
+    int numberOfEntries = 0;
+    private int[] slots = new int[32]; // Hash index of the entries, entry + 1 per slot and 0 if empty, at most half full
+
+    /** Constructor with the alphabet, sorted and disjoint character ranges and sorted longer symbols */
+    AutomatonBuilder(int[] alphabetRanges, String[] longSymbols)
+    {
+        this.alphabetRanges = alphabetRanges;
+        this.longSymbols = longSymbols;
+    }
+
+    /** Adds a state, numbered after the ones before it.
+        @param isFinal  True for a final state.
+        @return  The new state. */
+    public int addState(boolean isFinal)
+    {
+        if (numberOfStates == finalStates.length)
+        {
+            finalStates = Arrays.copyOf(finalStates, 2 * numberOfStates);
+        }
+        finalStates[numberOfStates] = isFinal;
+        return numberOfStates++;
+    }
+
+    /** Checks if a state is a final state.
+        @param state  The state.
+        @return  True if final state. */
+    public boolean isFinal(int state)
+    {
+        return finalStates[state];
+    }
+
+    /** Adds a transition on a symbol of the alphabet, or on EPSILON.
+        @param fromState  A source state.
+        @param symbol  The symbol.
+        @param toState  A destination state.
+        @return  True if the transition is new, false if it was already added.
+        @throws IllegalArgumentException  If a state or the symbol does not exist. */
+    public boolean addTransition(int fromState, String symbol, int toState)
+    {
+        if (symbol.equals(FiniteAutomataMachine.EPSILON))
+        {
+            return addTransition(fromState, FiniteAutomataMachine.EPSILON_LABEL, FiniteAutomataMachine.EPSILON_LABEL, toState);
+        }
+        if (symbol.length() == 1)
+        {
+            return addTransition(fromState, symbol.charAt(0), symbol.charAt(0), toState);
+        }
+        int index = Arrays.binarySearch(longSymbols, symbol);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("Symbol '" + symbol + "' does not exist");
+        }
+        return addTransition(fromState, -2 - index, -2 - index, toState);
+    }
+
+    /** Adds a transition on the characters first to last, or on a label of an epsilon or a longer symbol.
+        @param fromState  A source state.
+        @param first  The first character, EPSILON_LABEL, or -2 - i for longer symbol i.
+        @param last  The last character, the same as first for a label.
+        @param toState  A destination state.
+        @return  True if the transition is new, false if it was already added.
+        @throws IllegalArgumentException  If a state does not exist, or the characters are not all in one range of the alphabet. */
+    public boolean addTransition(int fromState, int first, int last, int toState)
+    {
+        checkState(fromState);
+        checkState(toState);
+        if (first >= 0)
+        {
+            int range = SymbolMap.findRange(alphabetRanges, first);
+            if (range == -1 || last < first || last > alphabetRanges[2 * range + 1])
+            {
+                String symbols = (char) first + (first == last ? "" : "-" + (char) last);
+                throw new IllegalArgumentException((first == last ? "Symbol '" + symbols + "' does" : "Symbols '" + symbols + "' do") + " not exist");
+            }
+        }
+        else if (last != first || first < -1 - longSymbols.length)
+        {
+            throw new IllegalArgumentException("Transition label " + first + " does not exist");
+        }
+        int slot = find(fromState, first, last, toState);
+        if (slots[slot] != 0) // Repeat of a stored entry
+        {
+            return false;
+        }
+        if (numberOfEntries == from.length)
+        {
+            int newLength = 2 * numberOfEntries;
+            from = Arrays.copyOf(from, newLength);
+            this.first = Arrays.copyOf(this.first, newLength);
+            this.last = Arrays.copyOf(this.last, newLength);
+            to = Arrays.copyOf(to, newLength);
+        }
+        from[numberOfEntries] = fromState;
+        this.first[numberOfEntries] = first;
+        this.last[numberOfEntries] = last;
+        to[numberOfEntries] = toState;
+        slots[slot] = ++numberOfEntries;
+        if (2 * numberOfEntries > slots.length)
+        {
+            rehash();
+        }
+        return true;
+    }
+
+    /** Throws if a state does not exist. */
+    private void checkState(int state)
+    {
+        if (state < 0 || state >= numberOfStates)
+        {
+            throw new IllegalArgumentException("State '" + state + "' does not exist");
+        }
+    }
+
+    /** Finds the slot holding an entry, or the empty slot where it goes, by linear probing. */
+    private int find(int fromState, int first, int last, int toState)
+    {
+        int hash = ((fromState * 31 + first) * 31 + last) * 31 + toState;
+        hash *= 0x9E3779B9; // Spreads the bits, the low ones pick the slot
+        int mask = slots.length - 1;
+        for (int slot = (hash ^ hash >>> 16) & mask; ; slot = (slot + 1) & mask)
+        {
+            int entry = slots[slot] - 1;
+            if (entry == -1 || (from[entry] == fromState && this.first[entry] == first && this.last[entry] == last && to[entry] == toState))
+            {
+                return slot;
+            }
+        }
+    }
+
+    /** Doubles the hash index and puts every entry back. */
+    private void rehash()
+    {
+        slots = new int[2 * slots.length];
+        for (int entry = 0; entry < numberOfEntries; entry++)
+        {
+            slots[find(from[entry], first[entry], last[entry], to[entry])] = entry + 1;
+        }
+    }
+
+    /** Retrieves the number of stored entries.
+        @return  The number of entries, a range of characters counting once. */
+    public int getNumberOfEntries()
+    {
+        return numberOfEntries;
+    }
+
+    /** Freezes the transitions added so far into a compiled machine.
+        A nondeterministic FA is determinized by subset construction.
+        @return  The compiled machine, later additions to the builder do not change it.
+        @throws IllegalStateException  If determinization needs more than DETERMINIZE_STATE_LIMIT states. */
+    public CompiledAutomaton build()
+    {
+        SymbolMap symbolMap = classes();
+        CompiledAutomaton machine = buildDeterministic(symbolMap);
+        if (machine == null)
+        {
+            machine = buildNfa(symbolMap).determinize(FiniteAutomataMachine.DETERMINIZE_STATE_LIMIT);
+        }
+        return machine;
+    }
+
+    /** Builds the symbol lookup, the columns are the character classes cut out by the transition ranges.
+        @return  The symbol lookup. */
+    SymbolMap classes()
+    {
+        int[] cuts = new int[2 * numberOfEntries];
+        int numberOfCuts = 0;
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            if (first[i] >= 0)
+            {
+                cuts[2 * numberOfCuts] = first[i];
+                cuts[2 * numberOfCuts + 1] = last[i];
+                numberOfCuts++;
+            }
+        }
+        return SymbolMap.split(alphabetRanges, alphabetRanges.length / 2, cuts, numberOfCuts, longSymbols);
+    }
+
+    /** Builds the matrix over the columns of a symbol lookup, a range fills one cell per class.
+        A large matrix with few filled cells is built as sparse rows without allocating the dense one.
+        @param symbolMap  The symbol lookup from classes().
+        @return  The compiled machine, or null if there is an epsilon transition or a cell has more than one destination. */
+    CompiledAutomaton buildDeterministic(SymbolMap symbolMap)
+    {
+        int alphabetSize = symbolMap.size();
+        if (numberOfStates == 0) // Empty language, a single non-final state is kept as the initial state
+        {
+            int[] matrix = new int[alphabetSize];
+            Arrays.fill(matrix, CompiledAutomaton.NO_TRANSITION);
+            return new CompiledAutomaton(symbolMap, new boolean[1], matrix);
+        }
+        boolean[] finalStates = Arrays.copyOf(this.finalStates, numberOfStates);
+        int numberOfCells = 0; // Cells the transitions cover, repeats included
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            if (first[i] == FiniteAutomataMachine.EPSILON_LABEL)
+            {
+                return null;
+            }
+            numberOfCells += lastColumn(symbolMap, i) - firstColumn(symbolMap, i) + 1;
+        }
+        if (CompiledAutomaton.preferSparse((long) numberOfStates * alphabetSize, numberOfCells))
+        {
+            int[] rowStart = new int[numberOfStates + 1];
+            for (int i = 0; i < numberOfEntries; i++) // Counts the cells of each row, then turns the counts into offsets
+            {
+                rowStart[from[i] + 1] += lastColumn(symbolMap, i) - firstColumn(symbolMap, i) + 1;
+            }
+            for (int state = 0; state < numberOfStates; state++)
+            {
+                rowStart[state + 1] += rowStart[state];
+            }
+            long[] cells = new long[numberOfCells];
+            int[] fill = Arrays.copyOf(rowStart, numberOfStates);
+            for (int i = 0; i < numberOfEntries; i++)
+            {
+                int lastColumn = lastColumn(symbolMap, i);
+                for (int column = firstColumn(symbolMap, i); column <= lastColumn; column++)
+                {
+                    cells[fill[from[i]]++] = (long) column << 32 | to[i];
+                }
+            }
+            return CompiledAutomaton.fromRows(symbolMap, finalStates, rowStart, cells);
+        }
+        int[] matrix = new int[numberOfStates * alphabetSize];
+        Arrays.fill(matrix, CompiledAutomaton.NO_TRANSITION);
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            int lastColumn = lastColumn(symbolMap, i);
+            for (int column = firstColumn(symbolMap, i); column <= lastColumn; column++)
+            {
+                int cell = from[i] * alphabetSize + column;
+                if (matrix[cell] == CompiledAutomaton.NO_TRANSITION)
+                {
+                    matrix[cell] = to[i];
+                }
+                else if (matrix[cell] != to[i]) // Second destination for the same state and symbol
+                {
+                    return null;
+                }
+            }
+        }
+        return new CompiledAutomaton(symbolMap, finalStates, matrix);
+    }
+
+    /** Builds the NFA program over the columns of a symbol lookup, with one edge per class a transition covers.
+        @param symbolMap  The symbol lookup from classes().
+        @return  The NFA program. */
+    NfaProgram buildNfa(SymbolMap symbolMap)
+    {
+        int numberOfEdges = 0;
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            numberOfEdges += first[i] == FiniteAutomataMachine.EPSILON_LABEL ? 1 : lastColumn(symbolMap, i) - firstColumn(symbolMap, i) + 1;
+        }
+        int[] edgeFrom = new int[numberOfEdges];
+        int[] edgeColumn = new int[numberOfEdges];
+        int[] edgeTo = new int[numberOfEdges];
+        int edge = 0;
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            int firstColumn = first[i] == FiniteAutomataMachine.EPSILON_LABEL ? -1 : firstColumn(symbolMap, i);
+            int lastColumn = first[i] == FiniteAutomataMachine.EPSILON_LABEL ? -1 : lastColumn(symbolMap, i);
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                edgeFrom[edge] = from[i];
+                edgeColumn[edge] = column;
+                edgeTo[edge] = to[i];
+                edge++;
+            }
+        }
+        return new NfaProgram(symbolMap, Arrays.copyOf(finalStates, numberOfStates), edgeFrom, edgeColumn, edgeTo, numberOfEdges);
+    }
+
+    /** Retrieves the first matrix column of entry i, which is not an epsilon transition. */
+    private int firstColumn(SymbolMap symbolMap, int i)
+    {
+        return first[i] >= 0 ? symbolMap.charColumns[first[i]] : symbolMap.numberOfClasses + (-2 - first[i]);
+    }
+
+    /** Retrieves the last matrix column of entry i, the classes in between are consecutive. */
+    private int lastColumn(SymbolMap symbolMap, int i)
+    {
+        return last[i] >= 0 ? symbolMap.charColumns[last[i]] : symbolMap.numberOfClasses + (-2 - last[i]);
+    }
+}
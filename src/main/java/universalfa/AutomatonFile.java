@@ -0,0 +1,340 @@
+package universalfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/** A class that saves compiled FAs in a binary format and loads them back by memory-mapping.
+    All numbers are little-endian. The layout is a 32-byte header (magic, version, number of states,
+    alphabet size, symbol section length, layout, CRC32C of everything after the header), then one
+    entry per column, -1 and the first and last UTF-16 char for a character class or a length and UTF-16
+    chars for a longer symbol, padded to 8 bytes, then the final states as a bitmap of longs, then the
+    token type of every state as ints (-1 if not final) padded to 8 bytes if the layout has the TOKEN_TYPES
+    flag, then the transitions. A dense machine stores the transition matrix as ints with -1 for no transition,
+    a sparse machine stores its rows as ints (the row starts, then the columns, then the destinations).
+    Either is loaded back in the layout it was saved in, with one bulk copy per array. */
+class AutomatonFile
+{
+    static final int MAGIC = 0x31414655; // "UFA1" as little-endian bytes
+    static final int VERSION = 4; // Bumped whenever the layout changes
+    static final int HEADER_BYTES = 32;
+    static final int WINDOW_BYTES = 1 << 30; // Bytes of the transitions mapped or written at a time
+    static final int DENSE = 0; // Layout of a file with the transition matrix
+    static final int SPARSE = 1; // Layout of a file with sparse rows
+    static final int TOKEN_TYPES = 2; // Flag added to the layout of a file with a token type section
+    static final long MAX_INTS = Integer.MAX_VALUE - 8; // Longest int array that is loaded, the array limit of the JVM
+
+    /** Writes a compiled machine to a file, replacing it if it exists.
+        @param machine  The compiled machine.
+        @param path  The file.
+        @throws IllegalArgumentException  If the machine is too large to be loaded back.
+        @throws IOException  If the file cannot be written. */
+    static void save(CompiledAutomaton machine, Path path) throws IOException
+    {
+        SymbolMap symbolMap = machine.symbolMap;
+        long symbolBytes = 8L * symbolMap.numberOfClasses;
+        for (String symbol: symbolMap.longSymbols)
+        {
+            symbolBytes += 4 + 2L * symbol.length();
+        }
+        symbolBytes = (symbolBytes + 7) & ~7L; // Keeps the bitmap and transitions aligned
+        int bitmapLongs = (machine.numberOfStates + 63) / 64;
+        long typeBytes = machine.tokenTypes == null ? 0 : 8L * ((machine.numberOfStates + 1) / 2);
+        if (symbolBytes + 8L * bitmapLongs + typeBytes > MAX_INTS || (!machine.isSparse() && (long) machine.numberOfStates * machine.alphabetSize > MAX_INTS))
+        {
+            throw new IllegalArgumentException("The machine is too large for an automaton file");
+        }
+        ByteBuffer front = ByteBuffer.allocate((int) (symbolBytes + 8L * bitmapLongs + typeBytes)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int c = 0; c < symbolMap.numberOfClasses; c++)
+        {
+            front.putInt(-1).putChar(symbolMap.classFirst[c]).putChar(symbolMap.classLast[c]);
+        }
+        for (String symbol: symbolMap.longSymbols)
+        {
+            front.putInt(symbol.length());
+            for (int i = 0; i < symbol.length(); i++)
+            {
+                front.putChar(symbol.charAt(i));
+            }
+        }
+        front.position((int) symbolBytes);
+        for (int word = 0; word < bitmapLongs; word++)
+        {
+            long bits = 0;
+            for (int bit = 0; bit < 64 && word * 64 + bit < machine.numberOfStates; bit++)
+            {
+                if (machine.isFinal(word * 64 + bit))
+                {
+                    bits |= 1L << bit;
+                }
+            }
+            front.putLong(bits);
+        }
+        if (machine.tokenTypes != null)
+        {
+            for (int state = 0; state < machine.numberOfStates; state++)
+            {
+                front.putInt(machine.tokenType(state));
+            }
+        }
+        front.position(front.limit()); // Past the padding
+        front.flip();
+
+        CRC32C checksum = new CRC32C();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            channel.position(HEADER_BYTES);
+            write(channel, front, checksum);
+            ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            if (machine.isSparse()) // Only the filled cells are stored
+            {
+                int filled = machine.rowStart[machine.numberOfStates];
+                writeInts(channel, chunk, machine.rowStart, machine.numberOfStates + 1, checksum);
+                writeInts(channel, chunk, machine.rowColumns, filled, checksum);
+                writeInts(channel, chunk, machine.rowTargets, filled, checksum);
+            }
+            else
+            {
+                writeInts(channel, chunk, machine.matrix, machine.matrix.length, checksum);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(machine.numberOfStates).putInt(machine.alphabetSize);
+            header.putInt((int) symbolBytes).putInt((machine.isSparse() ? SPARSE : DENSE) | (typeBytes > 0 ? TOKEN_TYPES : 0)).putLong(checksum.getValue());
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining())
+            {
+                channel.write(header);
+            }
+        }
+    }
+
+    /** Writes the first ints of an array, bulk copied through a direct buffer. */
+    private static void writeInts(FileChannel channel, ByteBuffer chunk, int[] values, int length, CRC32C checksum) throws IOException
+    {
+        for (int offset = 0; offset < length; offset += chunk.capacity() / 4)
+        {
+            int count = Math.min(chunk.capacity() / 4, length - offset);
+            chunk.clear();
+            chunk.asIntBuffer().put(values, offset, count);
+            chunk.limit(4 * count);
+            write(channel, chunk, checksum);
+        }
+    }
+
+    /** Writes a whole buffer and adds it to the checksum. */
+    private static void write(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException
+    {
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    /** Reads a machine written by save, mapping the file instead of parsing it entry by entry.
+        @param path  The file.
+        @param verify  True to check the CRC32C, which reads every byte once more.
+        @return  The compiled machine.
+        @throws IOException  If the file cannot be read, is not an automaton file, is truncated or fails the check. */
+    static CompiledAutomaton load(Path path, boolean verify) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size < HEADER_BYTES)
+            {
+                throw new IOException("'" + path + "' is not an automaton file");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC)
+            {
+                throw new IOException("'" + path + "' is not an automaton file");
+            }
+            int version = header.getInt();
+            if (version != VERSION)
+            {
+                throw new IOException("Automaton file version " + version + " is not supported, expected " + VERSION);
+            }
+            int numberOfStates = header.getInt();
+            int alphabetSize = header.getInt();
+            int symbolBytes = header.getInt();
+            int layout = header.getInt();
+            long expectedChecksum = header.getLong();
+            long bitmapBytes = 8L * ((numberOfStates + 63) / 64);
+            long typeBytes = (layout & TOKEN_TYPES) != 0 ? 8L * ((numberOfStates + 1L) / 2) : 0;
+            layout &= ~TOKEN_TYPES;
+            long cells = (long) numberOfStates * alphabetSize;
+            long transitionBytes = size - HEADER_BYTES - symbolBytes - bitmapBytes - typeBytes;
+            long filled = (transitionBytes - 4L * (numberOfStates + 1)) / 8; // Cells of a sparse file, each a column and a destination
+            if (numberOfStates < 1 || alphabetSize < 0 || symbolBytes < 0 || symbolBytes + bitmapBytes + typeBytes > MAX_INTS
+                || 4L * alphabetSize > symbolBytes || alphabetSize > Character.MAX_VALUE + 1 + symbolBytes / 8 // A symbol takes 4 bytes or more, classes are disjoint and a longer symbol takes 8
+                || (layout == DENSE && (cells > MAX_INTS || transitionBytes != 4 * cells))
+                || (layout == SPARSE && (filled < 0 || filled > Math.min(cells, MAX_INTS) || transitionBytes != 4L * (numberOfStates + 1) + 8 * filled))
+                || (layout != DENSE && layout != SPARSE))
+            {
+                throw new IOException("Automaton file '" + path + "' is truncated or corrupt");
+            }
+            CRC32C checksum = new CRC32C();
+
+            ByteBuffer front = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, symbolBytes + bitmapBytes + typeBytes).order(ByteOrder.LITTLE_ENDIAN);
+            if (verify)
+            {
+                checksum.update(front.duplicate());
+            }
+            char[] classFirst = new char[alphabetSize];
+            char[] classLast = new char[alphabetSize];
+            int numberOfClasses = 0;
+            String[] longSymbols = new String[alphabetSize];
+            int numberOfLongSymbols = 0;
+            for (int i = 0; i < alphabetSize; i++)
+            {
+                if (front.position() + 4 > symbolBytes)
+                {
+                    throw new IOException("Automaton file '" + path + "' is truncated or corrupt");
+                }
+                int length = front.getInt();
+                if (length == -1 && front.position() + 4 <= symbolBytes) // Classes come first, sorted and disjoint
+                {
+                    char first = front.getChar();
+                    char last = front.getChar();
+                    if (numberOfLongSymbols > 0 || first > last || (numberOfClasses > 0 && first <= classLast[numberOfClasses - 1]))
+                    {
+                        throw new IOException("Automaton file '" + path + "' is truncated or corrupt");
+                    }
+                    classFirst[numberOfClasses] = first;
+                    classLast[numberOfClasses] = last;
+                    numberOfClasses++;
+                    continue;
+                }
+                if (length < 2 || 2L * length > symbolBytes - front.position())
+                {
+                    throw new IOException("Automaton file '" + path + "' is truncated or corrupt");
+                }
+                char[] chars = new char[length];
+                front.asCharBuffer().get(chars);
+                front.position(front.position() + 2 * chars.length);
+                longSymbols[numberOfLongSymbols++] = new String(chars);
+            }
+            front.position(symbolBytes);
+            boolean[] finalStates = new boolean[numberOfStates];
+            for (int word = 0; word < bitmapBytes / 8; word++)
+            {
+                long bits = front.getLong();
+                for (int bit = 0; bit < 64 && word * 64 + bit < numberOfStates; bit++)
+                {
+                    finalStates[word * 64 + bit] = (bits & (1L << bit)) != 0;
+                }
+            }
+            int[] tokenTypes = null;
+            if (typeBytes > 0)
+            {
+                tokenTypes = new int[numberOfStates];
+                front.asIntBuffer().get(tokenTypes);
+                for (int state = 0; state < numberOfStates; state++)
+                {
+                    if (finalStates[state] && tokenTypes[state] < 0)
+                    {
+                        throw new IOException("Automaton file '" + path + "' is truncated or corrupt");
+                    }
+                }
+            }
+            SymbolMap symbolMap = new SymbolMap(Arrays.copyOf(classFirst, numberOfClasses), Arrays.copyOf(classLast, numberOfClasses), Arrays.copyOf(longSymbols, numberOfLongSymbols));
+
+            long transitionStart = HEADER_BYTES + symbolBytes + bitmapBytes + typeBytes;
+            if (layout == SPARSE)
+            {
+                int[] rowStart = readInts(channel, transitionStart, numberOfStates + 1, verify ? checksum : null);
+                int[] rowColumns = readInts(channel, transitionStart + 4L * (numberOfStates + 1), (int) filled, verify ? checksum : null);
+                int[] rowTargets = readInts(channel, transitionStart + 4L * (numberOfStates + 1) + 4 * filled, (int) filled, verify ? checksum : null);
+                if (verify && checksum.getValue() != expectedChecksum)
+                {
+                    throw new IOException("Automaton file '" + path + "' failed its checksum");
+                }
+                if (!validRows(rowStart, rowColumns, rowTargets, alphabetSize))
+                {
+                    throw new IOException("Automaton file '" + path + "' is truncated or corrupt");
+                }
+                return new CompiledAutomaton(symbolMap, finalStates, rowStart, rowColumns, rowTargets).withTokenTypes(tokenTypes);
+            }
+            // The layout was chosen when the machine was saved, so the matrix is copied as it is
+            int[] matrix = readInts(channel, transitionStart, (int) cells, verify ? checksum : null);
+            if (verify && checksum.getValue() != expectedChecksum)
+            {
+                throw new IOException("Automaton file '" + path + "' failed its checksum");
+            }
+            if (!validMatrix(matrix, numberOfStates))
+            {
+                throw new IOException("Automaton file '" + path + "' is truncated or corrupt");
+            }
+            return new CompiledAutomaton(symbolMap, finalStates, matrix).withTokenTypes(tokenTypes);
+        }
+    }
+
+    /** Checks that every cell of a matrix is a state or NO_TRANSITION. */
+    private static boolean validMatrix(int[] matrix, int numberOfStates)
+    {
+        for (int next: matrix)
+        {
+            if (next < CompiledAutomaton.NO_TRANSITION || next >= numberOfStates)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Checks that sparse rows start at 0, end at the last cell and hold increasing columns with destinations in range. */
+    private static boolean validRows(int[] rowStart, int[] rowColumns, int[] rowTargets, int alphabetSize)
+    {
+        int numberOfStates = rowStart.length - 1;
+        if (rowStart[0] != 0 || rowStart[numberOfStates] != rowColumns.length)
+        {
+            return false;
+        }
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            if (rowStart[state + 1] < rowStart[state])
+            {
+                return false;
+            }
+            for (int i = rowStart[state]; i < rowStart[state + 1]; i++)
+            {
+                if (rowColumns[i] < 0 || rowColumns[i] >= alphabetSize || (i > rowStart[state] && rowColumns[i] <= rowColumns[i - 1])
+                    || rowTargets[i] < 0 || rowTargets[i] >= numberOfStates)
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Reads ints window by window with bulk copies, adding them to the checksum if one is given. */
+    private static int[] readInts(FileChannel channel, long position, int count, CRC32C checksum) throws IOException
+    {
+        int[] values = new int[count];
+        for (long offset = 0; offset < 4L * count; offset += WINDOW_BYTES)
+        {
+            ByteBuffer window = map(channel, position + offset, Math.min(WINDOW_BYTES, 4L * count - offset), checksum);
+            window.asIntBuffer().get(values, (int) (offset / 4), window.remaining() / 4);
+        }
+        return values;
+    }
+
+    /** Maps a window of the file, adding it to the checksum if one is given. */
+    private static ByteBuffer map(FileChannel channel, long position, long length, CRC32C checksum) throws IOException
+    {
+        ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+        if (checksum != null)
+        {
+            checksum.update(window.duplicate());
+        }
+        return window;
+    }
+}
@@ -0,0 +1,276 @@
+package universalfa;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/** A class that holds a resumable run of a compiled FA, fed its input in pieces */
+class AutomatonRun
+{
+    CompiledAutomaton machine; // Shared, read-only, null when running an NFA
+    LazyDfa lazy; // The run's own DFA state cache when running an NFA, null otherwise
+    int state = 0; // Current state, NO_TRANSITION once the run is dead
+    long offset = 0; // Number of characters consumed so far
+    SymbolMap symbolMap; // Symbol lookup of the machine
+    char[] pending; // Characters read but not matched yet, as they may begin a longer symbol, null if all symbols are single characters
+    int pendingLength = 0; // Number of characters in pending
+    CharBuffer pendingView; // The pending array as a CharSequence for SymbolMap.match
+
+    /** Constructor with a compiled machine */
+    AutomatonRun(CompiledAutomaton machine)
+    {
+        this.machine = machine;
+        setSymbolMap(machine.symbolMap);
+    }
+
+    /** Constructor with a DFA state cache of an NFA, used only by this run */
+    AutomatonRun(LazyDfa lazy)
+    {
+        this.lazy = lazy;
+        this.state = lazy.start();
+        setSymbolMap(lazy.program.symbolMap);
+    }
+
+    /** Sets the symbol lookup, with room for a partly read symbol if there are longer symbols. */
+    private void setSymbolMap(SymbolMap symbolMap)
+    {
+        this.symbolMap = symbolMap;
+        if (symbolMap.tokenized)
+        {
+            pending = new char[symbolMap.longestSymbol];
+            pendingView = CharBuffer.wrap(pending);
+        }
+    }
+
+    /** Reads one character for an alphabet with longer symbols, moving once the symbols before it are certain. */
+    private void push(char c)
+    {
+        pending[pendingLength++] = c;
+        offset++;
+        matchPending(false);
+    }
+
+    /** Moves on the pending characters by longest match.
+        @param atEnd  True if no more input follows, otherwise a possible prefix of a longer symbol is kept. */
+    private void matchPending(boolean atEnd)
+    {
+        while (pendingLength > 0 && !isDead())
+        {
+            long token = symbolMap.match(pendingView, 0, pendingLength);
+            if (!atEnd && SymbolMap.isPartial(token))
+            {
+                return;
+            }
+            int column = SymbolMap.column(token);
+            move(column);
+            int length = SymbolMap.length(token);
+            System.arraycopy(pending, length, pending, 0, pendingLength - length);
+            pendingLength -= length;
+        }
+    }
+
+    /** Moves one character on the DFA state cache or the sparse rows. */
+    private void step(int c)
+    {
+        move(symbolMap.charColumns[c]);
+        offset++;
+    }
+
+    /** Moves on one symbol column, -1 for a symbol not in the alphabet. */
+    private void move(int column)
+    {
+        if (lazy != null)
+        {
+            state = column == -1 ? LazyDfa.DEAD : lazy.next(state, column);
+        }
+        else
+        {
+            state = column == -1 ? CompiledAutomaton.NO_TRANSITION : machine.nextState(state, column);
+        }
+    }
+
+    /** Consumes characters from an array.
+        @param buf  The buffer.
+        @param off  Index of the first character.
+        @param len  Number of characters.
+        @return  False once the run is dead, the rest of the input is skipped. */
+    public boolean feed(char[] buf, int off, int len)
+    {
+        if (pending != null)
+        {
+            for (int i = off; i < off + len && !isDead(); i++)
+            {
+                push(buf[i]);
+            }
+            return fed();
+        }
+        if (lazy != null || machine.isSparse())
+        {
+            for (int i = off; i < off + len && !isDead(); i++)
+            {
+                step(buf[i]);
+            }
+            return fed();
+        }
+        int[] charColumns = machine.charColumns;
+        int[] matrix = machine.matrix;
+        int alphabetSize = machine.alphabetSize;
+        int current = state;
+        int end = off + len;
+        for (int i = off; i < end && current != CompiledAutomaton.NO_TRANSITION; i++)
+        {
+            int symbolIndex = charColumns[buf[i]];
+            current = symbolIndex == -1 ? CompiledAutomaton.NO_TRANSITION : matrix[current * alphabetSize + symbolIndex];
+            offset++;
+        }
+        state = current;
+        return current != CompiledAutomaton.NO_TRANSITION;
+    }
+
+    /** Consumes the characters of a string.
+        @param input  The input.
+        @return  False once the run is dead. */
+    public boolean feed(CharSequence input)
+    {
+        if (pending != null)
+        {
+            for (int i = 0; i < input.length() && !isDead(); i++)
+            {
+                push(input.charAt(i));
+            }
+            return fed();
+        }
+        if (lazy != null || machine.isSparse())
+        {
+            for (int i = 0; i < input.length() && !isDead(); i++)
+            {
+                step(input.charAt(i));
+            }
+            return fed();
+        }
+        int[] charColumns = machine.charColumns;
+        int[] matrix = machine.matrix;
+        int alphabetSize = machine.alphabetSize;
+        int current = state;
+        for (int i = 0; i < input.length() && current != CompiledAutomaton.NO_TRANSITION; i++)
+        {
+            int symbolIndex = charColumns[input.charAt(i)];
+            current = symbolIndex == -1 ? CompiledAutomaton.NO_TRANSITION : matrix[current * alphabetSize + symbolIndex];
+            offset++;
+        }
+        state = current;
+        return current != CompiledAutomaton.NO_TRANSITION;
+    }
+
+    /** Consumes the remaining bytes of a buffer, each byte read as one ISO-8859-1 character.
+        The buffer position moves past the consumed bytes.
+        @param buffer  The buffer.
+        @return  False once the run is dead, the buffer is then left at the byte after the failing one. */
+    public boolean feed(ByteBuffer buffer)
+    {
+        if (pending != null)
+        {
+            while (buffer.hasRemaining() && !isDead())
+            {
+                push((char) (buffer.get() & 0xFF));
+            }
+            return fed();
+        }
+        if (lazy != null || machine.isSparse())
+        {
+            while (buffer.hasRemaining() && !isDead())
+            {
+                step(buffer.get() & 0xFF);
+            }
+            return fed();
+        }
+        int[] charColumns = machine.charColumns;
+        int[] matrix = machine.matrix;
+        int alphabetSize = machine.alphabetSize;
+        int current = state;
+        int position = buffer.position();
+        int limit = buffer.limit();
+        while (position < limit && current != CompiledAutomaton.NO_TRANSITION)
+        {
+            int symbolIndex = charColumns[buffer.get(position++) & 0xFF];
+            current = symbolIndex == -1 ? CompiledAutomaton.NO_TRANSITION : matrix[current * alphabetSize + symbolIndex];
+        }
+        offset += position - buffer.position();
+        buffer.position(position);
+        state = current;
+        return current != CompiledAutomaton.NO_TRANSITION;
+    }
+
+    /** Consumes one character.
+        @param c  The character.
+        @return  False once the run is dead. */
+    public boolean feed(char c)
+    {
+        if (isDead())
+        {
+            return false;
+        }
+        if (pending != null)
+        {
+            push(c);
+            return fed();
+        }
+        step(c);
+        return fed();
+    }
+
+    /** Ends a feed that went character by character.
+        @return  False once the run is dead. */
+    private boolean fed()
+    {
+        if (lazy != null)
+        {
+            lazy.publishStats();
+        }
+        return !isDead();
+    }
+
+    /** Checks if the run reached a dead state, so no further input can lead to acceptance.
+        @return  True if dead. */
+    public boolean isDead()
+    {
+        return state == CompiledAutomaton.NO_TRANSITION;
+    }
+
+    /** Ends the input, matching any characters held back for a longer symbol.
+        @return  True if the input seen so far is accepted. */
+    public boolean finish()
+    {
+        if (pending != null)
+        {
+            matchPending(true);
+            fed();
+        }
+        if (lazy != null)
+        {
+            return lazy.isFinal(state);
+        }
+        return state != CompiledAutomaton.NO_TRANSITION && machine.isFinal(state);
+    }
+
+    /** Restarts the run at the initial state for a new input. */
+    public void reset()
+    {
+        state = lazy != null ? lazy.start() : 0;
+        offset = 0;
+        pendingLength = 0;
+    }
+
+    /** Retrieves the current state.
+        @return  The state, or -1 if the run is dead. */
+    public int getState()
+    {
+        return state;
+    }
+
+    /** Retrieves the number of characters consumed, including the one that killed the run.
+        @return  The offset. */
+    public long getOffset()
+    {
+        return offset;
+    }
+}
@@ -0,0 +1,391 @@
+package universalfa;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/** A class that loads an FA and its test strings from a text spec, in the same line order as the prompts:
+    number of states, final states, alphabet, transitions ('p a q' or '(p a q)', with 'letters', 'numbers'
+    or ranges for the symbol), then test strings until '.....'. Lines are tokenized by hand in one pass,
+    and errors are reported with their line number. Tokens are split on spaces and tabs, the final states
+    and the alphabet may also be separated by commas, where a comma standing alone is the comma symbol. */
+class AutomatonSpec
+{
+    FiniteAutomataMachine machine; // The loaded FA
+    int numberOfStates; // Number of states declared on the first line
+    ArrayList<String> testStrings = new ArrayList<String>(); // Test strings with whitespace removed
+
+    // Parser state
+    char[] text; // Whole spec
+    int length; // Number of characters in text
+    int position = 0; // Start of the next line
+    int lineNumber = 0; // Number of the current line, from 1
+    int lineStart; // Current line is text[lineStart .. lineEnd)
+    int lineEnd;
+    int[] tokenStart = new int[8]; // Tokens of the current line, split on spaces and tabs, and on commas if asked
+    int[] tokenEnd = new int[8];
+    int numberOfTokens;
+
+    /** Reads a spec.
+        @param reader  The spec text, read to the end.
+        @return  The loaded spec.
+        @throws IOException  If the reader fails.
+        @throws IllegalArgumentException  If the spec is malformed, the message starts with the line number. */
+    static AutomatonSpec parse(Reader reader) throws IOException
+    {
+        AutomatonSpec spec = new AutomatonSpec();
+        char[] text = new char[1 << 16];
+        int length = 0;
+        int read;
+        while ((read = reader.read(text, length, text.length - length)) != -1)
+        {
+            length += read;
+            if (length == text.length)
+            {
+                text = Arrays.copyOf(text, 2 * length);
+            }
+        }
+        spec.text = text;
+        spec.length = length;
+        spec.parse();
+        return spec;
+    }
+
+    /** Parses the whole spec. */
+    private void parse()
+    {
+        // Number of states
+        if (!nextLine(false) || numberOfTokens != 1)
+        {
+            throw error("Expected the number of states");
+        }
+        numberOfStates = parseToken(0, Integer.MAX_VALUE);
+        if (numberOfStates == -1)
+        {
+            throw error("You must enter an integer");
+        }
+
+        // Final states
+        if (!nextLine(true))
+        {
+            throw error("Expected the final states");
+        }
+        boolean[] finalStates = new boolean[numberOfStates];
+        for (int t = 0; t < numberOfTokens; t++)
+        {
+            finalStates[parseState(t)] = true;
+        }
+
+        // Alphabet
+        if (!nextLine(true) || numberOfTokens == 0)
+        {
+            throw error("Expected the alphabet");
+        }
+        int[] ranges = new int[2 * numberOfTokens + 2]; // Characters as first, last pairs, a range stays one pair
+        int numberOfRanges = 0;
+        TreeSet<String> longer = new TreeSet<String>(); // Symbols longer than one character
+        for (int t = 0; t < numberOfTokens; t++)
+        {
+            if (2 * numberOfRanges + 4 > ranges.length)
+            {
+                ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+            }
+            if (tokenEquals(t, "letters"))
+            {
+                numberOfRanges = addRange(ranges, numberOfRanges, 'a', 'z');
+                numberOfRanges = addRange(ranges, numberOfRanges, 'A', 'Z');
+            }
+            else if (tokenEquals(t, "numbers"))
+            {
+                numberOfRanges = addRange(ranges, numberOfRanges, '0', '9');
+            }
+            else if (isRange(t))
+            {
+                numberOfRanges = addRange(ranges, numberOfRanges, text[tokenStart[t]], text[tokenEnd[t] - 1]);
+            }
+            else if (tokenEnd[t] - tokenStart[t] == 1)
+            {
+                numberOfRanges = addRange(ranges, numberOfRanges, text[tokenStart[t]], text[tokenStart[t]]);
+            }
+            else
+            {
+                longer.add(new String(text, tokenStart[t], tokenEnd[t] - tokenStart[t]));
+            }
+        }
+        int[] alphabetRanges = SymbolMap.mergeRanges(ranges, numberOfRanges);
+        String[] longSymbols = longer.toArray(new String[longer.size()]);
+
+        // Transitions, each kept as one entry with a range of characters like the FA stores them
+        AutomatonBuilder builder = new AutomatonBuilder(alphabetRanges, longSymbols);
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            builder.addState(finalStates[state]);
+        }
+        boolean moreLines;
+        while ((moreLines = nextLine(false)) && numberOfTokens >= 3) // A line with fewer tokens is the first test string
+        {
+            stripParentheses();
+            if (numberOfTokens != 3)
+            {
+                throw error("Expected a transition in the format 'p a q'");
+            }
+            int from = parseState(0);
+            int to = parseState(2);
+            if (tokenEquals(1, "letters"))
+            {
+                builder.addTransition(from, checkRange('A', 'Z', alphabetRanges), 'Z', to);
+                builder.addTransition(from, checkRange('a', 'z', alphabetRanges), 'z', to);
+            }
+            else if (tokenEquals(1, "numbers"))
+            {
+                builder.addTransition(from, checkRange('0', '9', alphabetRanges), '9', to);
+            }
+            else if (isRange(1))
+            {
+                char last = text[tokenEnd[1] - 1];
+                builder.addTransition(from, checkRange(text[tokenStart[1]], last, alphabetRanges), last, to);
+            }
+            else
+            {
+                int label = symbolLabel(1, alphabetRanges, longSymbols);
+                builder.addTransition(from, label, label, to);
+            }
+        }
+        machine = new FiniteAutomataMachine(builder);
+
+        // Test strings, the line that ended the transitions is the first one
+        while (moreLines && !isEndMarker())
+        {
+            StringBuilder testString = new StringBuilder(lineEnd - lineStart);
+            for (int i = lineStart; i < lineEnd; i++)
+            {
+                if (!Character.isWhitespace(text[i])) // Removes spaces, same as the prompt does
+                {
+                    testString.append(text[i]);
+                }
+            }
+            testStrings.add(testString.toString());
+            moreLines = nextLine(false);
+        }
+    }
+
+    /** Moves to the next line and splits it into tokens.
+        @param commas  True if commas separate tokens as well, except a comma that is a whole word.
+        @return  False at the end of the spec. */
+    private boolean nextLine(boolean commas)
+    {
+        if (position >= length)
+        {
+            return false;
+        }
+        lineNumber++;
+        lineStart = position;
+        int end = position;
+        while (end < length && text[end] != '\n')
+        {
+            end++;
+        }
+        position = end + 1;
+        if (end > lineStart && text[end - 1] == '\r')
+        {
+            end--;
+        }
+        lineEnd = end;
+        numberOfTokens = 0;
+        int i = lineStart;
+        while (i < lineEnd)
+        {
+            while (i < lineEnd && (isSpace(text[i]) || (commas && text[i] == ',' && !isCommaWord(i))))
+            {
+                i++;
+            }
+            if (i == lineEnd)
+            {
+                break;
+            }
+            if (numberOfTokens == tokenStart.length)
+            {
+                tokenStart = Arrays.copyOf(tokenStart, 2 * numberOfTokens);
+                tokenEnd = Arrays.copyOf(tokenEnd, 2 * numberOfTokens);
+            }
+            tokenStart[numberOfTokens] = i;
+            if (commas && isCommaWord(i))
+            {
+                i++;
+            }
+            while (i < lineEnd && !isSpace(text[i]) && !(commas && text[i] == ','))
+            {
+                i++;
+            }
+            tokenEnd[numberOfTokens++] = i;
+        }
+        return true;
+    }
+
+    /** Checks if a character separates tokens on every line. */
+    private static boolean isSpace(char c)
+    {
+        return c == ' ' || c == '\t';
+    }
+
+    /** Checks if the comma at text[i] stands alone between spaces or the ends of the line. */
+    private boolean isCommaWord(int i)
+    {
+        return text[i] == ',' && (i == lineStart || isSpace(text[i - 1])) && (i + 1 == lineEnd || isSpace(text[i + 1]));
+    }
+
+    /** Removes the parentheses around a '(p a q)' transition. */
+    private void stripParentheses()
+    {
+        if (text[tokenStart[0]] == '(' && text[tokenEnd[numberOfTokens - 1] - 1] == ')')
+        {
+            tokenStart[0]++;
+            tokenEnd[numberOfTokens - 1]--;
+        }
+    }
+
+    /** Checks if the current line is '.....', which ends the spec. */
+    private boolean isEndMarker()
+    {
+        return numberOfTokens == 1 && tokenEquals(0, ".....");
+    }
+
+    /** Checks if a token equals a word. */
+    private boolean tokenEquals(int t, String word)
+    {
+        if (tokenEnd[t] - tokenStart[t] != word.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++)
+        {
+            if (text[tokenStart[t] + i] != word.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Checks if a token is a range such as '2-7', 'a-z' or 'G-M'.
+        @throws IllegalArgumentException  If it looks like a range but is not a digit range or a same-case letter range. */
+    private boolean isRange(int t)
+    {
+        int start = tokenStart[t];
+        int end = tokenEnd[t];
+        if (end - start < 3 || indexOf('-', start + 1, end - 1) == -1) // Needs something on both sides of a '-'
+        {
+            return false;
+        }
+        char from = text[start];
+        char to = text[end - 1];
+        boolean digits = from >= '0' && from <= '9' && to >= '0' && to <= '9';
+        boolean upper = from >= 'A' && from <= 'Z' && to >= 'A' && to <= 'Z';
+        boolean lower = from >= 'a' && from <= 'z' && to >= 'a' && to <= 'z';
+        if (end - start != 3 || !(digits || upper || lower))
+        {
+            throw error("Range '" + new String(text, start, end - start) + "' not accepted");
+        }
+        return true;
+    }
+
+    /** Finds a character within text[from .. to). */
+    private int indexOf(char c, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (text[i] == c)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Adds a range of characters as one first, last pair.
+        @return  The new number of pairs. */
+    private static int addRange(int[] ranges, int numberOfRanges, char first, char last)
+    {
+        ranges[2 * numberOfRanges] = first;
+        ranges[2 * numberOfRanges + 1] = last;
+        return numberOfRanges + 1;
+    }
+
+    /** Checks that every character of a range is in the alphabet.
+        @return  The first character of the range.
+        @throws IllegalArgumentException  Naming the first character that is missing. */
+    private int checkRange(char first, char last, int[] alphabetRanges)
+    {
+        int range = SymbolMap.findRange(alphabetRanges, first);
+        if (range != -1 && last <= alphabetRanges[2 * range + 1])
+        {
+            return first;
+        }
+        char c = first;
+        while (SymbolMap.findRange(alphabetRanges, c) != -1)
+        {
+            c++;
+        }
+        throw error("Symbol '" + c + "' does not exist");
+    }
+
+    /** Looks up a symbol token, as a character, EPSILON_LABEL or -2 - i for longer symbol i. */
+    private int symbolLabel(int t, int[] alphabetRanges, String[] longSymbols)
+    {
+        if (tokenEnd[t] - tokenStart[t] == 1 && SymbolMap.findRange(alphabetRanges, text[tokenStart[t]]) != -1) // No string for one character
+        {
+            return text[tokenStart[t]];
+        }
+        int index = tokenEnd[t] - tokenStart[t] == 1 ? -1 : Arrays.binarySearch(longSymbols, new String(text, tokenStart[t], tokenEnd[t] - tokenStart[t]));
+        if (index < 0)
+        {
+            if (tokenEquals(t, FiniteAutomataMachine.EPSILON))
+            {
+                return FiniteAutomataMachine.EPSILON_LABEL;
+            }
+            throw error("Symbol '" + new String(text, tokenStart[t], tokenEnd[t] - tokenStart[t]) + "' does not exist");
+        }
+        return -2 - index;
+    }
+
+    /** Parses a state token.
+        @throws IllegalArgumentException  If the state does not exist. */
+    private int parseState(int t)
+    {
+        int state = parseToken(t, numberOfStates - 1);
+        if (state == -1)
+        {
+            throw error("State '" + new String(text, tokenStart[t], tokenEnd[t] - tokenStart[t]) + "' does not exist");
+        }
+        return state;
+    }
+
+    /** Parses a token as a decimal integer from 0 to max.
+        @return  The value, or -1 if the token is not such an integer. */
+    private int parseToken(int t, int max)
+    {
+        int start = tokenStart[t];
+        int end = tokenEnd[t];
+        if (end == start || end - start > 10)
+        {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++)
+        {
+            char c = text[i];
+            if (c < '0' || c > '9')
+            {
+                return -1;
+            }
+            value = 10 * value + (c - '0');
+        }
+        return value > max ? -1 : (int) value;
+    }
+
+    /** Builds a parse error for the current line. */
+    private IllegalArgumentException error(String message)
+    {
+        return new IllegalArgumentException("line " + lineNumber + ": " + message);
+    }
+}
@@ -0,0 +1,43 @@
+package universalfa;
+
+import java.util.concurrent.RecursiveAction;
+
+/** A fork/join task that evaluates a range of a string batch */
+class BatchTask extends RecursiveAction
+{
+    private static final long serialVersionUID = 1L;
+
+    FiniteAutomataMachine machine; // Shared, only read once compiled
+    CharSequence[] inputs; // Whole batch
+    boolean[] results; // Whole batch results, each task writes only its own range
+    int from; // First index of the range
+    int to; // One past the last index of the range
+    int chunkSize; // Range length at which the task stops splitting
+
+    /** Constructor with the machine, the batch and the range to evaluate */
+    BatchTask(FiniteAutomataMachine machine, CharSequence[] inputs, boolean[] results, int from, int to, int chunkSize)
+    {
+        this.machine = machine;
+        this.inputs = inputs;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Splits the range in half until it is small enough, then evaluates it. */
+    protected void compute()
+    {
+        if (to - from <= chunkSize)
+        {
+            for (int i = from; i < to; i++)
+            {
+                results[i] = machine.accepts(inputs[i]); // NFAs use the worker thread's own DFA state cache
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new BatchTask(machine, inputs, results, from, middle, chunkSize),
+                  new BatchTask(machine, inputs, results, middle, to, chunkSize));
+    }
+}
@@ -0,0 +1,200 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that runs an NFA as a bitset of active states, one word per 64 states, for one thread.
+    Each cell of the NFA is precomputed as the mask of its destinations with their epsilon closure,
+    so a step ORs the masks of the active states and never builds or caches a state set.
+    Time per character is bounded by the number of states times the number of words, and memory by the cells. */
+class BitParallelNfa
+{
+    NfaProgram program; // Shared, read-only
+    int words; // Longs per state set
+    int[] cellMasks; // Mask of state s on column a starts at masks[cellMasks[s * alphabetSize + a]], -1 if the cell is empty
+    long[] masks; // Distinct destination masks, words longs each
+    long[] startMask; // Epsilon closure of state 0
+    long[] finalMask; // Final states
+    long[] current; // Scratch sets of this thread
+    long[] next;
+
+    /** Constructor with the tables of another simulation, they are shared and only the scratch sets are new */
+    BitParallelNfa(BitParallelNfa shared)
+    {
+        this.program = shared.program;
+        this.words = shared.words;
+        this.cellMasks = shared.cellMasks;
+        this.masks = shared.masks;
+        this.startMask = shared.startMask;
+        this.finalMask = shared.finalMask;
+        current = new long[words];
+        next = new long[words];
+    }
+
+    /** Constructor with the NFA and its precomputed masks, see build */
+    private BitParallelNfa(NfaProgram program, int words, int[] cellMasks, long[] masks, long[] startMask, long[] finalMask)
+    {
+        this.program = program;
+        this.words = words;
+        this.cellMasks = cellMasks;
+        this.masks = masks;
+        this.startMask = startMask;
+        this.finalMask = finalMask;
+        current = new long[words];
+        next = new long[words];
+    }
+
+    /** Precomputes the masks of an NFA.
+        @param program  The NFA.
+        @param maxBytes  Memory bound of the masks.
+        @return  The simulation, or null if its masks would not fit in maxBytes. */
+    static BitParallelNfa build(NfaProgram program, long maxBytes)
+    {
+        int numberOfStates = program.numberOfStates;
+        int alphabetSize = program.alphabetSize;
+        int words = Math.max(1, (numberOfStates + 63) >>> 6);
+        int filled = 0;
+        for (int cell = 0; cell < numberOfStates * alphabetSize; cell++)
+        {
+            if (program.targetStart[cell + 1] > program.targetStart[cell])
+            {
+                filled++;
+            }
+        }
+        if (4L * numberOfStates * alphabetSize + 8L * words * filled > maxBytes) // Every filled cell could have a distinct mask
+        {
+            return null;
+        }
+        SubsetBuilder builder = new SubsetBuilder(program);
+        HashMap<StateSet, Integer> ids = new HashMap<StateSet, Integer>();
+        int[] cellMasks = new int[numberOfStates * alphabetSize];
+        long[] masks = new long[words * Math.max(1, filled)];
+        int numberOfMasks = 0;
+        int[] single = new int[1];
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            single[0] = state;
+            for (int column = 0; column < alphabetSize; column++)
+            {
+                int[] target = builder.move(single, column);
+                if (target.length == 0)
+                {
+                    cellMasks[state * alphabetSize + column] = -1;
+                    continue;
+                }
+                StateSet key = new StateSet(target);
+                Integer id = ids.get(key);
+                if (id == null) // Cells with the same destinations share a mask
+                {
+                    id = numberOfMasks++;
+                    ids.put(key, id);
+                    setBits(masks, id * words, target);
+                }
+                cellMasks[state * alphabetSize + column] = id * words;
+            }
+        }
+        long[] startMask = new long[words];
+        setBits(startMask, 0, builder.start());
+        long[] finalMask = new long[words];
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            if (program.finalStates[state])
+            {
+                finalMask[state >>> 6] |= 1L << state;
+            }
+        }
+        return new BitParallelNfa(program, words, cellMasks, Arrays.copyOf(masks, numberOfMasks * words), startMask, finalMask);
+    }
+
+    /** Turns on the bits of a set of states. */
+    private static void setBits(long[] mask, int offset, int[] set)
+    {
+        for (int state: set)
+        {
+            mask[offset + (state >>> 6)] |= 1L << state;
+        }
+    }
+
+    /** Retrieves the memory held by the masks.
+        @return  The size in bytes. */
+    public long memoryBytes()
+    {
+        return 4L * cellMasks.length + 8L * (masks.length + 2 * words);
+    }
+
+    /** Runs a string from the epsilon closure of state 0.
+        @param input  The input string.
+        @return  True if the string is accepted. */
+    public boolean accepts(CharSequence input)
+    {
+        return EvaluationMetrics.outcome(evaluate(input)) == EvaluationMetrics.ACCEPTED;
+    }
+
+    /** Runs a string from the epsilon closure of state 0 and tells why it is rejected.
+        @param input  The input string.
+        @return  EvaluationMetrics.ACCEPTED or the reason the string is rejected, packed with the characters read. */
+    public long evaluate(CharSequence input)
+    {
+        int[] charColumns = program.charColumns;
+        SymbolMap symbolMap = program.symbolMap;
+        int alphabetSize = program.alphabetSize;
+        long[] current = this.current;
+        long[] next = this.next;
+        System.arraycopy(startMask, 0, current, 0, words);
+        boolean alive = true;
+        int length = input.length();
+        int i = 0;
+        while (i < length && alive)
+        {
+            int symbolIndex;
+            if (symbolMap.tokenized) // Longest match against the longer symbols
+            {
+                long token = symbolMap.match(input, i, length);
+                symbolIndex = SymbolMap.column(token);
+                i += SymbolMap.length(token);
+            }
+            else
+            {
+                symbolIndex = charColumns[input.charAt(i++)];
+            }
+            if (symbolIndex == -1)
+            {
+                return EvaluationMetrics.result(EvaluationMetrics.UNKNOWN_SYMBOL, i);
+            }
+            Arrays.fill(next, 0L);
+            alive = false;
+            for (int w = 0; w < words; w++)
+            {
+                long bits = current[w];
+                while (bits != 0) // Visits the active states of this word
+                {
+                    int state = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int offset = cellMasks[state * alphabetSize + symbolIndex];
+                    if (offset != -1)
+                    {
+                        for (int k = 0; k < words; k++)
+                        {
+                            next[k] |= masks[offset + k];
+                        }
+                        alive = true;
+                    }
+                }
+            }
+            long[] swap = current; // The next set becomes the current one
+            current = next;
+            next = swap;
+        }
+        if (!alive)
+        {
+            return EvaluationMetrics.result(EvaluationMetrics.MISSING_TRANSITION, i);
+        }
+        for (int w = 0; w < words; w++)
+        {
+            if ((current[w] & finalMask[w]) != 0)
+            {
+                return EvaluationMetrics.result(EvaluationMetrics.ACCEPTED, i);
+            }
+        }
+        return EvaluationMetrics.result(EvaluationMetrics.NOT_FINAL, i);
+    }
+}
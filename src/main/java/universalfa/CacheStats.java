@@ -0,0 +1,32 @@
+package universalfa;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** A class that holds the hit, miss and flush counters of the DFA state caches */
+class CacheStats
+{
+    LongAdder hits = new LongAdder(); // Steps answered from a cached transition
+    LongAdder misses = new LongAdder(); // Steps that had to compute a state set
+    LongAdder flushes = new LongAdder(); // Times a cache reached its memory bound and started over
+
+    /** Retrieves the number of cache hits.
+        @return  Number of hits. */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /** Retrieves the number of cache misses.
+        @return  Number of misses. */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /** Retrieves the number of cache flushes.
+        @return  Number of flushes. */
+    public long getFlushes()
+    {
+        return flushes.sum();
+    }
+}
@@ -0,0 +1,24 @@
+package universalfa;
+
+/** A class that holds the outcome of a language comparison */
+class ComparisonResult
+{
+    boolean holds; // True if the languages are equal, or the first is included in the second
+    String counterexample; // A shortest string that shows the check fails, null when it holds
+    long pairs; // State pairs explored
+    long elapsedNanos; // Wall time of the check
+
+    /** Checks if the compared property holds.
+        @return  True if it holds. */
+    public boolean holds()
+    {
+        return holds;
+    }
+
+    /** Retrieves a shortest string that shows the check fails.
+        @return  The string, or null if the check holds. */
+    public String getCounterexample()
+    {
+        return counterexample;
+    }
+}
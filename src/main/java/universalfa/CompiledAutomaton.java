@@ -0,0 +1,433 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that holds the compiled FA, either a dense transition matrix indexed by state and symbol
+    or, for machines with many states and few transitions each, sparse rows of (symbol, destination) pairs */
+class CompiledAutomaton
+{
+    static final int NO_TRANSITION = -1; // Sentinel for a missing transition, same as the -1 from NextState
+    static final double SPARSE_FILL = 0.25; // Largest share of filled cells that is stored as sparse rows
+    static final long SPARSE_MIN_CELLS = 1 << 16; // Smaller matrices stay dense, they are cheap and faster to step
+    static final int LINEAR_SCAN = 8; // Rows up to this length are scanned instead of binary searched
+
+    final SymbolMap symbolMap; // Symbol to matrix column lookup
+    final int[] charColumns; // Matrix column of every single-character symbol, -1 if not in the alphabet
+    final int alphabetSize; // Number of columns in the matrix
+    final int numberOfStates; // Number of rows in the matrix
+    final int[] matrix; // Destination of state s on symbol a is stored at matrix[s * alphabetSize + a], null if sparse
+    final int[] rowStart; // Row of state s is rowColumns[rowStart[s] .. rowStart[s + 1]), null if dense
+    final int[] rowColumns; // Columns of each row in increasing order
+    final int[] rowTargets; // Destination on rowColumns[i]
+    final long filledCells; // Number of cells with a transition
+    final boolean[] finalStates; // True if final state
+    final int[] tokenTypes; // Token type of each state, only read for final states, null if every final state has type 0
+
+    /** Constructor with the symbol lookup, the final states and a filled matrix */
+    CompiledAutomaton(SymbolMap symbolMap, boolean[] finalStates, int[] matrix)
+    {
+        this.symbolMap = symbolMap;
+        this.charColumns = symbolMap.charColumns;
+        this.alphabetSize = symbolMap.size();
+        this.numberOfStates = finalStates.length;
+        this.matrix = matrix;
+        this.rowStart = null;
+        this.rowColumns = null;
+        this.rowTargets = null;
+        this.filledCells = countFilled(matrix);
+        this.finalStates = finalStates;
+        this.tokenTypes = null;
+    }
+
+    /** Constructor with the symbol lookup, the final states and sorted sparse rows */
+    CompiledAutomaton(SymbolMap symbolMap, boolean[] finalStates, int[] rowStart, int[] rowColumns, int[] rowTargets)
+    {
+        this.symbolMap = symbolMap;
+        this.charColumns = symbolMap.charColumns;
+        this.alphabetSize = symbolMap.size();
+        this.numberOfStates = finalStates.length;
+        this.matrix = null;
+        this.rowStart = rowStart;
+        this.rowColumns = rowColumns;
+        this.rowTargets = rowTargets;
+        this.filledCells = rowStart[numberOfStates];
+        this.finalStates = finalStates;
+        this.tokenTypes = null;
+    }
+
+    /** Constructor with the transitions of another machine and new token types */
+    private CompiledAutomaton(CompiledAutomaton machine, int[] tokenTypes)
+    {
+        this.symbolMap = machine.symbolMap;
+        this.charColumns = machine.charColumns;
+        this.alphabetSize = machine.alphabetSize;
+        this.numberOfStates = machine.numberOfStates;
+        this.matrix = machine.matrix;
+        this.rowStart = machine.rowStart;
+        this.rowColumns = machine.rowColumns;
+        this.rowTargets = machine.rowTargets;
+        this.filledCells = machine.filledCells;
+        this.finalStates = machine.finalStates;
+        this.tokenTypes = tokenTypes;
+    }
+
+    /** Builds the same machine with token types on its final states, the transitions are shared.
+        @param tokenTypes  Token type of each state, only read for final states, or null if every final state has type 0.
+        @return  The machine with the token types. */
+    CompiledAutomaton withTokenTypes(int[] tokenTypes)
+    {
+        return tokenTypes == this.tokenTypes ? this : new CompiledAutomaton(this, tokenTypes);
+    }
+
+    /** Builds a machine from a filled matrix, switching to sparse rows if few cells are filled.
+        @param symbolMap  The symbol lookup.
+        @param finalStates  The final states.
+        @param matrix  The matrix, dropped if the machine is stored sparse.
+        @return  The compiled machine. */
+    static CompiledAutomaton fromMatrix(SymbolMap symbolMap, boolean[] finalStates, int[] matrix)
+    {
+        long filled = countFilled(matrix);
+        if (!preferSparse(matrix.length, filled))
+        {
+            return new CompiledAutomaton(symbolMap, finalStates, matrix);
+        }
+        int alphabetSize = symbolMap.size();
+        int[] rowStart = new int[finalStates.length + 1];
+        int[] rowColumns = new int[(int) filled];
+        int[] rowTargets = new int[(int) filled];
+        int index = 0;
+        for (int state = 0; state < finalStates.length; state++)
+        {
+            rowStart[state] = index;
+            for (int column = 0; column < alphabetSize; column++)
+            {
+                int next = matrix[state * alphabetSize + column];
+                if (next != NO_TRANSITION)
+                {
+                    rowColumns[index] = column;
+                    rowTargets[index++] = next;
+                }
+            }
+        }
+        rowStart[finalStates.length] = index;
+        return new CompiledAutomaton(symbolMap, finalStates, rowStart, rowColumns, rowTargets);
+    }
+
+    /** Builds a sparse machine from rows of cells, each packed as column << 32 | destination in any order.
+        Repeated cells are merged, a cell with two different destinations makes the rows nondeterministic.
+        @param symbolMap  The symbol lookup.
+        @param finalStates  The final states.
+        @param rowStart  Row of state s is cells[rowStart[s] .. rowStart[s + 1]), reused for the merged rows.
+        @param cells  The cells, sorted in place.
+        @return  The compiled machine, or null if the rows are nondeterministic. */
+    static CompiledAutomaton fromRows(SymbolMap symbolMap, boolean[] finalStates, int[] rowStart, long[] cells)
+    {
+        int numberOfStates = finalStates.length;
+        int[] rowColumns = new int[rowStart[numberOfStates]];
+        int[] rowTargets = new int[rowStart[numberOfStates]];
+        int index = 0;
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            int from = rowStart[state];
+            int to = rowStart[state + 1];
+            Arrays.sort(cells, from, to);
+            rowStart[state] = index;
+            for (int i = from; i < to; i++)
+            {
+                int column = (int) (cells[i] >>> 32);
+                int target = (int) cells[i];
+                if (index > rowStart[state] && rowColumns[index - 1] == column)
+                {
+                    if (rowTargets[index - 1] != target) // Second destination for the same state and symbol
+                    {
+                        return null;
+                    }
+                    continue;
+                }
+                rowColumns[index] = column;
+                rowTargets[index++] = target;
+            }
+        }
+        rowStart[numberOfStates] = index;
+        return new CompiledAutomaton(symbolMap, finalStates, rowStart, Arrays.copyOf(rowColumns, index), Arrays.copyOf(rowTargets, index));
+    }
+
+    /** Checks if a table is better stored as sparse rows.
+        @param cells  Number of cells of the dense matrix.
+        @param filled  Number of filled cells, or an upper bound of it.
+        @return  True if sparse rows should be used. */
+    static boolean preferSparse(long cells, long filled)
+    {
+        return cells >= SPARSE_MIN_CELLS && filled < cells * SPARSE_FILL;
+    }
+
+    /** Counts the filled cells of a matrix. */
+    private static long countFilled(int[] matrix)
+    {
+        long filled = 0;
+        for (int i = 0; i < matrix.length; i++)
+        {
+            if (matrix[i] != NO_TRANSITION)
+            {
+                filled++;
+            }
+        }
+        return filled;
+    }
+
+    /** Retrieves the next state with a given current state and symbol column.
+        @param state  The current state.
+        @param symbolIndex  The matrix column of the symbol.
+        @return  The next state, or NO_TRANSITION. */
+    public int nextState(int state, int symbolIndex)
+    {
+        if (matrix != null)
+        {
+            return matrix[state * alphabetSize + symbolIndex];
+        }
+        return sparseNext(state, symbolIndex);
+    }
+
+    /** Looks a column up in the sparse row of a state, by a linear scan for short rows and binary search otherwise. */
+    private int sparseNext(int state, int symbolIndex)
+    {
+        int low = rowStart[state];
+        int high = rowStart[state + 1] - 1;
+        if (high - low < LINEAR_SCAN)
+        {
+            for (int i = low; i <= high; i++)
+            {
+                if (rowColumns[i] >= symbolIndex)
+                {
+                    return rowColumns[i] == symbolIndex ? rowTargets[i] : NO_TRANSITION;
+                }
+            }
+            return NO_TRANSITION;
+        }
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int column = rowColumns[middle];
+            if (column < symbolIndex)
+            {
+                low = middle + 1;
+            }
+            else if (column > symbolIndex)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return rowTargets[middle];
+            }
+        }
+        return NO_TRANSITION;
+    }
+
+    /** Finds the cell of a transition, an index into the matrix or into the sparse rows.
+        @param state  The current state.
+        @param symbolIndex  The matrix column of the symbol.
+        @return  The cell, or -1 for an empty cell of a sparse machine. */
+    int cellIndex(int state, int symbolIndex)
+    {
+        if (matrix != null)
+        {
+            return state * alphabetSize + symbolIndex;
+        }
+        int entry = Arrays.binarySearch(rowColumns, rowStart[state], rowStart[state + 1], symbolIndex);
+        return entry >= 0 ? entry : -1;
+    }
+
+    /** Builds the same machine with its states in a new order, the rows move and the targets follow them.
+        @param order  Old number of each new state, a permutation with state 0 first.
+        @return  The renumbered machine, dense or sparse like this one. */
+    CompiledAutomaton renumber(int[] order)
+    {
+        int[] newNumber = new int[numberOfStates];
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            newNumber[order[state]] = state;
+        }
+        boolean[] newFinals = new boolean[numberOfStates];
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            newFinals[state] = finalStates[order[state]];
+        }
+        int[] newTypes = null;
+        if (tokenTypes != null)
+        {
+            newTypes = new int[numberOfStates];
+            for (int state = 0; state < numberOfStates; state++)
+            {
+                newTypes[state] = tokenTypes[order[state]];
+            }
+        }
+        if (matrix != null)
+        {
+            int[] newMatrix = new int[matrix.length];
+            for (int state = 0; state < numberOfStates; state++)
+            {
+                int from = order[state] * alphabetSize;
+                for (int column = 0; column < alphabetSize; column++)
+                {
+                    int target = matrix[from + column];
+                    newMatrix[state * alphabetSize + column] = target == NO_TRANSITION ? NO_TRANSITION : newNumber[target];
+                }
+            }
+            return new CompiledAutomaton(symbolMap, newFinals, newMatrix).withTokenTypes(newTypes);
+        }
+        int[] newStart = new int[numberOfStates + 1];
+        int[] newColumns = new int[rowColumns.length];
+        int[] newTargets = new int[rowTargets.length];
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            int index = newStart[state];
+            for (int i = rowStart[order[state]]; i < rowStart[order[state] + 1]; i++) // Columns stay sorted
+            {
+                newColumns[index] = rowColumns[i];
+                newTargets[index++] = newNumber[rowTargets[i]];
+            }
+            newStart[state + 1] = index;
+        }
+        return new CompiledAutomaton(symbolMap, newFinals, newStart, newColumns, newTargets).withTokenTypes(newTypes);
+    }
+
+    /** Checks if the transitions are stored as sparse rows.
+        @return  True if sparse, false if dense. */
+    public boolean isSparse()
+    {
+        return matrix == null;
+    }
+
+    /** Retrieves the bytes the dense matrix takes, or would take if the machine is sparse.
+        @return  The number of bytes. */
+    public long denseBytes()
+    {
+        return 4L * numberOfStates * alphabetSize;
+    }
+
+    /** Retrieves the bytes the sparse rows take, or would take if the machine is dense.
+        @return  The number of bytes. */
+    public long sparseBytes()
+    {
+        return 4L * (numberOfStates + 1) + 8L * filledCells;
+    }
+
+    /** Retrieves the bytes of the representation in use.
+        @return  The number of bytes. */
+    public long memoryBytes()
+    {
+        return isSparse() ? sparseBytes() : denseBytes();
+    }
+
+    /** Describes the memory of both representations and the one in use.
+        @return  The report. */
+    public String memoryReport()
+    {
+        long cells = (long) numberOfStates * alphabetSize;
+        return String.format("%d states x %d columns, %d of %d cells filled (%.2f%%), dense %d bytes, sparse %d bytes, using %s",
+            numberOfStates, alphabetSize, filledCells, cells, cells == 0 ? 0.0 : 100.0 * filledCells / cells,
+            denseBytes(), sparseBytes(), isSparse() ? "sparse" : "dense");
+    }
+
+    /** Checks if a state is a final state.
+        @param state  The state.
+        @return  True if final state. */
+    public boolean isFinal(int state)
+    {
+        return finalStates[state];
+    }
+
+    /** Retrieves the token type of a state.
+        @param state  The state.
+        @return  The token type, or Lexer.NO_TOKEN if the state is not final. */
+    public int tokenType(int state)
+    {
+        return !finalStates[state] ? Lexer.NO_TOKEN : tokenTypes == null ? 0 : tokenTypes[state];
+    }
+
+    /** Runs a string through the matrix starting from state 0.
+        @param input  The input string.
+        @return  True if the string ends in a final state. */
+    public boolean accepts(CharSequence input)
+    {
+        if (symbolMap.tokenized)
+        {
+            return acceptsTokens(input);
+        }
+        int[] matrix = this.matrix;
+        int state = 0; // Initial state
+        for (int i = 0; i < input.length(); i++)
+        {
+            int symbolIndex = charColumns[input.charAt(i)];
+            if (symbolIndex == -1) // Rejects if symbol is not in the alphabet
+            {
+                return false;
+            }
+            state = matrix != null ? matrix[state * alphabetSize + symbolIndex] : sparseNext(state, symbolIndex);
+            if (state == NO_TRANSITION) // String goes nowhere
+            {
+                return false;
+            }
+        }
+        return finalStates[state];
+    }
+
+    /** Runs a string from state 0 and tells why it is rejected, a slower twin of accepts for metrics.
+        @param input  The input string.
+        @return  EvaluationMetrics.ACCEPTED or the reason the string is rejected, packed with the characters read. */
+    public long evaluate(CharSequence input)
+    {
+        int state = 0;
+        int length = input.length();
+        for (int i = 0; i < length; )
+        {
+            int symbolIndex;
+            if (symbolMap.tokenized)
+            {
+                long token = symbolMap.match(input, i, length);
+                symbolIndex = SymbolMap.column(token);
+                i += SymbolMap.length(token);
+            }
+            else
+            {
+                symbolIndex = charColumns[input.charAt(i++)];
+            }
+            if (symbolIndex == -1) // Same as a failed checkSymbol
+            {
+                return EvaluationMetrics.result(EvaluationMetrics.UNKNOWN_SYMBOL, i);
+            }
+            state = nextState(state, symbolIndex);
+            if (state == NO_TRANSITION) // Same as NextState returning -1
+            {
+                return EvaluationMetrics.result(EvaluationMetrics.MISSING_TRANSITION, i);
+            }
+        }
+        return EvaluationMetrics.result(finalStates[state] ? EvaluationMetrics.ACCEPTED : EvaluationMetrics.NOT_FINAL, length);
+    }
+
+    /** Runs a string that is read symbol by symbol with longest match, for alphabets with longer symbols.
+        @param input  The input string.
+        @return  True if the string ends in a final state. */
+    private boolean acceptsTokens(CharSequence input)
+    {
+        int state = 0;
+        int length = input.length();
+        for (int i = 0; i < length; )
+        {
+            long token = symbolMap.match(input, i, length);
+            int symbolIndex = SymbolMap.column(token);
+            if (symbolIndex == -1)
+            {
+                return false;
+            }
+            state = matrix != null ? matrix[state * alphabetSize + symbolIndex] : sparseNext(state, symbolIndex);
+            if (state == NO_TRANSITION)
+            {
+                return false;
+            }
+            i += SymbolMap.length(token);
+        }
+        return finalStates[state];
+    }
+}
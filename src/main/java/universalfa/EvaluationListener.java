@@ -0,0 +1,11 @@
+package universalfa;
+
+/** An interface that is told about every string an FA with metrics on evaluates */
+interface EvaluationListener
+{
+    /** Called once per string, on the evaluating thread.
+        @param consumed  Number of characters read, fewer than the string has if a symbol decided the reject early.
+        @param outcome  EvaluationMetrics.ACCEPTED or the reason the string was rejected.
+        @param nanos  Time the evaluation took. */
+    void evaluated(int consumed, int outcome, long nanos);
+}
@@ -0,0 +1,266 @@
+package universalfa;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/** A class that counts evaluated strings by outcome and keeps latency histograms per string length, exposed
+    as a JMX MBean. Counters are striped LongAdders updated once per string, so threads do not contend and the per-character
+    loops are untouched. Length bucket 0 holds empty strings and bucket b strings of 2^(b-1) to 2^b - 1 characters,
+    the last one everything longer, whatever number of characters an early reject read. Latency bucket k holds times from 2^k to 2^(k+1) - 1 nanoseconds.
+    Only whole-string evaluations are counted, see FiniteAutomataMachine.setMetrics. */
+class EvaluationMetrics implements DynamicMBean
+{
+    static final int ACCEPTED = 0; // Outcome of an accepted string
+    static final int UNKNOWN_SYMBOL = 1; // Rejected on a symbol that is not in the alphabet
+    static final int MISSING_TRANSITION = 2; // Rejected because the current state has no transition on a symbol
+    static final int NOT_FINAL = 3; // Rejected because the string ends in a state that is not final
+    static final String[] OUTCOMES = {"Accepts", "UnknownSymbolRejects", "MissingTransitionRejects", "NotFinalRejects"}; // Attribute name of each outcome
+    static final int LENGTH_BUCKETS = 16; // Power-of-two buckets of string length
+    static final int LATENCY_BUCKETS = 40; // Power-of-two latency buckets, the last holds everything slower
+
+    LongAdder characters = new LongAdder(); // Characters read by the evaluations, a reject can stop before the end of its string
+    LongAdder[] outcomes = new LongAdder[OUTCOMES.length]; // Strings per outcome, which add up to the strings evaluated
+    LongAdder[] latencies = new LongAdder[LENGTH_BUCKETS * LATENCY_BUCKETS]; // Strings of length bucket b and latency bucket k at b * LATENCY_BUCKETS + k
+    List<EvaluationListener> listeners = new CopyOnWriteArrayList<EvaluationListener>(); // Told about every string
+
+    /** Constructor with every counter at zero */
+    EvaluationMetrics()
+    {
+        for (int i = 0; i < outcomes.length; i++)
+        {
+            outcomes[i] = new LongAdder();
+        }
+        for (int i = 0; i < latencies.length; i++)
+        {
+            latencies[i] = new LongAdder();
+        }
+    }
+
+    /** Counts one evaluated string and tells the listeners.
+        @param length  Number of characters of the string, which picks the latency histogram.
+        @param consumed  Number of characters read, which the character counter adds up.
+        @param outcome  ACCEPTED or the reason for the reject.
+        @param nanos  Time the evaluation took. */
+    void record(int length, int consumed, int outcome, long nanos)
+    {
+        characters.add(consumed);
+        outcomes[outcome].increment();
+        latencies[lengthBucket(length) * LATENCY_BUCKETS + Math.min(LATENCY_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos | 1))].increment();
+        for (EvaluationListener listener: listeners)
+        {
+            listener.evaluated(consumed, outcome, nanos);
+        }
+    }
+
+    /** Packs the result of an evaluation into one long, so no object is created per string.
+        @param outcome  ACCEPTED or the reason for the reject.
+        @param consumed  Number of characters read, up to and including the symbol that decided a reject.
+        @return  The result, (long) consumed << 32 | outcome. */
+    static long result(int outcome, int consumed)
+    {
+        return (long) consumed << 32 | outcome;
+    }
+
+    /** Unpacks the outcome of an evaluation.
+        @param result  The result from evaluate.
+        @return  ACCEPTED or the reason for the reject. */
+    static int outcome(long result)
+    {
+        return (int) result;
+    }
+
+    /** Unpacks the number of characters an evaluation read.
+        @param result  The result from evaluate.
+        @return  Number of characters. */
+    static int consumed(long result)
+    {
+        return (int) (result >>> 32);
+    }
+
+    /** Finds the length bucket of a string.
+        @param length  Number of characters of the string.
+        @return  The bucket, 0 for none. */
+    static int lengthBucket(int length)
+    {
+        return Math.min(LENGTH_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(length));
+    }
+
+    /** Adds a listener that is told about every string from now on.
+        @param listener  The listener, called on the evaluating threads so it must be thread-safe. */
+    public void addListener(EvaluationListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /** Removes a listener.
+        @param listener  The listener. */
+    public void removeListener(EvaluationListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /** Retrieves the number of strings evaluated.
+        @return  Number of strings. */
+    public long getStrings()
+    {
+        long sum = 0;
+        for (LongAdder counter: outcomes)
+        {
+            sum += counter.sum();
+        }
+        return sum;
+    }
+
+    /** Retrieves the number of characters the evaluations read.
+        @return  Number of characters. */
+    public long getCharacters()
+    {
+        return characters.sum();
+    }
+
+    /** Retrieves the number of strings with an outcome.
+        @param outcome  ACCEPTED, UNKNOWN_SYMBOL, MISSING_TRANSITION or NOT_FINAL.
+        @return  Number of strings. */
+    public long getCount(int outcome)
+    {
+        return outcomes[outcome].sum();
+    }
+
+    /** Retrieves the number of strings rejected for any reason.
+        @return  Number of strings. */
+    public long getRejects()
+    {
+        return outcomes[UNKNOWN_SYMBOL].sum() + outcomes[MISSING_TRANSITION].sum() + outcomes[NOT_FINAL].sum();
+    }
+
+    /** Retrieves the latency histogram of the strings of one length bucket, keyed by string length and not characters read.
+        @param lengthBucket  The bucket, see lengthBucket.
+        @return  Number of strings per latency bucket. */
+    public long[] getLatencyHistogram(int lengthBucket)
+    {
+        long[] histogram = new long[LATENCY_BUCKETS];
+        for (int k = 0; k < LATENCY_BUCKETS; k++)
+        {
+            histogram[k] = latencies[lengthBucket * LATENCY_BUCKETS + k].sum();
+        }
+        return histogram;
+    }
+
+    /** Sets every counter back to zero. Counts made while resetting may be lost. */
+    public void reset()
+    {
+        characters.reset();
+        for (LongAdder counter: outcomes)
+        {
+            counter.reset();
+        }
+        for (LongAdder counter: latencies)
+        {
+            counter.reset();
+        }
+    }
+
+    /** Registers the counters with the platform MBean server.
+        @param name  The name attribute of the MBean, as in UniversalFA:type=EvaluationMetrics,name=...
+        @return  The object name it was registered under.
+        @throws JMException  If the name is malformed or already taken. */
+    public ObjectName register(String name) throws JMException
+    {
+        ObjectName objectName = new ObjectName("UniversalFA:type=EvaluationMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        switch (attribute)
+        {
+            case "Strings":
+                return getStrings();
+            case "Characters":
+                return getCharacters();
+            case "Rejects":
+                return getRejects();
+            case "LatencyHistograms": // One row per length bucket
+                long[][] histograms = new long[LENGTH_BUCKETS][];
+                for (int b = 0; b < LENGTH_BUCKETS; b++)
+                {
+                    histograms[b] = getLatencyHistogram(b);
+                }
+                return histograms;
+            default:
+                int outcome = Arrays.asList(OUTCOMES).indexOf(attribute);
+                if (outcome == -1)
+                {
+                    throw new AttributeNotFoundException(attribute);
+                }
+                return getCount(outcome);
+        }
+    }
+
+    public AttributeList getAttributes(String[] attributes)
+    {
+        AttributeList list = new AttributeList();
+        for (String attribute: attributes)
+        {
+            try
+            {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            }
+            catch (AttributeNotFoundException e) // Unknown names are left out
+            {
+            }
+        }
+        return list;
+    }
+
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList(); // None are writable
+    }
+
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException
+    {
+        if (action.equals("reset") && (params == null || params.length == 0))
+        {
+            reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    public MBeanInfo getMBeanInfo()
+    {
+        ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        attributes.add(new MBeanAttributeInfo("Strings", "long", "Strings evaluated", true, false, false));
+        attributes.add(new MBeanAttributeInfo("Characters", "long", "Characters read by the evaluations", true, false, false));
+        attributes.add(new MBeanAttributeInfo("Rejects", "long", "Strings rejected for any reason", true, false, false));
+        for (String outcome: OUTCOMES)
+        {
+            attributes.add(new MBeanAttributeInfo(outcome, "long", "Strings with this outcome", true, false, false));
+        }
+        attributes.add(new MBeanAttributeInfo("LatencyHistograms", long[][].class.getName(),
+            "Strings per power-of-two string length bucket and power-of-two nanosecond latency bucket", true, false, false));
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Sets every counter back to zero", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "Evaluation metrics of finite automata",
+            attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[] {reset}, null);
+    }
+}
@@ -0,0 +1,51 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that holds the outcome of a file scan */
+class FileScanResult
+{
+    static final int PAGE_BITS = 30; // Log2 of the records per page of results, a BitSet is indexed by int
+
+    long bytes; // Number of bytes read
+    long elapsedNanos; // Wall time of the scan
+    long records; // Number of records tested, 1 when the whole file is one input
+    long accepted; // Number of accepted records
+    ArrayList<BitSet> recordPages; // Bit i of page p on if record (p << PAGE_BITS) + i is accepted, null when the whole file is one input
+
+    /** Checks if a record was accepted, any number of records is held.
+        @param record  Index of the record, 0 for a file tested as one input.
+        @return  True if accepted.
+        @throws IllegalArgumentException  If there is no such record. */
+    public boolean isAccepted(long record)
+    {
+        if (record < 0 || record >= records)
+        {
+            throw new IllegalArgumentException("Record " + record + " out of range, " + records + " records");
+        }
+        if (recordPages == null)
+        {
+            return accepted == 1;
+        }
+        int page = (int) (record >>> PAGE_BITS);
+        return page < recordPages.size() && recordPages.get(page).get((int) (record & ((1 << PAGE_BITS) - 1)));
+    }
+
+    /** Marks a record as accepted, adding pages as needed. */
+    void setAccepted(long record)
+    {
+        int page = (int) (record >>> PAGE_BITS);
+        while (recordPages.size() <= page)
+        {
+            recordPages.add(new BitSet());
+        }
+        recordPages.get(page).set((int) (record & ((1 << PAGE_BITS) - 1)));
+    }
+
+    /** Retrieves the scan speed.
+        @return  Throughput in MB/s. */
+    public double getThroughput()
+    {
+        return elapsedNanos == 0 ? 0 : (bytes / 1e6) / (elapsedNanos / 1e9);
+    }
+}
@@ -0,0 +1,134 @@
+package universalfa;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/** A class that runs a compiled FA over memory-mapped files */
+class FileScanner
+{
+    static final long WINDOW_SIZE = 1L << 30; // Bytes mapped at a time, a single mapping is limited to 2 GB
+
+    /** Scans a file window by window.
+        @param machine  The compiled machine.
+        @param path  The file.
+        @param perRecord  True to test each newline-delimited record separately, a '\r' before the '\n' is dropped.
+        @return  The results and throughput of the scan.
+        @throws IOException  If the file cannot be mapped. */
+    static FileScanResult scan(CompiledAutomaton machine, Path path, boolean perRecord) throws IOException
+    {
+        FileScanResult result = new FileScanResult();
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (perRecord)
+            {
+                scanRecords(machine, channel, size, result);
+            }
+            else
+            {
+                AutomatonRun run = new AutomatonRun(machine);
+                for (long position = 0; position < size && !run.isDead(); position += WINDOW_SIZE) // Stops early once dead
+                {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+                    run.feed(window);
+                }
+                result.bytes = run.getOffset();
+                result.records = 1;
+                result.accepted = run.finish() ? 1 : 0;
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /** Tests every newline-delimited record of a file, records may cross window boundaries. */
+    private static void scanRecords(CompiledAutomaton machine, FileChannel channel, long size, FileScanResult result) throws IOException
+    {
+        int[] charColumns = machine.charColumns;
+        int[] matrix = machine.matrix;
+        int alphabetSize = machine.alphabetSize;
+        boolean[] finalStates = machine.finalStates;
+        long record = 0; // Index of the current record
+        long accepted = 0;
+        int state = 0;
+        boolean recordStarted = false; // True once the current record has any bytes
+        boolean pendingReturn = false; // True if the last byte was a '\r' that may end the record
+        result.recordPages = new ArrayList<BitSet>();
+        AutomatonRun run = machine.symbolMap.tokenized || machine.isSparse() ? new AutomatonRun(machine) : null; // Reads longer symbols by longest match, or steps sparse rows
+        for (long position = 0; position < size; position += WINDOW_SIZE)
+        {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++)
+            {
+                int b = window.get(i) & 0xFF;
+                if (b == '\n') // Ends the record
+                {
+                    if (run != null ? run.finish() : state != CompiledAutomaton.NO_TRANSITION && finalStates[state])
+                    {
+                        result.setAccepted(record);
+                        accepted++;
+                    }
+                    record++;
+                    state = 0;
+                    if (run != null)
+                    {
+                        run.reset();
+                    }
+                    recordStarted = false;
+                    pendingReturn = false;
+                    continue;
+                }
+                recordStarted = true;
+                if (pendingReturn) // The '\r' was not part of a line ending, so it is input
+                {
+                    state = step(charColumns, matrix, alphabetSize, state, '\r', run);
+                    pendingReturn = false;
+                }
+                if (b == '\r')
+                {
+                    pendingReturn = true;
+                    continue;
+                }
+                state = step(charColumns, matrix, alphabetSize, state, b, run);
+            }
+        }
+        if (recordStarted) // Last record without a trailing newline
+        {
+            if (pendingReturn)
+            {
+                state = step(charColumns, matrix, alphabetSize, state, '\r', run);
+            }
+            if (run != null ? run.finish() : state != CompiledAutomaton.NO_TRANSITION && finalStates[state])
+            {
+                result.setAccepted(record);
+                accepted++;
+            }
+            record++;
+        }
+        result.bytes = size;
+        result.records = record;
+        result.accepted = accepted;
+    }
+
+    /** Moves one character, staying dead once dead, or feeds it to the run if there is one. */
+    private static int step(int[] charColumns, int[] matrix, int alphabetSize, int state, int c, AutomatonRun run)
+    {
+        if (run != null)
+        {
+            run.feed((char) c);
+            return state;
+        }
+        if (state == CompiledAutomaton.NO_TRANSITION)
+        {
+            return state;
+        }
+        int symbolIndex = charColumns[c];
+        return symbolIndex == -1 ? CompiledAutomaton.NO_TRANSITION : matrix[state * alphabetSize + symbolIndex];
+    }
+}
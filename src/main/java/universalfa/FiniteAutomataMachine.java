@@ -0,0 +1,1258 @@
+package universalfa;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/** A class that simulates the universal FA machine */
+class FiniteAutomataMachine
+{
+    static final String EPSILON = "\u03B5"; // Greek small epsilon, symbol of an epsilon transition, accepted without being in the alphabet
+    static final int DETERMINIZE_STATE_LIMIT = 1 << 20; // Most DFA states compile() builds for a nondeterministic FA
+    static final long BIT_PARALLEL_MAX_BYTES = 64L << 20; // Memory bound of the masks of the bit-parallel simulation
+    static final int FLUSHES_BEFORE_BIT_PARALLEL = 8; // Flushes of one DFA state cache after which the NFA is evaluated bit-parallel
+
+    static final int EPSILON_LABEL = -1; // First and last character of an epsilon transition, a longer symbol i is stored as -2 - i
+
+    int[] alphabetRanges; // Characters of the alphabet as sorted, disjoint first, last pairs, single characters included
+    String[] longSymbols; // Alphabet symbols longer than one character, in sorted order
+    int numberOfSymbols; // Number of characters in the ranges plus the number of longer symbols
+    SymbolMap symbolMap; // Symbol to matrix column lookup, built with the matrix
+    States states; // Set of states
+    AutomatonBuilder transitions; // Stored transitions, a range of characters is one entry, null until filled in for an FA built from a compiled machine
+    int numberOfTransitions = 0; // Number of transitions, counting each character of a range
+    CompiledAutomaton compiled; // Transition matrix built from the transitions, dense or sparse, null until compiled
+    NfaProgram nfa; // Set instead of the matrix when the transitions are nondeterministic, null otherwise
+    ThreadLocal<LazyDfa> lazyDfas = new ThreadLocal<LazyDfa>(); // Per-thread DFA state cache for evaluating the NFA
+    int subsetBudget = -1; // Most DFA states the NFA may need before it is evaluated bit-parallel, -1 to switch on cache flushes instead
+    SearchAutomaton searcher; // Tables for finding matches inside a text, null until the first search
+    Lexer lexer; // Token table, null until the first tokenize or after the transitions or token types change
+    volatile BitParallelNfa bitParallel; // Masks of the NFA once its DFA exceeds the budget, null while the DFA state cache is used
+    volatile boolean switchTried; // True once the cache flushed enough to try bit-parallel, the masks may exceed their bound
+    ThreadLocal<BitParallelNfa> bitParallelRuns = new ThreadLocal<BitParallelNfa>(); // Per-thread scratch sets for the masks
+    long dfaCacheBytes = 8L << 20; // Memory bound of each DFA state cache
+    CacheStats cacheStats = new CacheStats(); // Hit and miss counters of all DFA state caches
+    EvaluationMetrics metrics; // Counters and latency histograms of evaluated strings, null while metrics are off
+
+    /** Constructor with a given alphabet and set of states */
+    FiniteAutomataMachine(Alphabet alpha, States states)
+    {
+        TreeSet<String> symbols = new TreeSet<String>(Arrays.asList(alpha.getArray()).subList(0, alpha.numberOfSymbols)); // Removes any duplicate symbols
+        int numberOfRanges = alpha.numberOfRanges;
+        int[] ranges = Arrays.copyOf(alpha.getRanges(), 2 * (numberOfRanges + symbols.size()));
+        ArrayList<String> longer = new ArrayList<String>();
+        for (String symbol: symbols)
+        {
+            if (symbol.isEmpty()) // Left by a separator at the start of the alphabet line, reads nothing
+            {
+                continue;
+            }
+            if (symbol.length() == 1) // Single characters join the ranges
+            {
+                ranges[2 * numberOfRanges] = symbol.charAt(0);
+                ranges[2 * numberOfRanges + 1] = symbol.charAt(0);
+                numberOfRanges++;
+            }
+            else
+            {
+                longer.add(symbol);
+            }
+        }
+        setAlphabet(SymbolMap.mergeRanges(ranges, numberOfRanges), longer.toArray(new String[longer.size()]));
+        this.states = new States(states);
+        transitions = newBuilder();
+    }
+
+    /** Constructor with a builder, its transitions are kept as they are and later ones are added to it */
+    FiniteAutomataMachine(AutomatonBuilder builder)
+    {
+        setAlphabet(builder.alphabetRanges, builder.longSymbols);
+        this.states = new States(builder.numberOfStates);
+        for (int state = 0; state < builder.numberOfStates; state++)
+        {
+            if (builder.isFinal(state))
+            {
+                states.setFinalState(state);
+            }
+        }
+        transitions = builder;
+        for (int i = 0; i < builder.numberOfEntries; i++)
+        {
+            numberOfTransitions += builder.first[i] >= 0 ? builder.last[i] - builder.first[i] + 1 : 1;
+        }
+    }
+
+    /** Constructor with a compiled machine, the transitions are only filled in when they are needed */
+    FiniteAutomataMachine(CompiledAutomaton machine)
+    {
+        SymbolMap map = machine.symbolMap;
+        int[] ranges = new int[2 * map.numberOfClasses];
+        for (int c = 0; c < map.numberOfClasses; c++)
+        {
+            ranges[2 * c] = map.classFirst[c];
+            ranges[2 * c + 1] = map.classLast[c];
+        }
+        setAlphabet(SymbolMap.mergeRanges(ranges, map.numberOfClasses), map.longSymbols);
+        this.symbolMap = map;
+        this.states = new States(machine.numberOfStates);
+        for (int state = 0; state < machine.numberOfStates; state++)
+        {
+            if (machine.isFinal(state))
+            {
+                states.setTokenType(state, machine.tokenType(state));
+            }
+        }
+        this.compiled = machine;
+    }
+
+    /** Creates an empty builder over the alphabet and states of the FA. */
+    private AutomatonBuilder newBuilder()
+    {
+        AutomatonBuilder builder = new AutomatonBuilder(alphabetRanges, longSymbols);
+        Boolean[] stateArray = states.getArray();
+        for (int state = 0; state < states.getNumberOfStates(); state++)
+        {
+            builder.addState(stateArray[state]);
+        }
+        return builder;
+    }
+
+    /** Sets the alphabet and counts its symbols. */
+    private void setAlphabet(int[] alphabetRanges, String[] longSymbols)
+    {
+        this.alphabetRanges = alphabetRanges;
+        this.longSymbols = longSymbols;
+        numberOfSymbols = longSymbols.length;
+        for (int i = 0; i < alphabetRanges.length; i += 2)
+        {
+            numberOfSymbols += alphabetRanges[i + 1] - alphabetRanges[i] + 1;
+        }
+    }
+
+    /** Fills in the transitions from the compiled machine, if the FA was built from one.
+        Each nonempty cell becomes one entry, a class of characters stays one range. */
+    private void fillTable()
+    {
+        if (transitions != null)
+        {
+            return;
+        }
+        transitions = newBuilder();
+        CompiledAutomaton machine = compiled;
+        for (int state = 0; state < machine.numberOfStates; state++)
+        {
+            if (machine.isSparse()) // Only the filled cells are stored
+            {
+                for (int i = machine.rowStart[state]; i < machine.rowStart[state + 1]; i++)
+                {
+                    addCell(state, machine.rowColumns[i], machine.rowTargets[i]);
+                }
+                continue;
+            }
+            for (int column = 0; column < machine.alphabetSize; column++)
+            {
+                int toState = machine.nextState(state, column);
+                if (toState != CompiledAutomaton.NO_TRANSITION)
+                {
+                    addCell(state, column, toState);
+                }
+            }
+        }
+        compiled = machine; // Same transitions, the matrix stays valid
+    }
+
+    /** Adds the entry of one filled cell of the compiled machine, a class of characters stays one range. */
+    private void addCell(int state, int column, int toState)
+    {
+        SymbolMap map = symbolMap; // Same as the compiled machine's, which addEntry clears
+        if (column < map.numberOfClasses)
+        {
+            addEntry(state, map.classFirst[column], map.classLast[column], toState);
+            numberOfTransitions += map.classLast[column] - map.classFirst[column] + 1;
+        }
+        else
+        {
+            addEntry(state, -2 - (column - map.numberOfClasses), -2 - (column - map.numberOfClasses), toState);
+            numberOfTransitions++;
+        }
+    }
+
+    /** Adds a transition with a given source state, alphabet symbol, and destination state.
+        @param fromState  A source state. 
+        @param symbol  An alphabet symbol. 
+        @param toState  A destination state. */
+    public void addTransition(String fromState, String symbol, String toState)
+    {
+        fillTable();
+        if (checkState(fromState) == false) // Checks if source state exists
+        {
+            System.out.println("State '" + fromState + "' does not exist");
+        }
+        if (checkSymbol(symbol) == false && !symbol.equals(EPSILON)) // Checks if alphabet symbol exists
+        {
+            System.out.println("Symbol '" + symbol + "' does not exist");
+        }
+        if (checkState(toState) == false) // Checks if destination state exists
+        {
+            System.out.println("State '" + toState + "' does not exist");
+        }
+        if (checkState(fromState) && (checkSymbol(symbol) || symbol.equals(EPSILON)) && checkState(toState)) // If all exists, transition is added
+        {
+            int label;
+            if (symbol.equals(EPSILON))
+            {
+                label = EPSILON_LABEL;
+            }
+            else if (symbol.length() == 1)
+            {
+                label = symbol.charAt(0);
+            }
+            else
+            {
+                label = -2 - Arrays.binarySearch(longSymbols, symbol);
+            }
+            if (addEntry(Integer.parseInt(fromState), label, label, Integer.parseInt(toState)))
+            {
+                numberOfTransitions++;
+            }
+        }
+    }
+
+    /** Adds a transition on every character from first to last, stored as a single range entry.
+        Characters that are not in the alphabet are reported and left out.
+        @param fromState  A source state.
+        @param first  The first character of the range.
+        @param last  The last character of the range.
+        @param toState  A destination state. */
+    public void addTransition(String fromState, char first, char last, String toState)
+    {
+        fillTable();
+        if (checkState(fromState) == false) // Checks if source state exists
+        {
+            System.out.println("State '" + fromState + "' does not exist");
+        }
+        if (checkState(toState) == false) // Checks if destination state exists
+        {
+            System.out.println("State '" + toState + "' does not exist");
+        }
+        int c = first;
+        while (c <= last) // Walks the range one alphabet range or gap at a time
+        {
+            int range = SymbolMap.findRange(alphabetRanges, c);
+            if (range == -1) // Gap up to the next alphabet range
+            {
+                int end = last;
+                for (int i = 0; i < alphabetRanges.length; i += 2)
+                {
+                    if (alphabetRanges[i] > c)
+                    {
+                        end = Math.min(last, alphabetRanges[i] - 1);
+                        break;
+                    }
+                }
+                if (end == c)
+                {
+                    System.out.println("Symbol '" + (char) c + "' does not exist");
+                }
+                else
+                {
+                    System.out.println("Symbols '" + (char) c + "-" + (char) end + "' do not exist");
+                }
+                c = end + 1;
+                continue;
+            }
+            int end = Math.min(last, alphabetRanges[2 * range + 1]);
+            if (checkState(fromState) && checkState(toState))
+            {
+                if (addEntry(Integer.parseInt(fromState), c, end, Integer.parseInt(toState)))
+                {
+                    numberOfTransitions += end - c + 1;
+                }
+            }
+            c = end + 1;
+        }
+    }
+
+    /** Stores one transition entry, a repeat of a stored entry is dropped.
+        @return  True if the entry is new. */
+    private boolean addEntry(int fromState, int first, int last, int toState)
+    {
+        if (!transitions.addTransition(fromState, first, last, toState))
+        {
+            return false;
+        }
+        compiled = null; // Transitions changed, matrix has to be rebuilt
+        nfa = null;
+        bitParallel = null;
+        lexer = null;
+        return true;
+    }
+
+    /** Checks if every state has at most one destination per symbol and there are no epsilon transitions.
+        @return  True if the FA is deterministic. */
+    public boolean isDeterministic()
+    {
+        if (compiled == null && nfa == null)
+        {
+            buildProgram();
+        }
+        return nfa == null;
+    }
+
+    /** Compiles the transitions into a transition matrix, stored as sparse rows if few of its cells are filled.
+        The matrix is built once and reused until the transitions change.
+        A nondeterministic FA is determinized by subset construction first.
+        @return  The compiled automaton.
+        @throws IllegalStateException  If determinization needs more than DETERMINIZE_STATE_LIMIT states. */
+    public CompiledAutomaton compile()
+    {
+        if (compiled == null && (nfa != null || !buildProgram()))
+        {
+            ArrayList<int[]> sets = new ArrayList<int[]>();
+            compiled = nfa.determinize(DETERMINIZE_STATE_LIMIT, sets);
+            compiled = compiled.withTokenTypes(tokenTypes(sets));
+        }
+        return compiled;
+    }
+
+    /** Builds the matrix from the transitions, or the NFA program if a cell has more than one destination.
+        @return  True if the FA is deterministic and the matrix was built. */
+    private boolean buildProgram()
+    {
+        symbolMap = transitions.classes();
+        compiled = transitions.buildDeterministic(symbolMap);
+        if (compiled != null)
+        {
+            compiled = compiled.withTokenTypes(tokenTypes(null));
+        }
+        else
+        {
+            nfa = transitions.buildNfa(symbolMap);
+            switchTried = false;
+            bitParallel = null;
+            if (subsetBudget >= 0)
+            {
+                chooseBackend();
+            }
+        }
+        return compiled != null;
+    }
+
+    /** Collects the token types of the compiled states, the smallest type of the final NFA states in a DFA state's set.
+        @param sets  The NFA state set of each DFA state, or null if the states are those of the FA.
+        @return  The token types, or null if every final state has type 0. */
+    private int[] tokenTypes(List<int[]> sets)
+    {
+        boolean typed = false;
+        for (int state = 0; state < states.getNumberOfStates(); state++)
+        {
+            typed |= states.getTokenType(state) > 0;
+        }
+        if (!typed)
+        {
+            return null;
+        }
+        if (sets == null)
+        {
+            return Arrays.copyOf(states.tokenTypes, states.getNumberOfStates());
+        }
+        int[] tokenTypes = new int[sets.size()];
+        for (int state = 0; state < tokenTypes.length; state++)
+        {
+            int type = Lexer.NO_TOKEN;
+            for (int nfaState: sets.get(state))
+            {
+                int nfaType = states.getTokenType(nfaState);
+                if (nfaType != Lexer.NO_TOKEN && (type == Lexer.NO_TOKEN || nfaType < type))
+                {
+                    type = nfaType;
+                }
+            }
+            tokenTypes[state] = type;
+        }
+        return tokenTypes;
+    }
+
+    /** Picks how the NFA is evaluated once a budget is set: through the DFA state cache if the subset construction stays
+        within the budget, bit-parallel otherwise, so a DFA that blows up never costs more than linear time and bounded memory. */
+    private void chooseBackend()
+    {
+        bitParallel = nfa.subsetsWithin(subsetBudget) ? null : BitParallelNfa.build(nfa, BIT_PARALLEL_MAX_BYTES); // Too many cells keeps the cache
+    }
+
+    /** Sets the most DFA states a nondeterministic FA may need before it is evaluated bit-parallel, which fixes the backend.
+        Without a budget the FA starts on the DFA state cache and switches once a cache has flushed FLUSHES_BEFORE_BIT_PARALLEL
+        times. Checking the budget runs the subset construction up to that many states, so a large budget costs as much as compile().
+        @param states  The budget, 0 always evaluates bit-parallel. */
+    public void setSubsetBudget(int states)
+    {
+        if (states < 0)
+        {
+            throw new IllegalArgumentException("Subset budget must not be negative");
+        }
+        subsetBudget = states;
+        if (nfa != null)
+        {
+            chooseBackend();
+        }
+    }
+
+    /** Checks if the nondeterministic FA is evaluated bit-parallel, because its DFA exceeds the subset budget or kept flushing the cache.
+        @return  True if accepts uses the bit-parallel simulation. */
+    public boolean isBitParallel()
+    {
+        isDeterministic();
+        return bitParallel != null;
+    }
+
+    /** Retrieves this thread's bit-parallel simulation of the NFA, creating it if needed.
+        @return  The simulation. */
+    BitParallelNfa bitParallelRun()
+    {
+        BitParallelNfa run = bitParallelRuns.get();
+        if (run == null || run.masks != bitParallel.masks) // New thread, or the table changed since
+        {
+            run = new BitParallelNfa(bitParallel);
+            bitParallelRuns.set(run);
+        }
+        return run;
+    }
+
+    /** Retrieves this thread's DFA state cache for the NFA, creating it if needed.
+        @return  The cache. */
+    LazyDfa lazyDfa()
+    {
+        LazyDfa cache = lazyDfas.get();
+        if (cache == null || cache.program != nfa) // New thread, or the table changed since
+        {
+            cache = new LazyDfa(nfa, dfaCacheBytes, cacheStats);
+            lazyDfas.set(cache);
+        }
+        return cache;
+    }
+
+    /** Switches to bit-parallel if a cache has flushed too often and no budget fixes the backend, trying only once.
+        @param cache  The cache that just evaluated a string. */
+    private void switchOnFlushes(LazyDfa cache)
+    {
+        if (cache.totalFlushes >= FLUSHES_BEFORE_BIT_PARALLEL && subsetBudget < 0 && !switchTried)
+        {
+            switchTried = true;
+            bitParallel = BitParallelNfa.build(cache.program, BIT_PARALLEL_MAX_BYTES); // Too many cells keeps the cache
+        }
+    }
+
+    /** Sets the memory bound of each DFA state cache used to evaluate a nondeterministic FA.
+        A cache that reaches the bound is flushed and starts over.
+        @param bytes  The bound in bytes. */
+    public void setDfaCacheBytes(long bytes)
+    {
+        dfaCacheBytes = bytes;
+        lazyDfas = new ThreadLocal<LazyDfa>(); // Caches are rebuilt with the new bound
+    }
+
+    /** Retrieves the hit, miss and flush counters of the DFA state caches.
+        @return  The counters. */
+    public CacheStats getCacheStats()
+    {
+        return cacheStats;
+    }
+
+    /** Checks if state exists.
+        @param state  The given state to check.
+        @return  True if state exists. */
+    public boolean checkState(String state)
+    {
+        try 
+        { 
+            return (Integer.parseInt(state) < states.getNumberOfStates() && Integer.parseInt(state) >= 0);
+        }
+        catch (Exception e) // Avoids crashes if state is not an integer
+        {
+            return false;
+        }
+    }
+
+    /** Checks if alphabet symbol exists.
+        @param symbol  The given symbol to check.
+        @return  True if symbol exists. */
+    public boolean checkSymbol(String symbol)
+    {
+        if (symbol.length() == 1)
+        {
+            return SymbolMap.findRange(alphabetRanges, symbol.charAt(0)) != -1;
+        }
+        return Arrays.binarySearch(longSymbols, symbol) >= 0;
+    }
+
+    /** Sets the token type a final state stands for when the FA is used as a lexer.
+        When several final states are reached on the same input, the smallest type wins.
+        @param state  The final state.
+        @param type  The token type, 0 or more. */
+    public void setTokenType(int state, int type)
+    {
+        if (state < 0 || state >= states.getNumberOfStates() || !states.getArray()[state])
+        {
+            throw new IllegalArgumentException("State '" + state + "' is not a final state");
+        }
+        states.setTokenType(state, type);
+        if (compiled != null && nfa == null) // Same transitions, only the token types change
+        {
+            compiled = compiled.withTokenTypes(tokenTypes(null));
+        }
+        else
+        {
+            compiled = null; // The DFA of an NFA takes the token types of its state sets when it is rebuilt
+        }
+        lexer = null;
+    }
+
+    /** Retrieves the token type of a state.
+        @param state  The state.
+        @return  The token type, or Lexer.NO_TOKEN if the state is not final. */
+    public int getTokenType(int state)
+    {
+        return states.getTokenType(state);
+    }
+
+    /** Splits an input into tokens by maximal munch, the longest prefix that reaches a final state each time.
+        The token table is built on first use, tokens are appended to a buffer that can be reused.
+        @param input  The input string.
+        @param tokens  Receives the tokens, see Lexer.tokenize.
+        @return  Number of tokens appended. */
+    public int tokenize(CharSequence input, TokenBuffer tokens)
+    {
+        if (lexer == null)
+        {
+            lexer = new Lexer(this);
+        }
+        return lexer.tokenize(input, tokens);
+    }
+
+    /** Displays the set of final states of the FA. */
+    public void displayFinalStates()
+    {
+        Boolean[] tempArray = states.getArray();
+        int numberOfFinalStates = 0;
+        for (int index = 0; index < tempArray.length; index++) // Iterates through the states set
+        {
+            if (tempArray[index] == true)
+            {
+                numberOfFinalStates++;
+                int count = 0;
+                for (int j = index + 1; j < tempArray.length; j++) // Checks if there are anymore final states after the current state
+                {
+                    if (tempArray[j] == true)
+                    {
+                        count++;
+                    }
+                }
+                if (count > 0) // Avoids any extra commas after last final state is printed
+                {
+                    System.out.print(index + ", ");
+                }
+                else
+                {
+                    System.out.print(index);
+                }
+            }
+        }
+        if (numberOfFinalStates == 0) // If there are no final states, print none
+        {
+            System.out.print("none");
+        }
+        System.out.println();
+    }
+
+    /** Displays the alphabet of the FA, a range of characters as its first and last character. */
+    public void displayAlphabet()
+    {
+        TreeMap<String, String> alphabet = new TreeMap<String, String>(); // Longer symbols and ranges, sorted by their first symbol
+        for (String symbol: longSymbols)
+        {
+            alphabet.put(symbol, symbol);
+        }
+        for (int i = 0; i < alphabetRanges.length; i += 2)
+        {
+            alphabet.put(Character.toString((char) alphabetRanges[i]), rangeLabel(alphabetRanges[i], alphabetRanges[i + 1]));
+        }
+        System.out.println(String.join(", ", alphabet.values()));
+    }
+
+    /** Displays the transition table of the FA.
+        The full table lists the stored entries, a range of characters as one row, the simplified table
+        also joins neighbouring digits or letters that go to the same state and is shown if it is shorter. */
+    public void displayTransitionTable()
+    {
+        fillTable();
+        int[] transitionFrom = transitions.from;
+        int[] transitionFirst = transitions.first;
+        int[] transitionLast = transitions.last;
+        int[] transitionTo = transitions.to;
+        int numberOfEntries = transitions.numberOfEntries;
+        // Full table, one row per entry, sorted by state, symbol and destination without duplicates
+        String[][] fullTable = new String[numberOfEntries][];
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            String symbol = transitionFirst[i] < 0 ? label(transitionFirst[i]) : rangeLabel(transitionFirst[i], transitionLast[i]);
+            fullTable[i] = new String[] {Integer.toString(transitionFrom[i]), symbol, Integer.toString(transitionTo[i])};
+        }
+        Comparator<String[]> order = new Comparator<String[]>()
+        {
+            public int compare(String[] a, String[] b)
+            {
+                int result = a[0].compareTo(b[0]);
+                if (result == 0)
+                {
+                    result = a[1].compareTo(b[1]);
+                }
+                return result != 0 ? result : a[2].compareTo(b[2]);
+            }
+        };
+        Arrays.sort(fullTable, order);
+        int fullRows = 0; // Removes any duplicate transitions
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            if (fullRows == 0 || order.compare(fullTable[fullRows - 1], fullTable[i]) != 0)
+            {
+                fullTable[fullRows++] = fullTable[i];
+            }
+        }
+
+        // Simplified table, straight from the entries sorted the same way
+        Integer[] entries = new Integer[numberOfEntries];
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            entries[i] = i;
+        }
+        Arrays.sort(entries, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                int result = Integer.toString(transitionFrom[a]).compareTo(Integer.toString(transitionFrom[b]));
+                if (result == 0)
+                {
+                    result = label(transitionFirst[a]).compareTo(label(transitionFirst[b]));
+                }
+                return result != 0 ? result : Integer.toString(transitionTo[a]).compareTo(Integer.toString(transitionTo[b]));
+            }
+        });
+        String[][] simpleTable = new String[numberOfEntries][]; // Simplified transition table
+        int simpleRows = 0;
+        for (int i = 0; i < numberOfEntries; )
+        {
+            int entry = entries[i++];
+            int first = transitionFirst[entry];
+            int last = transitionLast[entry];
+            while (first >= 0 && i < numberOfEntries) // Joins the following entries of the same run
+            {
+                int next = entries[i];
+                if (transitionFrom[next] != transitionFrom[entry] || transitionTo[next] != transitionTo[entry] || transitionFirst[next] < 0)
+                {
+                    break;
+                }
+                boolean overlaps = transitionFirst[next] <= last;
+                boolean digits = Character.isDigit(last) && Character.isDigit(transitionFirst[next]);
+                boolean letters = Character.isLetter(last) && Character.isLetter(transitionFirst[next]);
+                if (!overlaps && !(transitionFirst[next] == last + 1 && (digits || letters)))
+                {
+                    break;
+                }
+                last = Math.max(last, transitionLast[next]);
+                i++;
+            }
+            String symbol = first < 0 ? label(first) : rangeLabel(first, last);
+            simpleTable[simpleRows++] = new String[] {Integer.toString(transitionFrom[entry]), symbol, Integer.toString(transitionTo[entry])};
+        }
+
+        boolean needSimpleTable = simpleRows < fullRows; // Signals if joining entries made the table shorter
+        long cells = countCells(entries);
+        if (needSimpleTable)
+        {
+            System.out.println("Full Table");
+        }
+        printTable(fullTable, fullRows, cells);
+        if (needSimpleTable)
+        {
+            System.out.println("Simplified Table");
+            printTable(simpleTable, simpleRows, cells);
+        }
+    }
+
+    /** Counts the distinct (state, symbol, destination) cells the entries cover, without listing their characters.
+        @param entries  Entry indices, sorted in place by state, destination and first character. */
+    private long countCells(Integer[] entries)
+    {
+        int[] transitionFrom = transitions.from;
+        int[] transitionFirst = transitions.first;
+        int[] transitionLast = transitions.last;
+        int[] transitionTo = transitions.to;
+        Arrays.sort(entries, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                int result = Integer.compare(transitionFrom[a], transitionFrom[b]);
+                if (result == 0)
+                {
+                    result = Integer.compare(transitionTo[a], transitionTo[b]);
+                }
+                return result != 0 ? result : Integer.compare(transitionFirst[a], transitionFirst[b]);
+            }
+        });
+        long cells = 0;
+        int covered = -1; // Last character counted for the current state and destination
+        for (int i = 0; i < entries.length; i++)
+        {
+            int entry = entries[i];
+            boolean sameGroup = i > 0 && transitionFrom[entries[i - 1]] == transitionFrom[entry] && transitionTo[entries[i - 1]] == transitionTo[entry];
+            if (!sameGroup)
+            {
+                covered = -1;
+            }
+            if (transitionFirst[entry] < 0) // An epsilon or a longer symbol, repeats are never stored
+            {
+                cells++;
+                continue;
+            }
+            if (transitionLast[entry] > covered) // Counts only the characters past the ones already counted
+            {
+                cells += transitionLast[entry] - Math.max(transitionFirst[entry], covered + 1) + 1;
+                covered = transitionLast[entry];
+            }
+        }
+        return cells;
+    }
+
+    /** Retrieves the label of a range of characters, a single character stands for itself. */
+    private static String rangeLabel(int first, int last)
+    {
+        return first == last ? Character.toString((char) first) : (char) first + "-" + (char) last;
+    }
+
+    /** Retrieves the symbol of a transition label, a character, an epsilon or a longer symbol. */
+    private String label(int first)
+    {
+        if (first == EPSILON_LABEL)
+        {
+            return EPSILON;
+        }
+        return first >= 0 ? Character.toString((char) first) : longSymbols[-2 - first];
+    }
+
+    /** Displays the rows of a transition table, a table that does not fill the alphabet ends with an empty row.
+        @param cells  Number of (state, symbol, destination) cells the rows cover. */
+    private void printTable(String[][] table, int numberOfRows, long cells)
+    {
+        if (numberOfTransitions == 0) // If there are no transitions, display message
+        {
+            System.out.println("\tNo transitions");
+            return;
+        }
+        for (int i = 0; i < numberOfRows; i++)
+        {
+            System.out.println("\t" + table[i][0] + " " + table[i][1] + " " + table[i][2] + " ");
+        }
+        if (cells != getTableSize())
+        {
+            System.out.println("\t");
+        }
+    }
+
+    /** Formats and displays the test string table results.
+        @param testStrings  An array of test strings, optionally ended by '.....'.
+        @return  Number of strings tested, 0 if there were none. */
+    public int test(String[] testStrings)
+    {
+        int count = 0; // Number of test strings before the end marker
+        while (count < testStrings.length && testStrings[count] != null && !testStrings[count].equals("....."))
+        {
+            count++;
+        }
+        if (count == 0)
+        {
+            System.out.println("\tNo strings to test\n");
+            return 0;
+        }
+        boolean[] results = new boolean[count];
+        acceptAll(Arrays.asList(testStrings).subList(0, count), results); // Evaluates the whole batch before printing
+        for (int i = 0; i < count; i++)
+        {
+            if (testStrings[i].equals("")) // Denotes an empty string
+            {
+                System.out.print("\t(empty)\t\t\t");
+            }
+            else
+            {
+                // Some formatting to give the test string table results a cleaner look
+                if (testStrings[i].length() >= 16)
+                {
+                    System.out.print("\t" + testStrings[i] + "\t");
+                }
+                else if (testStrings[i].length() >= 8)
+                {
+                    System.out.print("\t" + testStrings[i] + "\t\t");
+                }
+                else
+                {
+                    System.out.print("\t" + testStrings[i] + "\t\t\t");
+                }
+            }
+            System.out.println(results[i] ? "Accept" : "Reject");
+        }
+        return count;
+    }
+
+    /** Checks if the FA accepts a string, without printing anything.
+        @param input  The input string.
+        @return  True if the string is accepted. */
+    public boolean accepts(CharSequence input)
+    {
+        if (metrics != null) // Off costs this one check
+        {
+            long start = System.nanoTime();
+            long result = evaluate(input);
+            metrics.record(input.length(), EvaluationMetrics.consumed(result), EvaluationMetrics.outcome(result), System.nanoTime() - start);
+            return EvaluationMetrics.outcome(result) == EvaluationMetrics.ACCEPTED;
+        }
+        if (isDeterministic() || compiled != null) // Uses the matrix if there is one
+        {
+            return compiled.accepts(input);
+        }
+        if (bitParallel != null)
+        {
+            return bitParallelRun().accepts(input);
+        }
+        LazyDfa cache = lazyDfa();
+        boolean accepted = cache.accepts(input);
+        switchOnFlushes(cache);
+        return accepted;
+    }
+
+    /** Checks if the FA accepts a string and tells why it does not, without printing anything or recording metrics.
+        @param input  The input string.
+        @return  The outcome, EvaluationMetrics.ACCEPTED or one of UNKNOWN_SYMBOL, MISSING_TRANSITION and NOT_FINAL,
+                 packed with the number of characters read, see EvaluationMetrics.outcome and consumed. */
+    public long evaluate(CharSequence input)
+    {
+        if (isDeterministic() || compiled != null)
+        {
+            return compiled.evaluate(input);
+        }
+        if (bitParallel != null)
+        {
+            return bitParallelRun().evaluate(input);
+        }
+        LazyDfa cache = lazyDfa();
+        long result = cache.evaluate(input);
+        switchOnFlushes(cache);
+        return result;
+    }
+
+    /** Turns metrics on with a given set of counters, which several FAs may share, or off with null.
+        Once on, every string evaluated by accepts, test, acceptAll and acceptAllParallel is counted and timed, per string
+        and never per character. Runs that do not evaluate whole strings one at a time are not counted: acceptsSpeculative,
+        newRun, scanFile, the searches, tokenize and MachineSet.
+        @param metrics  The counters, see EvaluationMetrics.register to expose them through JMX. */
+    public void setMetrics(EvaluationMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /** Retrieves the counters metrics are recorded in.
+        @return  The counters, or null while metrics are off. */
+    public EvaluationMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /** Evaluates a batch of strings into a caller-supplied array, without printing anything.
+        @param inputs  The input strings.
+        @param results  Array of at least inputs.size() slots, slot i is set to true if string i is accepted. */
+    public void acceptAll(List<? extends CharSequence> inputs, boolean[] results)
+    {
+        if (results.length < inputs.size())
+        {
+            throw new IllegalArgumentException("Results array holds " + results.length + " slots, " + inputs.size() + " needed");
+        }
+        int index = 0;
+        for (CharSequence input: inputs) // Iterator keeps linked lists linear
+        {
+            results[index++] = accepts(input);
+        }
+    }
+
+    /** Evaluates a batch of strings, without printing anything.
+        @param inputs  The input strings.
+        @return  A set with bit i on if string i is accepted. */
+    public BitSet acceptAll(List<? extends CharSequence> inputs)
+    {
+        BitSet results = new BitSet(inputs.size());
+        int index = 0;
+        for (CharSequence input: inputs)
+        {
+            if (accepts(input))
+            {
+                results.set(index);
+            }
+            index++;
+        }
+        return results;
+    }
+
+    /** Evaluates a batch of strings on several cores into a caller-supplied array.
+        The compiled matrix is only read during evaluation, so the strings are split into chunks
+        that run independently, and results keep the original order.
+        @param inputs  The input strings.
+        @param results  Array of at least inputs.size() slots, slot i is set to true if string i is accepted.
+        @param parallelism  Number of worker threads.
+        @param chunkSize  Number of strings a worker evaluates without splitting further. */
+    public void acceptAllParallel(List<? extends CharSequence> inputs, boolean[] results, int parallelism, int chunkSize)
+    {
+        if (results.length < inputs.size())
+        {
+            throw new IllegalArgumentException("Results array holds " + results.length + " slots, " + inputs.size() + " needed");
+        }
+        if (parallelism < 1 || chunkSize < 1)
+        {
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        }
+        isDeterministic(); // Compiles before the workers start, so they only read it
+        CharSequence[] inputArray = inputs.toArray(new CharSequence[inputs.size()]); // Random access for splitting
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            pool.invoke(new BatchTask(this, inputArray, results, 0, inputArray.length, chunkSize));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /** Evaluates a batch of strings on several cores.
+        @param inputs  The input strings.
+        @param parallelism  Number of worker threads.
+        @param chunkSize  Number of strings a worker evaluates without splitting further.
+        @return  A set with bit i on if string i is accepted. */
+    public BitSet acceptAllParallel(List<? extends CharSequence> inputs, int parallelism, int chunkSize)
+    {
+        boolean[] results = new boolean[inputs.size()];
+        acceptAllParallel(inputs, results, parallelism, chunkSize);
+        BitSet bits = new BitSet(results.length);
+        for (int i = 0; i < results.length; i++)
+        {
+            if (results[i])
+            {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    /** Checks if the FA accepts one large string using several cores.
+        The string is split into chunks, each chunk is run from every state at once to get a
+        state to state mapping, and the mappings are composed left to right.
+        Falls back to the sequential run when the machine has too many states for this to pay off,
+        or when it has symbols longer than one character, which a chunk boundary could split.
+        @param input  The input string.
+        @param parallelism  Number of worker threads.
+        @param chunkSize  Number of characters a worker runs without splitting further.
+        @param maxStates  Largest number of states that is still run speculatively.
+        @return  True if the string is accepted, same as accepts(input). */
+    public boolean acceptsSpeculative(CharSequence input, int parallelism, int chunkSize, int maxStates)
+    {
+        if (parallelism < 1 || chunkSize < 1)
+        {
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        }
+        CompiledAutomaton machine = compile();
+        if (machine.numberOfStates > maxStates || parallelism == 1 || input.length() <= chunkSize || machine.symbolMap.tokenized) // Chunks could split a longer symbol
+        {
+            return machine.accepts(input);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            int[] mapping = pool.invoke(new SpeculativeTask(machine, input, 0, input.length(), chunkSize, true));
+            int state = mapping[0];
+            return state != CompiledAutomaton.NO_TRANSITION && machine.isFinal(state);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /** Starts an incremental run that takes its input in pieces.
+        @return  A run positioned at state 0. */
+    public AutomatonRun newRun()
+    {
+        if (isDeterministic() || compiled != null)
+        {
+            return new AutomatonRun(compiled);
+        }
+        return new AutomatonRun(new LazyDfa(nfa, dfaCacheBytes, cacheStats)); // Own cache, so run state ids stay valid
+    }
+
+    /** Retrieves the tables for finding matches inside a text, building them on first use.
+        @return  The search tables of the compiled machine.
+        @throws IllegalStateException  If the FA has symbols longer than one character. */
+    public SearchAutomaton searcher()
+    {
+        CompiledAutomaton machine = compile();
+        if (searcher == null || searcher.machine != machine) // First search, or the table changed since
+        {
+            searcher = new SearchAutomaton(machine);
+        }
+        return searcher;
+    }
+
+    /** Finds every offset where a match ends inside a text, with the leftmost start of a match ending there.
+        @param text  The text.
+        @param listener  Receives the start and end offset of each match.
+        @return  Number of matches. */
+    public int findAll(CharSequence text, MatchListener listener)
+    {
+        return searcher().findAll(text, listener);
+    }
+
+    /** Finds the leftmost-longest, non-overlapping matches inside a text.
+        @param text  The text.
+        @param matches  Receives match i as (long) start << 32 | end, matches past its length are counted but not stored.
+        @return  Number of matches, more than matches.length if the buffer was too small. */
+    public int findLeftmostLongest(CharSequence text, long[] matches)
+    {
+        return searcher().findLeftmostLongest(text, matches);
+    }
+
+    /** Scans a file through a memory mapping, without creating any strings.
+        Each byte is read as one ISO-8859-1 character.
+        @param path  The file.
+        @param perRecord  True to test each newline-delimited record separately, false to test the whole file as one input.
+        @return  The results and throughput of the scan.
+        @throws IOException  If the file cannot be mapped. */
+    public FileScanResult scanFile(Path path, boolean perRecord) throws IOException
+    {
+        return FileScanner.scan(compile(), path, perRecord);
+    }
+
+    /** Performs the simulation of an FA.
+        @param testString  A test string. */
+    public void test(String testString)
+    {
+        // Runs the string on the compiled transition matrix
+        if (accepts(testString))
+        {
+            System.out.println("Accept");
+        }
+        else
+        {
+            System.out.println("Reject");
+        }
+    }
+
+    /** Retrieves the next state with a given current state and symbol.
+        @param state  The current state.
+        @param symbol  The symbol.
+        @return  The next state, or -1 if there is no transition.
+                 For a nondeterministic FA the states are those of the determinized machine. */
+    public int NextState(int state, String symbol)
+    {
+        CompiledAutomaton machine = compile();
+        int symbolIndex = machine.symbolMap.indexOf(symbol);
+        if (symbolIndex == -1) // Symbol is not in the alphabet
+        {
+            return CompiledAutomaton.NO_TRANSITION;
+        }
+        return machine.nextState(state, symbolIndex);
+    }
+
+    /** Retrieves the number of transitions of the transition table.
+        @return  The number of transitions. */
+    public int getNumberOfTransitions()
+    {
+        fillTable();
+        return numberOfTransitions;
+    }
+
+    /** Retrieves the size of a complete transition table, one row per state and alphabet symbol.
+        @return  The table size. */
+    public int getTableSize()
+    {
+        return states.getNumberOfStates() * numberOfSymbols;
+    }
+
+    /** Retrieves the number of states.
+        @return  Number of states. */
+    public int getNumberOfStates()
+    {
+        return states.getNumberOfStates();
+    }
+
+    /** Builds the smallest FA that accepts the same language, using Hopcroft's partition refinement.
+        Unreachable states are trimmed first, final states of different token types are kept apart.
+        @return  A new, minimized FA. */
+    public FiniteAutomataMachine minimize()
+    {
+        return fromCompiled(Minimizer.minimize(compile()));
+    }
+
+    /** Runs a sample workload and records how often each state and transition of the compiled FA is used.
+        @param sample  Strings representative of the real input.
+        @return  The profile, see relayout. */
+    public StateProfile profile(List<? extends CharSequence> sample)
+    {
+        StateProfile profile = new StateProfile(compile());
+        for (CharSequence input: sample)
+        {
+            profile.record(input);
+        }
+        return profile;
+    }
+
+    /** Builds an FA with the same language whose states are renumbered for cache locality,
+        hot states and their usual successors next to each other in the transition matrix.
+        State numbers change, state 0 stays the initial state.
+        @param profile  A profile of this FA's compiled machine.
+        @return  A new FA. */
+    public FiniteAutomataMachine relayout(StateProfile profile)
+    {
+        if (profile.machine != compile())
+        {
+            throw new IllegalArgumentException("Profile was recorded on a different compiled machine");
+        }
+        return fromCompiled(profile.relayout());
+    }
+
+    /** Checks if two FAs accept the same strings, a nondeterministic FA is determinized first.
+        @param a  The first FA.
+        @param b  The second FA.
+        @return  The outcome, with a shortest string accepted by exactly one of them when they differ.
+        @throws IllegalArgumentException  If their symbols longer than one character differ. */
+    public static ComparisonResult equivalent(FiniteAutomataMachine a, FiniteAutomataMachine b)
+    {
+        long start = System.nanoTime();
+        LanguageComparator comparator = new LanguageComparator(a.compile(), b.compile());
+        return comparison(comparator.equivalent(), comparator.pairs, start);
+    }
+
+    /** Checks if every string the first FA accepts is accepted by the second.
+        @param a  The FA whose language should be included.
+        @param b  The FA whose language should include it.
+        @return  The outcome, with a shortest string accepted by a and not by b when it fails.
+        @throws IllegalArgumentException  If their symbols longer than one character differ. */
+    public static ComparisonResult subsetOf(FiniteAutomataMachine a, FiniteAutomataMachine b)
+    {
+        long start = System.nanoTime();
+        LanguageComparator comparator = new LanguageComparator(a.compile(), b.compile());
+        return comparison(comparator.subsetOf(), comparator.pairs, start);
+    }
+
+    /** Fills in a comparison result. */
+    private static ComparisonResult comparison(String counterexample, long pairs, long start)
+    {
+        ComparisonResult result = new ComparisonResult();
+        result.holds = counterexample == null;
+        result.counterexample = counterexample;
+        result.pairs = pairs;
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /** Combines this FA with another by a lazy product, whose states are built only as evaluation reaches them.
+        A built product state takes the smallest token type of its final halves.
+        @param other  The second FA.
+        @param operation  ProductAutomaton.UNION, INTERSECTION or DIFFERENCE.
+        @return  The product, for one thread.
+        @throws IllegalArgumentException  If the operation is unknown, or the symbols longer than one character differ. */
+    public ProductAutomaton product(FiniteAutomataMachine other, int operation)
+    {
+        return new ProductAutomaton(compile(), other.compile(), operation);
+    }
+
+    /** Builds an FA that accepts the strings accepted by this FA or by another.
+        @param other  The second FA.
+        @param minimize  True to minimize the result.
+        @return  A new FA, its alphabet is the union of both alphabets.
+        @throws IllegalArgumentException  If the symbols longer than one character differ. */
+    public FiniteAutomataMachine union(FiniteAutomataMachine other, boolean minimize)
+    {
+        return fromCompiled(product(other, ProductAutomaton.UNION).build(minimize));
+    }
+
+    /** Builds an FA that accepts the strings accepted by both this FA and another.
+        @param other  The second FA.
+        @param minimize  True to minimize the result.
+        @return  A new FA, its alphabet is the union of both alphabets.
+        @throws IllegalArgumentException  If the symbols longer than one character differ. */
+    public FiniteAutomataMachine intersection(FiniteAutomataMachine other, boolean minimize)
+    {
+        return fromCompiled(product(other, ProductAutomaton.INTERSECTION).build(minimize));
+    }
+
+    /** Builds an FA that accepts the strings accepted by this FA and not by another.
+        @param other  The FA whose strings are removed.
+        @param minimize  True to minimize the result.
+        @return  A new FA, its alphabet is the union of both alphabets.
+        @throws IllegalArgumentException  If the symbols longer than one character differ. */
+    public FiniteAutomataMachine difference(FiniteAutomataMachine other, boolean minimize)
+    {
+        return fromCompiled(product(other, ProductAutomaton.DIFFERENCE).build(minimize));
+    }
+
+    /** Builds an FA that accepts the strings over this FA's alphabet that this FA rejects,
+        the implicit dead state, the -1 of NextState, becomes a final state that loops on every symbol.
+        Strings with symbols outside the alphabet are still rejected.
+        @param minimize  True to minimize the result.
+        @return  A new FA with the same alphabet. */
+    public FiniteAutomataMachine complement(boolean minimize)
+    {
+        return fromCompiled(ProductAutomaton.complement(compile()).build(minimize));
+    }
+
+    /** Builds a minimal FA from a regular expression, its alphabet is every character the pattern can match.
+        @param pattern  The regular expression, see RegexCompiler for the syntax.
+        @return  A new FA that accepts exactly the strings matching the whole pattern.
+        @throws IllegalArgumentException  If the pattern is malformed. */
+    public static FiniteAutomataMachine fromRegex(String pattern)
+    {
+        return fromCompiled(RegexCompiler.compile(pattern));
+    }
+
+    /** Builds an FA from a compiled machine, the transition table is filled in only when displayed or added to.
+        @param machine  The compiled machine.
+        @return  A new FA holding the same alphabet, final states and transitions. */
+    static FiniteAutomataMachine fromCompiled(CompiledAutomaton machine)
+    {
+        return new FiniteAutomataMachine(machine);
+    }
+
+    /** Saves the compiled FA in the binary format of AutomatonFile.
+        @param path  The file to write.
+        @throws IllegalArgumentException  If the FA is too large to be loaded back.
+        @throws IOException  If the file cannot be written. */
+    public void save(Path path) throws IOException
+    {
+        AutomatonFile.save(compile(), path);
+    }
+
+    /** Loads an FA saved by save(Path), by memory-mapping the file.
+        @param path  The file to read.
+        @return  The FA.
+        @throws IOException  If the file cannot be read, or is not a valid automaton file. */
+    public static FiniteAutomataMachine load(Path path) throws IOException
+    {
+        return load(path, true);
+    }
+
+    /** Loads an FA saved by save(Path), by memory-mapping the file.
+        @param path  The file to read.
+        @param verify  True to check the file's CRC32C, false to skip reading every byte once more for a trusted file.
+        @return  The FA.
+        @throws IOException  If the file cannot be read, or is not a valid automaton file. */
+    public static FiniteAutomataMachine load(Path path, boolean verify) throws IOException
+    {
+        return fromCompiled(AutomatonFile.load(path, verify));
+    }
+}
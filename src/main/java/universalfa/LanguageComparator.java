@@ -0,0 +1,216 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that compares the languages of two compiled FAs without building their product table.
+    Both are read over the classes their alphabets cut out together, a missing transition leads to a shared dead state,
+    and the state pairs are explored breadth-first from the initial pair, so the first difference found is a shortest one. */
+class LanguageComparator
+{
+    final CompiledAutomaton a; // The first machine
+    final CompiledAutomaton b; // The second machine
+    final SymbolMap shared; // Classes cut out by both alphabets, then the longer symbols
+    final int[] columnsA; // Column in a of each shared column, -1 if outside a's alphabet
+    final int[] columnsB; // Column in b of each shared column, -1 if outside b's alphabet
+    long pairs = 0; // State pairs explored by the last check
+
+    /** Constructor with the two machines.
+        @throws IllegalArgumentException  If their longer symbols differ, they would then split strings differently. */
+    LanguageComparator(CompiledAutomaton a, CompiledAutomaton b)
+    {
+        this.a = a;
+        this.b = b;
+        shared = SymbolMap.shared(a.symbolMap, b.symbolMap);
+        columnsA = shared.columnsIn(a.symbolMap);
+        columnsB = shared.columnsIn(b.symbolMap);
+    }
+
+    /** Checks if both machines accept the same strings, by Hopcroft and Karp's union-find algorithm.
+        Every pair joins two classes of states that have to be equivalent, so at most one pair per state is explored.
+        A skipped pair is linked by pairs found no later than it, and a string that separates the skipped pair separates
+        one of those too, so the first difference found is still a shortest one.
+        @return  A shortest string accepted by exactly one of them, or null if they are equivalent. */
+    public String equivalent()
+    {
+        int offset = a.numberOfStates; // State q of b is offset + q
+        int dead = offset + b.numberOfStates;
+        int[] parent = new int[dead + 1]; // Union-find forest over the states of both and the dead state
+        for (int i = 0; i <= dead; i++)
+        {
+            parent[i] = i;
+        }
+        int capacity = dead + 1; // Each pair joins two classes, so there are fewer pairs than states
+        int[] queueA = new int[capacity];
+        int[] queueB = new int[capacity];
+        int[] from = new int[capacity]; // Pair that led to pair i, -1 for the initial pair
+        int[] via = new int[capacity]; // Shared column that led to pair i
+        int startA = a.numberOfStates > 0 ? 0 : dead;
+        int startB = b.numberOfStates > 0 ? offset : dead;
+        pairs = 0;
+        if (isFinal(startA, offset, dead) != isFinal(startB, offset, dead))
+        {
+            return "";
+        }
+        parent[find(parent, startA)] = find(parent, startB);
+        queueA[0] = startA;
+        queueB[0] = startB;
+        from[0] = -1;
+        int tail = 1;
+        for (int head = 0; head < tail; head++)
+        {
+            pairs++;
+            for (int g = 0; g < shared.size(); g++)
+            {
+                int p = nextA(queueA[head], g, dead);
+                int q = nextB(queueB[head], g, offset, dead);
+                int rootP = find(parent, p);
+                int rootQ = find(parent, q);
+                if (rootP == rootQ) // Already known to be equivalent
+                {
+                    continue;
+                }
+                parent[rootP] = rootQ;
+                queueA[tail] = p;
+                queueB[tail] = q;
+                from[tail] = head;
+                via[tail] = g;
+                if (isFinal(p, offset, dead) != isFinal(q, offset, dead))
+                {
+                    return path(from, via, tail);
+                }
+                tail++;
+            }
+        }
+        return null;
+    }
+
+    /** Checks if every string the first machine accepts is accepted by the second, by exploring the reachable product.
+        Union-find does not apply here, inclusion is not symmetric, so visited pairs are kept in a hash set.
+        @return  A shortest string accepted by the first machine and not by the second, or null if there is none. */
+    public String subsetOf()
+    {
+        int deadB = b.numberOfStates; // Dead state of b, a dead state of a ends the path since nothing is accepted after it
+        long width = b.numberOfStates + 1L;
+        PairIndex visited = new PairIndex();
+        int[] queueA = new int[16];
+        int[] queueB = new int[16];
+        int[] from = new int[16];
+        int[] via = new int[16];
+        pairs = 0;
+        if (a.numberOfStates == 0)
+        {
+            return null;
+        }
+        int startB = b.numberOfStates > 0 ? 0 : deadB;
+        if (a.isFinal(0) && (startB == deadB || !b.isFinal(startB)))
+        {
+            return "";
+        }
+        visited.putIfAbsent(startB, 0);
+        queueA[0] = 0;
+        queueB[0] = startB;
+        from[0] = -1;
+        int tail = 1;
+        for (int head = 0; head < tail; head++)
+        {
+            pairs++;
+            for (int g = 0; g < shared.size(); g++)
+            {
+                int column = columnsA[g];
+                int p = column == -1 ? CompiledAutomaton.NO_TRANSITION : a.nextState(queueA[head], column);
+                if (p == CompiledAutomaton.NO_TRANSITION)
+                {
+                    continue;
+                }
+                int q = queueB[head] == deadB || columnsB[g] == -1 ? CompiledAutomaton.NO_TRANSITION : b.nextState(queueB[head], columnsB[g]);
+                if (q == CompiledAutomaton.NO_TRANSITION)
+                {
+                    q = deadB;
+                }
+                if (visited.putIfAbsent(p * width + q, tail) != -1)
+                {
+                    continue;
+                }
+                if (tail == queueA.length)
+                {
+                    queueA = Arrays.copyOf(queueA, 2 * tail);
+                    queueB = Arrays.copyOf(queueB, 2 * tail);
+                    from = Arrays.copyOf(from, 2 * tail);
+                    via = Arrays.copyOf(via, 2 * tail);
+                }
+                queueA[tail] = p;
+                queueB[tail] = q;
+                from[tail] = head;
+                via[tail] = g;
+                if (a.isFinal(p) && (q == deadB || !b.isFinal(q)))
+                {
+                    return path(from, via, tail);
+                }
+                tail++;
+            }
+        }
+        return null;
+    }
+
+    /** Steps a state of a, or the dead state. */
+    private int nextA(int p, int g, int dead)
+    {
+        int column = columnsA[g];
+        if (p == dead || column == -1)
+        {
+            return dead;
+        }
+        int next = a.nextState(p, column);
+        return next == CompiledAutomaton.NO_TRANSITION ? dead : next;
+    }
+
+    /** Steps a state of b, numbered after the states of a, or the dead state. */
+    private int nextB(int q, int g, int offset, int dead)
+    {
+        int column = columnsB[g];
+        if (q == dead || column == -1)
+        {
+            return dead;
+        }
+        int next = b.nextState(q - offset, column);
+        return next == CompiledAutomaton.NO_TRANSITION ? dead : offset + next;
+    }
+
+    /** Checks if a state of either machine is final, the dead state never is. */
+    private boolean isFinal(int state, int offset, int dead)
+    {
+        if (state == dead)
+        {
+            return false;
+        }
+        return state < offset ? a.isFinal(state) : b.isFinal(state - offset);
+    }
+
+    /** Finds the root of a state's class, halving the path on the way. */
+    private static int find(int[] parent, int state)
+    {
+        while (parent[state] != state)
+        {
+            parent[state] = parent[parent[state]];
+            state = parent[state];
+        }
+        return state;
+    }
+
+    /** Spells the string that leads from the initial pair to pair i, one symbol of each shared column on the way. */
+    private String path(int[] from, int[] via, int i)
+    {
+        ArrayList<String> symbols = new ArrayList<String>();
+        for (; from[i] != -1; i = from[i])
+        {
+            int g = via[i];
+            symbols.add(g < shared.numberOfClasses ? Character.toString(shared.classFirst[g]) : shared.longSymbols[g - shared.numberOfClasses]);
+        }
+        StringBuilder word = new StringBuilder();
+        for (int k = symbols.size() - 1; k >= 0; k--)
+        {
+            word.append(symbols.get(k));
+        }
+        return word.toString();
+    }
+}
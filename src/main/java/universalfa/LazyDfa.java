@@ -0,0 +1,194 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that builds DFA states of an NFA on demand and caches them within a memory bound, for one thread */
+class LazyDfa
+{
+    static final int UNKNOWN = -2; // Transition not computed yet
+    static final int DEAD = CompiledAutomaton.NO_TRANSITION; // The empty state set
+    static final int STATE_OVERHEAD = 64; // Estimated bytes per cached state besides its row and set
+
+    NfaProgram program; // Shared, read-only
+    SubsetBuilder builder; // Scratch space for building sets
+    int alphabetSize; // Number of columns
+    long maxBytes; // Memory bound of the cache
+    long usedBytes = 0; // Estimated memory held by the cache
+    CacheStats stats; // Shared counters, updated once per string
+    HashMap<StateSet, Integer> ids = new HashMap<StateSet, Integer>(); // DFA state of each cached set
+    ArrayList<int[]> sets = new ArrayList<int[]>(); // Set of each DFA state
+    int[] table; // Transition of DFA state d on column a at table[d * alphabetSize + a], UNKNOWN if not computed
+    boolean[] finalStates; // True if the set holds a final NFA state
+    int startState = UNKNOWN; // DFA state of the initial set
+    long hits = 0; // Counters not yet added to stats
+    long misses = 0;
+    long flushes = 0;
+    int totalFlushes = 0; // Flushes since the cache was created, never published
+
+    /** Constructor with the NFA, the memory bound and the shared counters */
+    LazyDfa(NfaProgram program, long maxBytes, CacheStats stats)
+    {
+        this.program = program;
+        this.builder = new SubsetBuilder(program);
+        this.alphabetSize = program.alphabetSize;
+        this.maxBytes = maxBytes;
+        this.stats = stats;
+        table = new int[Math.max(1, alphabetSize) * 16];
+        finalStates = new boolean[16];
+    }
+
+    /** Retrieves the initial DFA state.
+        @return  The state. */
+    public int start()
+    {
+        if (startState == UNKNOWN)
+        {
+            startState = add(builder.start());
+        }
+        return startState;
+    }
+
+    /** Retrieves the DFA state reached from a state on one symbol, building it if needed.
+        If the cache is full it is flushed first, the returned state stays valid but older ones do not.
+        @param state  The current DFA state.
+        @param column  The symbol column.
+        @return  The next DFA state, or DEAD. */
+    public int next(int state, int column)
+    {
+        int next = table[state * alphabetSize + column];
+        if (next != UNKNOWN)
+        {
+            hits++;
+            return next;
+        }
+        misses++;
+        int[] target = builder.move(sets.get(state), column);
+        if (target.length == 0)
+        {
+            next = DEAD;
+        }
+        else
+        {
+            Integer id = ids.get(new StateSet(target));
+            if (id != null)
+            {
+                next = id;
+            }
+            else
+            {
+                if (usedBytes + cost(target) > maxBytes && sets.size() > 1) // Flushes and keeps only the current state
+                {
+                    int[] current = sets.get(state);
+                    flush();
+                    state = add(current);
+                }
+                next = add(target);
+            }
+        }
+        table[state * alphabetSize + column] = next;
+        return next;
+    }
+
+    /** Checks if a DFA state is final.
+        @param state  The state.
+        @return  True if final, false for DEAD. */
+    public boolean isFinal(int state)
+    {
+        return state != DEAD && finalStates[state];
+    }
+
+    /** Runs a string from the initial state.
+        @param input  The input string.
+        @return  True if the string is accepted. */
+    public boolean accepts(CharSequence input)
+    {
+        return EvaluationMetrics.outcome(evaluate(input)) == EvaluationMetrics.ACCEPTED;
+    }
+
+    /** Runs a string from the initial state and tells why it is rejected.
+        @param input  The input string.
+        @return  EvaluationMetrics.ACCEPTED or the reason the string is rejected, packed with the characters read. */
+    public long evaluate(CharSequence input)
+    {
+        int[] charColumns = program.charColumns;
+        SymbolMap symbolMap = program.symbolMap;
+        int state = start();
+        int length = input.length();
+        int outcome = EvaluationMetrics.NOT_FINAL;
+        int i = 0;
+        while (i < length)
+        {
+            int symbolIndex;
+            if (symbolMap.tokenized) // Longest match against the longer symbols
+            {
+                long token = symbolMap.match(input, i, length);
+                symbolIndex = SymbolMap.column(token);
+                i += SymbolMap.length(token);
+            }
+            else
+            {
+                symbolIndex = charColumns[input.charAt(i++)];
+            }
+            if (symbolIndex == -1)
+            {
+                outcome = EvaluationMetrics.UNKNOWN_SYMBOL;
+                break;
+            }
+            state = next(state, symbolIndex);
+            if (state == DEAD)
+            {
+                outcome = EvaluationMetrics.MISSING_TRANSITION;
+                break;
+            }
+        }
+        publishStats();
+        return EvaluationMetrics.result(isFinal(state) && outcome == EvaluationMetrics.NOT_FINAL ? EvaluationMetrics.ACCEPTED : outcome, i);
+    }
+
+    /** Adds the local counters to the shared ones, so the hot loop never touches shared memory. */
+    public void publishStats()
+    {
+        stats.hits.add(hits);
+        stats.misses.add(misses);
+        stats.flushes.add(flushes);
+        hits = 0;
+        misses = 0;
+        flushes = 0;
+    }
+
+    /** Caches a new set as a DFA state. */
+    private int add(int[] set)
+    {
+        int id = sets.size();
+        if ((id + 1) * alphabetSize > table.length)
+        {
+            int oldLength = table.length;
+            table = Arrays.copyOf(table, Math.max(oldLength * 2, (id + 1) * alphabetSize));
+            Arrays.fill(table, oldLength, table.length, UNKNOWN);
+            finalStates = Arrays.copyOf(finalStates, table.length / Math.max(1, alphabetSize));
+        }
+        Arrays.fill(table, id * alphabetSize, (id + 1) * alphabetSize, UNKNOWN);
+        finalStates[id] = builder.isFinal(set);
+        ids.put(new StateSet(set), id);
+        sets.add(set);
+        usedBytes += cost(set);
+        return id;
+    }
+
+    /** Estimates the bytes a cached set costs. */
+    private long cost(int[] set)
+    {
+        return 4L * alphabetSize + 4L * set.length + STATE_OVERHEAD;
+    }
+
+    /** Drops every cached state. */
+    private void flush()
+    {
+        ids.clear();
+        sets.clear();
+        usedBytes = 0;
+        startState = UNKNOWN;
+        flushes++;
+        totalFlushes++;
+    }
+}
@@ -0,0 +1,97 @@
+package universalfa;
+
+/** A class that splits inputs into tokens with a compiled FA, by maximal munch.
+    Each DFA state carries the token type of its final state, or the smallest type when it stands for several
+    final states of a nondeterministic FA. The table is only read, so one lexer can serve several threads. */
+class Lexer
+{
+    static final int NO_TOKEN = -1; // Type of a state that is not final, and of input no token matches
+
+    final CompiledAutomaton machine; // The DFA
+    final int[] stateTypes; // Token type of each DFA state, NO_TOKEN if not final
+
+    /** Constructor with an FA, whose compiled machine carries the token types of its final states.
+        @throws IllegalStateException  If determinization needs more than DETERMINIZE_STATE_LIMIT states. */
+    Lexer(FiniteAutomataMachine fa)
+    {
+        machine = fa.compile();
+        stateTypes = new int[machine.numberOfStates];
+        for (int state = 0; state < machine.numberOfStates; state++)
+        {
+            stateTypes[state] = machine.tokenType(state);
+        }
+    }
+
+    /** Splits an input into tokens, each the longest prefix of the rest that reaches a final state.
+        Characters where no token starts are gathered into NO_TOKEN tokens, so the tokens always cover the input.
+        @param input  The input string.
+        @param tokens  Receives the tokens after the ones it holds, offsets are relative to input.
+        @return  Number of tokens appended. */
+    public int tokenize(CharSequence input, TokenBuffer tokens)
+    {
+        int[] charColumns = machine.charColumns;
+        int[] matrix = machine.matrix;
+        int alphabetSize = machine.alphabetSize;
+        SymbolMap symbolMap = machine.symbolMap;
+        int[] stateTypes = this.stateTypes;
+        int before = tokens.size;
+        int length = input.length();
+        int position = 0;
+        int errorStart = -1; // Start of the unmatched characters not emitted yet, -1 if there are none
+        while (position < length)
+        {
+            int state = 0;
+            int tokenType = NO_TOKEN;
+            int tokenEnd = position;
+            for (int i = position; i < length; )
+            {
+                int symbolIndex;
+                if (symbolMap.tokenized) // Longest match against the longer symbols
+                {
+                    long token = symbolMap.match(input, i, length);
+                    symbolIndex = SymbolMap.column(token);
+                    i += SymbolMap.length(token);
+                }
+                else
+                {
+                    symbolIndex = charColumns[input.charAt(i++)];
+                }
+                if (symbolIndex == -1)
+                {
+                    break;
+                }
+                state = matrix != null ? matrix[state * alphabetSize + symbolIndex] : machine.nextState(state, symbolIndex);
+                if (state == CompiledAutomaton.NO_TRANSITION)
+                {
+                    break;
+                }
+                if (stateTypes[state] != NO_TOKEN) // Longest token so far
+                {
+                    tokenType = stateTypes[state];
+                    tokenEnd = i;
+                }
+            }
+            if (tokenEnd == position) // No token starts here, an empty one would not move on
+            {
+                if (errorStart == -1)
+                {
+                    errorStart = position;
+                }
+                position++;
+                continue;
+            }
+            if (errorStart != -1)
+            {
+                tokens.add(NO_TOKEN, errorStart, position);
+                errorStart = -1;
+            }
+            tokens.add(tokenType, position, tokenEnd);
+            position = tokenEnd;
+        }
+        if (errorStart != -1)
+        {
+            tokens.add(NO_TOKEN, errorStart, length);
+        }
+        return tokens.size - before;
+    }
+}
@@ -0,0 +1,378 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that evaluates several FAs over the same input in one pass, for one thread at a time.
+    The alphabets of all machines are cut into shared character classes, so each character is looked up once
+    and every machine moves on its own column for that class, with the machine states kept in one vector.
+    With the lazy product on, each vector becomes a state of a product DFA that is built on demand and cached
+    within a memory bound, and a character then costs one table lookup whatever the number of machines.
+    Machines with symbols longer than one character read their own longest matches through a run. */
+class MachineSet
+{
+    static final int UNKNOWN = -2; // Product transition not computed yet
+    static final int DEAD = CompiledAutomaton.NO_TRANSITION; // Product state where every machine is dead
+    static final int STATE_OVERHEAD = 64; // Estimated bytes per cached product state besides its row and vector
+    static final int TABLE_GROWTH = 4; // Largest factor a dense matrix may grow by when moved to the shared classes
+
+    final CompiledAutomaton[] machines; // Shared, read-only
+    final int[] charClasses = new int[Character.MAX_VALUE + 1]; // Shared class of each character, -1 if in no alphabet
+    final int numberOfClasses;
+    final int[] direct; // Machines moved through the shared classes
+    final int[] columns; // Column of shared class g in machine direct[k] at columns[k * numberOfClasses + g], -1 if not in its alphabet
+    final int[][] tables; // Matrix of machine direct[k] over the shared classes, null for a sparse or too large one
+    final AutomatonRun[] runs; // Runs of the machines with longer symbols, reused for every string
+    final int[] runMachines; // Machine of each run
+    int[] vector; // Scratch state vector of the direct machines, NO_TRANSITION once a machine is dead
+    int[] active; // Scratch list of the direct machines still alive
+
+    // Lazy product of the direct machines, null until enabled
+    HashMap<StateSet, Integer> ids; // Product state of each cached vector
+    ArrayList<int[]> vectors; // Vector of each product state
+    int[] table; // Transition of product state p on class g at table[p * numberOfClasses + g], UNKNOWN if not computed
+    int startState = UNKNOWN;
+    long maxBytes; // Memory bound of the product cache
+    long usedBytes = 0; // Estimated memory held by the product cache
+    CacheStats stats = new CacheStats(); // Hit, miss and flush counters of the product cache
+
+    /** Constructor with the FAs to evaluate, a nondeterministic FA is determinized first.
+        @param fas  The FAs, machine i of the results is fas.get(i).
+        @throws IllegalStateException  If determinizing an FA needs more than DETERMINIZE_STATE_LIMIT states. */
+    MachineSet(List<FiniteAutomataMachine> fas)
+    {
+        machines = new CompiledAutomaton[fas.size()];
+        int numberOfRuns = 0;
+        int numberOfClassPairs = 0;
+        for (int m = 0; m < machines.length; m++)
+        {
+            machines[m] = fas.get(m).compile();
+            numberOfClassPairs += machines[m].symbolMap.numberOfClasses;
+            numberOfRuns += machines[m].symbolMap.tokenized ? 1 : 0;
+        }
+
+        // Shared classes cut out by the classes of every machine
+        int[] ranges = new int[2 * numberOfClassPairs];
+        int numberOfRanges = 0;
+        for (CompiledAutomaton machine: machines)
+        {
+            SymbolMap map = machine.symbolMap;
+            for (int c = 0; c < map.numberOfClasses; c++)
+            {
+                ranges[2 * numberOfRanges] = map.classFirst[c];
+                ranges[2 * numberOfRanges + 1] = map.classLast[c];
+                numberOfRanges++;
+            }
+        }
+        SymbolMap shared = SymbolMap.split(ranges, numberOfRanges, ranges, numberOfRanges, new String[0]);
+        numberOfClasses = shared.numberOfClasses;
+        System.arraycopy(shared.charColumns, 0, charClasses, 0, charClasses.length);
+
+        direct = new int[machines.length - numberOfRuns];
+        runs = new AutomatonRun[numberOfRuns];
+        runMachines = new int[numberOfRuns];
+        columns = new int[direct.length * numberOfClasses];
+        tables = new int[direct.length][];
+        int k = 0;
+        int r = 0;
+        for (int m = 0; m < machines.length; m++)
+        {
+            if (machines[m].symbolMap.tokenized)
+            {
+                runs[r] = new AutomatonRun(machines[m]);
+                runMachines[r++] = m;
+                continue;
+            }
+            for (int g = 0; g < numberOfClasses; g++) // A shared class lies inside one class of the machine or outside its alphabet
+            {
+                columns[k * numberOfClasses + g] = machines[m].charColumns[shared.classFirst[g]];
+            }
+            tables[k] = sharedTable(machines[m], k);
+            direct[k++] = m;
+        }
+        vector = new int[direct.length];
+        active = new int[direct.length];
+    }
+
+    /** Moves a dense matrix onto the shared classes, so a step needs no column lookup.
+        @return  The matrix, or null if the machine is sparse or the matrix would grow too much. */
+    private int[] sharedTable(CompiledAutomaton machine, int k)
+    {
+        long cells = (long) machine.numberOfStates * numberOfClasses;
+        if (machine.isSparse() || cells > (long) TABLE_GROWTH * machine.matrix.length)
+        {
+            return null;
+        }
+        int[] table = new int[(int) cells];
+        for (int state = 0; state < machine.numberOfStates; state++)
+        {
+            for (int g = 0; g < numberOfClasses; g++)
+            {
+                int column = columns[k * numberOfClasses + g];
+                table[state * numberOfClasses + g] = column == -1 ? DEAD : machine.matrix[state * machine.alphabetSize + column];
+            }
+        }
+        return table;
+    }
+
+    /** Turns the lazy product of the machines on or off.
+        @param maxBytes  Memory bound of the product cache, a full cache is flushed and starts over, 0 to turn the product off. */
+    public void setProduct(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        ids = maxBytes > 0 ? new HashMap<StateSet, Integer>() : null;
+        vectors = maxBytes > 0 ? new ArrayList<int[]>() : null;
+        table = maxBytes > 0 ? new int[Math.max(1, numberOfClasses) * 16] : null;
+        startState = UNKNOWN;
+        usedBytes = 0;
+    }
+
+    /** Retrieves the number of machines.
+        @return  The number of machines. */
+    public int size()
+    {
+        return machines.length;
+    }
+
+    /** Retrieves the hit, miss and flush counters of the product cache.
+        @return  The counters. */
+    public CacheStats getCacheStats()
+    {
+        return stats;
+    }
+
+    /** Evaluates every machine on a string.
+        @param input  The input string.
+        @return  A set with bit i on if machine i accepts the string. */
+    public BitSet accepts(CharSequence input)
+    {
+        boolean[] results = new boolean[machines.length];
+        accepts(input, results);
+        BitSet bits = new BitSet(results.length);
+        for (int m = 0; m < results.length; m++)
+        {
+            if (results[m])
+            {
+                bits.set(m);
+            }
+        }
+        return bits;
+    }
+
+    /** Evaluates every machine on a string into a caller-supplied array, reading the string once.
+        @param input  The input string.
+        @param results  Array of at least size() slots, slot i is set to true if machine i accepts the string.
+        @return  The number of machines that accept the string. */
+    public int accepts(CharSequence input, boolean[] results)
+    {
+        if (results.length < machines.length)
+        {
+            throw new IllegalArgumentException("Results array holds " + results.length + " slots, " + machines.length + " needed");
+        }
+        for (AutomatonRun run: runs)
+        {
+            run.reset();
+        }
+        int alive = ids != null ? runProduct(input) : runVector(input);
+        Arrays.fill(results, 0, machines.length, false);
+        int accepted = 0;
+        for (int j = 0; j < alive; j++) // Direct machines still alive, their states are in vector
+        {
+            int k = active[j];
+            if (machines[direct[k]].isFinal(vector[k]))
+            {
+                results[direct[k]] = true;
+                accepted++;
+            }
+        }
+        for (int r = 0; r < runs.length; r++)
+        {
+            if (runs[r].finish())
+            {
+                results[runMachines[r]] = true;
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /** Moves every direct machine on the string, dropping machines from the active list as they die.
+        @return  The number of direct machines alive at the end, listed first in active. */
+    private int runVector(CharSequence input)
+    {
+        int alive = direct.length;
+        for (int k = 0; k < alive; k++)
+        {
+            active[k] = k;
+            vector[k] = 0;
+        }
+        int length = input.length();
+        for (int i = 0; i < length && (alive > 0 || runs.length > 0); i++)
+        {
+            char c = input.charAt(i);
+            feedRuns(c);
+            int g = charClasses[c];
+            if (g == -1) // No machine has the character
+            {
+                alive = 0;
+                continue;
+            }
+            for (int j = 0; j < alive; )
+            {
+                int k = active[j];
+                int[] table = tables[k];
+                int state;
+                if (table != null)
+                {
+                    state = table[vector[k] * numberOfClasses + g];
+                }
+                else
+                {
+                    int column = columns[k * numberOfClasses + g];
+                    state = column == -1 ? DEAD : machines[direct[k]].nextState(vector[k], column);
+                }
+                if (state == DEAD) // Swaps the last active machine into this slot
+                {
+                    active[j] = active[--alive];
+                    continue;
+                }
+                vector[k] = state;
+                j++;
+            }
+        }
+        return alive;
+    }
+
+    /** Moves the product state on the string, then unpacks the final vector.
+        @return  The number of direct machines alive at the end, listed first in active. */
+    private int runProduct(CharSequence input)
+    {
+        long hits = 0;
+        long misses = 0;
+        int state = start();
+        int length = input.length();
+        for (int i = 0; i < length && (state != DEAD || runs.length > 0); i++)
+        {
+            char c = input.charAt(i);
+            feedRuns(c);
+            if (state == DEAD)
+            {
+                continue;
+            }
+            int g = charClasses[c];
+            if (g == -1)
+            {
+                state = DEAD;
+                continue;
+            }
+            int next = table[state * numberOfClasses + g];
+            if (next != UNKNOWN)
+            {
+                hits++;
+                state = next;
+                continue;
+            }
+            misses++;
+            state = next(state, g);
+        }
+        stats.hits.add(hits);
+        stats.misses.add(misses);
+        int alive = 0;
+        if (state != DEAD)
+        {
+            int[] states = vectors.get(state);
+            for (int k = 0; k < direct.length; k++)
+            {
+                vector[k] = states[k];
+                if (states[k] != DEAD)
+                {
+                    active[alive++] = k;
+                }
+            }
+        }
+        return alive;
+    }
+
+    /** Feeds one character to the runs of the machines with longer symbols. */
+    private void feedRuns(char c)
+    {
+        for (AutomatonRun run: runs)
+        {
+            run.feed(c);
+        }
+    }
+
+    /** Retrieves the initial product state, every direct machine at state 0. */
+    private int start()
+    {
+        if (startState == UNKNOWN)
+        {
+            startState = direct.length == 0 ? DEAD : add(new int[direct.length]);
+        }
+        return startState;
+    }
+
+    /** Computes a product transition and caches it, flushing the cache first if it is full. */
+    private int next(int state, int g)
+    {
+        int[] from = vectors.get(state);
+        int[] target = new int[direct.length];
+        boolean anyAlive = false;
+        for (int k = 0; k < direct.length; k++)
+        {
+            int column = columns[k * numberOfClasses + g];
+            target[k] = from[k] == DEAD || column == -1 ? DEAD : machines[direct[k]].nextState(from[k], column);
+            anyAlive |= target[k] != DEAD;
+        }
+        int next = DEAD;
+        if (anyAlive)
+        {
+            Integer id = ids.get(new StateSet(target));
+            if (id != null)
+            {
+                next = id;
+            }
+            else
+            {
+                if (usedBytes + cost() > maxBytes && vectors.size() > 1) // Flushes and keeps only the current state
+                {
+                    flush();
+                    state = add(from);
+                }
+                next = add(target);
+            }
+        }
+        table[state * numberOfClasses + g] = next;
+        return next;
+    }
+
+    /** Caches a new vector as a product state. */
+    private int add(int[] states)
+    {
+        int id = vectors.size();
+        if ((id + 1) * numberOfClasses > table.length)
+        {
+            table = Arrays.copyOf(table, Math.max(table.length * 2, (id + 1) * numberOfClasses));
+        }
+        Arrays.fill(table, id * numberOfClasses, (id + 1) * numberOfClasses, UNKNOWN);
+        ids.put(new StateSet(states), id);
+        vectors.add(states);
+        usedBytes += cost();
+        return id;
+    }
+
+    /** Estimates the bytes a cached product state costs. */
+    private long cost()
+    {
+        return 4L * numberOfClasses + 4L * direct.length + STATE_OVERHEAD;
+    }
+
+    /** Drops every cached product state. */
+    private void flush()
+    {
+        ids.clear();
+        vectors.clear();
+        usedBytes = 0;
+        startState = UNKNOWN;
+        stats.flushes.increment();
+    }
+}
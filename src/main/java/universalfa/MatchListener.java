@@ -0,0 +1,10 @@
+package universalfa;
+
+/** An interface that receives the matches of a search, as offsets so no object is created per match */
+interface MatchListener
+{
+    /** Called once per match, in order of the end offset.
+        @param start  Offset of the first character of the match.
+        @param end  Offset just past the last character of the match. */
+    void match(int start, int end);
+}
@@ -0,0 +1,250 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that minimizes compiled FAs with Hopcroft's algorithm */
+class Minimizer
+{
+    /** Builds the minimal equivalent of a compiled machine, final states of different token types are never merged.
+        @param machine  The compiled machine.
+        @return  A new compiled machine with the fewest states, state 0 stays the initial state. */
+    static CompiledAutomaton minimize(CompiledAutomaton machine)
+    {
+        int alphabetSize = machine.alphabetSize;
+
+        // Trims unreachable states, reachable ones are renumbered in discovery order
+        int[] newNumber = new int[machine.numberOfStates];
+        Arrays.fill(newNumber, -1);
+        int[] order = new int[machine.numberOfStates];
+        int reachable = 0;
+        if (machine.numberOfStates > 0)
+        {
+            newNumber[0] = 0;
+            order[reachable++] = 0;
+        }
+        for (int head = 0; head < reachable; head++)
+        {
+            for (int a = 0; a < alphabetSize; a++)
+            {
+                int next = machine.nextState(order[head], a);
+                if (next != CompiledAutomaton.NO_TRANSITION && newNumber[next] == -1)
+                {
+                    newNumber[next] = reachable;
+                    order[reachable++] = next;
+                }
+            }
+        }
+
+        // Completes the machine with an explicit dead state, numbered last
+        int n = reachable + 1;
+        int dead = reachable;
+        int[] delta = new int[n * alphabetSize];
+        for (int q = 0; q < n; q++)
+        {
+            for (int a = 0; a < alphabetSize; a++)
+            {
+                int next = q == dead ? CompiledAutomaton.NO_TRANSITION : machine.nextState(order[q], a);
+                delta[q * alphabetSize + a] = next == CompiledAutomaton.NO_TRANSITION ? dead : newNumber[next];
+            }
+        }
+
+        // Inverse transitions, predecessors of t on symbol a are inverse[inverseStart[a * n + t] .. inverseStart[a * n + t + 1])
+        int[] inverseStart = new int[alphabetSize * n + 1];
+        for (int q = 0; q < n; q++)
+        {
+            for (int a = 0; a < alphabetSize; a++)
+            {
+                inverseStart[a * n + delta[q * alphabetSize + a] + 1]++;
+            }
+        }
+        for (int i = 0; i < alphabetSize * n; i++)
+        {
+            inverseStart[i + 1] += inverseStart[i];
+        }
+        int[] inverse = new int[n * alphabetSize];
+        int[] fill = Arrays.copyOf(inverseStart, alphabetSize * n);
+        for (int q = 0; q < n; q++)
+        {
+            for (int a = 0; a < alphabetSize; a++)
+            {
+                inverse[fill[a * n + delta[q * alphabetSize + a]]++] = q;
+            }
+        }
+
+        // Partition, states of block b are elements[first[b] .. last[b]), the marked ones come first.
+        // The initial blocks are the states of each token type, then the non-final states including the dead one
+        int[] types = new int[n];
+        for (int q = 0; q < n; q++)
+        {
+            types[q] = q == dead ? Lexer.NO_TOKEN : machine.tokenType(order[q]);
+        }
+        int[] distinct = types.clone();
+        Arrays.sort(distinct);
+        int blocks = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (i == 0 || distinct[i] != distinct[i - 1])
+            {
+                distinct[blocks++] = distinct[i];
+            }
+        }
+        int[] elements = new int[n];
+        int[] position = new int[n];
+        int[] blockOf = new int[n];
+        int[] first = new int[n];
+        int[] last = new int[n];
+        int[] marked = new int[n];
+        for (int q = 0; q < n; q++) // Counts the states of each block, then turns the counts into offsets
+        {
+            blockOf[q] = Arrays.binarySearch(distinct, 0, blocks, types[q]);
+            last[blockOf[q]]++;
+        }
+        int largest = 0;
+        for (int b = 0; b < blocks; b++)
+        {
+            largest = last[b] > last[largest] ? b : largest;
+            first[b] = b == 0 ? 0 : last[b - 1];
+            last[b] += first[b];
+        }
+        int[] blockFill = Arrays.copyOf(first, blocks);
+        for (int q = 0; q < n; q++)
+        {
+            elements[blockFill[blockOf[q]]] = q;
+            position[q] = blockFill[blockOf[q]]++;
+        }
+
+        // Worklist of (block, symbol) splitters, every initial block but the largest
+        boolean[] inWork = new boolean[n * alphabetSize];
+        int[] work = new int[n * alphabetSize];
+        int workSize = 0;
+        for (int b = 0; b < blocks; b++)
+        {
+            for (int a = 0; a < alphabetSize && b != largest; a++)
+            {
+                work[workSize++] = b * alphabetSize + a;
+                inWork[b * alphabetSize + a] = true;
+            }
+        }
+        int[] touched = new int[n];
+        int[] splitterStates = new int[n];
+        while (workSize > 0)
+        {
+            int splitter = work[--workSize];
+            inWork[splitter] = false;
+            int splitterBlock = splitter / alphabetSize;
+            int a = splitter % alphabetSize;
+
+            // Marks every state that moves into the splitter block on symbol a
+            int splitterSize = last[splitterBlock] - first[splitterBlock];
+            System.arraycopy(elements, first[splitterBlock], splitterStates, 0, splitterSize); // Marking reorders elements
+            int touchedCount = 0;
+            for (int i = 0; i < splitterSize; i++)
+            {
+                int t = splitterStates[i];
+                for (int j = inverseStart[a * n + t]; j < inverseStart[a * n + t + 1]; j++)
+                {
+                    int p = inverse[j];
+                    int b = blockOf[p];
+                    int markEnd = first[b] + marked[b];
+                    if (position[p] < markEnd) // Already marked
+                    {
+                        continue;
+                    }
+                    int other = elements[markEnd]; // Swaps p into the marked part
+                    elements[markEnd] = p;
+                    elements[position[p]] = other;
+                    position[other] = position[p];
+                    position[p] = markEnd;
+                    if (marked[b]++ == 0)
+                    {
+                        touched[touchedCount++] = b;
+                    }
+                }
+            }
+
+            // Splits every touched block that was only partly marked, the smaller half becomes the new block
+            for (int k = 0; k < touchedCount; k++)
+            {
+                int b = touched[k];
+                int markedCount = marked[b];
+                marked[b] = 0;
+                int size = last[b] - first[b];
+                if (markedCount == size)
+                {
+                    continue;
+                }
+                int newBlock = blocks++;
+                if (markedCount <= size - markedCount)
+                {
+                    first[newBlock] = first[b];
+                    last[newBlock] = first[b] + markedCount;
+                    first[b] = last[newBlock];
+                }
+                else
+                {
+                    first[newBlock] = first[b] + markedCount;
+                    last[newBlock] = last[b];
+                    last[b] = first[newBlock];
+                }
+                for (int i = first[newBlock]; i < last[newBlock]; i++)
+                {
+                    blockOf[elements[i]] = newBlock;
+                }
+                for (int c = 0; c < alphabetSize; c++) // The new block is the smaller half, so it is always the one to add
+                {
+                    int splitterIndex = newBlock * alphabetSize + c;
+                    if (!inWork[splitterIndex])
+                    {
+                        inWork[splitterIndex] = true;
+                        work[workSize++] = splitterIndex;
+                    }
+                }
+            }
+        }
+
+        // Numbers the blocks with the initial block as 0, the dead block is dropped
+        int deadBlock = blockOf[dead];
+        int[] blockNumber = new int[blocks];
+        Arrays.fill(blockNumber, -1);
+        int numberOfStates = 0;
+        if (reachable > 0 && blockOf[0] != deadBlock)
+        {
+            blockNumber[blockOf[0]] = numberOfStates++;
+        }
+        for (int q = 1; q < reachable; q++)
+        {
+            if (blockOf[q] != deadBlock && blockNumber[blockOf[q]] == -1)
+            {
+                blockNumber[blockOf[q]] = numberOfStates++;
+            }
+        }
+        if (numberOfStates == 0) // Empty language, a single non-final state is kept as the initial state
+        {
+            int[] matrix = new int[alphabetSize];
+            Arrays.fill(matrix, CompiledAutomaton.NO_TRANSITION);
+            return new CompiledAutomaton(machine.symbolMap, new boolean[1], matrix);
+        }
+        int[] matrix = new int[numberOfStates * alphabetSize];
+        boolean[] finalStates = new boolean[numberOfStates];
+        int[] tokenTypes = machine.tokenTypes == null ? null : new int[numberOfStates];
+        for (int q = 0; q < reachable; q++)
+        {
+            int state = blockNumber[blockOf[q]];
+            if (state == -1)
+            {
+                continue;
+            }
+            finalStates[state] = machine.isFinal(order[q]);
+            if (tokenTypes != null)
+            {
+                tokenTypes[state] = machine.tokenTypes[order[q]];
+            }
+            for (int a = 0; a < alphabetSize; a++)
+            {
+                int next = blockNumber[blockOf[delta[q * alphabetSize + a]]];
+                matrix[state * alphabetSize + a] = next; // -1 for the dead block, same as NO_TRANSITION
+            }
+        }
+        return CompiledAutomaton.fromMatrix(machine.symbolMap, finalStates, matrix).withTokenTypes(tokenTypes);
+    }
+}
@@ -0,0 +1,152 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that holds a nondeterministic FA in compressed rows, with epsilon transitions kept apart */
+class NfaProgram
+{
+    final SymbolMap symbolMap; // Symbol to column lookup
+    final int[] charColumns; // Column of each single-character symbol, -1 if none
+    final int alphabetSize; // Number of columns
+    final int numberOfStates; // Number of NFA states
+    final boolean[] finalStates; // True if final state
+    final int[] targetStart; // Destinations of state s on column a are targets[targetStart[s * alphabetSize + a] .. targetStart[s * alphabetSize + a + 1])
+    final int[] targets;
+    final int[] epsilonStart; // Epsilon destinations of state s are epsilonTargets[epsilonStart[s] .. epsilonStart[s + 1])
+    final int[] epsilonTargets;
+
+    /** Constructor with the symbol lookup, the final states and a list of edges that may repeat cells.
+        Edge i goes from edgeFrom[i] to edgeTo[i] on column edgeColumn[i], -1 for an epsilon edge. */
+    NfaProgram(SymbolMap symbolMap, boolean[] finalStates, int[] edgeFrom, int[] edgeColumn, int[] edgeTo, int numberOfEdges)
+    {
+        this.symbolMap = symbolMap;
+        this.charColumns = symbolMap.charColumns;
+        this.alphabetSize = symbolMap.size();
+        this.numberOfStates = finalStates.length;
+        this.finalStates = finalStates;
+        targetStart = new int[numberOfStates * alphabetSize + 1];
+        epsilonStart = new int[numberOfStates + 1];
+        for (int i = 0; i < numberOfEdges; i++) // Counts the edges of each cell
+        {
+            if (edgeColumn[i] == -1)
+            {
+                epsilonStart[edgeFrom[i] + 1]++;
+            }
+            else
+            {
+                targetStart[edgeFrom[i] * alphabetSize + edgeColumn[i] + 1]++;
+            }
+        }
+        for (int j = 1; j < targetStart.length; j++) // Turns the counts into row offsets
+        {
+            targetStart[j] += targetStart[j - 1];
+        }
+        for (int j = 1; j < epsilonStart.length; j++)
+        {
+            epsilonStart[j] += epsilonStart[j - 1];
+        }
+        targets = new int[targetStart[targetStart.length - 1]];
+        epsilonTargets = new int[epsilonStart[numberOfStates]];
+        int[] targetFill = Arrays.copyOf(targetStart, targetStart.length);
+        int[] epsilonFill = Arrays.copyOf(epsilonStart, epsilonStart.length);
+        for (int i = 0; i < numberOfEdges; i++) // Fills in the rows
+        {
+            if (edgeColumn[i] == -1)
+            {
+                epsilonTargets[epsilonFill[edgeFrom[i]]++] = edgeTo[i];
+            }
+            else
+            {
+                targets[targetFill[edgeFrom[i] * alphabetSize + edgeColumn[i]]++] = edgeTo[i];
+            }
+        }
+    }
+
+    /** Checks if the subset construction stays within a number of DFA states, without building the DFA.
+        @param maxStates  Largest number of DFA states allowed.
+        @return  True if the DFA has at most maxStates states. */
+    public boolean subsetsWithin(int maxStates)
+    {
+        SubsetBuilder builder = new SubsetBuilder(this);
+        HashSet<StateSet> seen = new HashSet<StateSet>();
+        ArrayList<int[]> sets = new ArrayList<int[]>();
+        int[] start = builder.start();
+        seen.add(new StateSet(start));
+        sets.add(start);
+        for (int d = 0; d < sets.size(); d++)
+        {
+            if (sets.size() > maxStates)
+            {
+                return false;
+            }
+            for (int a = 0; a < alphabetSize; a++)
+            {
+                int[] target = builder.move(sets.get(d), a);
+                if (target.length > 0 && seen.add(new StateSet(target)))
+                {
+                    sets.add(target);
+                }
+            }
+        }
+        return sets.size() <= maxStates;
+    }
+
+    /** Builds the whole DFA by subset construction.
+        @param maxStates  Largest number of DFA states to build.
+        @return  The compiled DFA, state 0 is the epsilon closure of NFA state 0.
+        @throws IllegalStateException  If the DFA needs more than maxStates states. */
+    public CompiledAutomaton determinize(int maxStates)
+    {
+        return determinize(maxStates, new ArrayList<int[]>());
+    }
+
+    /** Builds the whole DFA by subset construction, keeping the NFA state set of each DFA state.
+        @param maxStates  Largest number of DFA states to build.
+        @param sets  Empty list that receives the sorted set of DFA state d at index d.
+        @return  The compiled DFA, state 0 is the epsilon closure of NFA state 0.
+        @throws IllegalStateException  If the DFA needs more than maxStates states. */
+    public CompiledAutomaton determinize(int maxStates, List<int[]> sets)
+    {
+        SubsetBuilder builder = new SubsetBuilder(this);
+        HashMap<StateSet, Integer> ids = new HashMap<StateSet, Integer>();
+        int[] start = builder.start();
+        ids.put(new StateSet(start), 0);
+        sets.add(start);
+        int[] matrix = new int[Math.max(1, alphabetSize) * 16];
+        for (int d = 0; d < sets.size(); d++) // Breadth-first over the DFA states found so far
+        {
+            if ((d + 1) * alphabetSize > matrix.length)
+            {
+                matrix = Arrays.copyOf(matrix, Math.max(matrix.length * 2, (d + 1) * alphabetSize));
+            }
+            for (int a = 0; a < alphabetSize; a++)
+            {
+                int[] target = builder.move(sets.get(d), a);
+                if (target.length == 0)
+                {
+                    matrix[d * alphabetSize + a] = CompiledAutomaton.NO_TRANSITION;
+                    continue;
+                }
+                StateSet key = new StateSet(target);
+                Integer id = ids.get(key);
+                if (id == null)
+                {
+                    if (sets.size() == maxStates)
+                    {
+                        throw new IllegalStateException("Determinization needs more than " + maxStates + " states");
+                    }
+                    id = sets.size();
+                    ids.put(key, id);
+                    sets.add(target);
+                }
+                matrix[d * alphabetSize + a] = id;
+            }
+        }
+        boolean[] dfaFinals = new boolean[sets.size()];
+        for (int d = 0; d < dfaFinals.length; d++)
+        {
+            dfaFinals[d] = builder.isFinal(sets.get(d));
+        }
+        return CompiledAutomaton.fromMatrix(symbolMap, dfaFinals, Arrays.copyOf(matrix, sets.size() * alphabetSize));
+    }
+}
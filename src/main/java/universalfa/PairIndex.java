@@ -0,0 +1,92 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that numbers non-negative longs, such as packed state pairs, by open addressing without boxing them */
+class PairIndex
+{
+    static final long EMPTY = -1; // Marks a free slot
+
+    long[] keys = new long[64]; // At most half full
+    int[] values = new int[64]; // Number of each key
+    int shift = 58; // 64 minus log2 of the table length, the top bits of the hash pick the slot
+    int size = 0; // Number of keys held
+
+    /** Constructor with no keys */
+    PairIndex()
+    {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /** Retrieves the number of a key.
+        @param key  The key, 0 or more.
+        @return  Its number, or -1 if it is not held. */
+    public int get(long key)
+    {
+        int mask = keys.length - 1;
+        for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key)
+            {
+                return values[slot];
+            }
+        }
+        return -1;
+    }
+
+    /** Numbers a key unless it is already held.
+        @param key  The key, 0 or more.
+        @param value  Its number, 0 or more.
+        @return  The number it already had, or -1 if it was added. */
+    public int putIfAbsent(long key, int value)
+    {
+        int mask = keys.length - 1;
+        int slot = slot(key);
+        while (keys[slot] != EMPTY)
+        {
+            if (keys[slot] == key)
+            {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length)
+        {
+            grow();
+        }
+        return -1;
+    }
+
+    /** Finds the home slot of a key, Fibonacci hashing spreads consecutive pairs. */
+    private int slot(long key)
+    {
+        return (int) (key * 0x9E3779B97F4A7C15L >>> shift);
+    }
+
+    /** Doubles the table and puts every key back. */
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new int[keys.length];
+        shift--;
+        Arrays.fill(keys, EMPTY);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY)
+            {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
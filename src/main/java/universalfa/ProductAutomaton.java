@@ -0,0 +1,230 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that combines two compiled FAs by a product whose states are built only when reached.
+    A state is a pair of one state of each machine, where a missing transition leads to that machine's implicit dead state,
+    and it is final when the operation holds for the finality of its two halves. Pairs that can no longer accept,
+    such as two dead halves, are not built and stand for the product's own dead state.
+    Both machines are read over the classes their alphabets cut out together. Not thread-safe, the cache grows as it is used. */
+class ProductAutomaton
+{
+    static final int UNION = 0; // Accepted by either machine
+    static final int INTERSECTION = 1; // Accepted by both machines
+    static final int DIFFERENCE = 2; // Accepted by the first machine and not by the second
+    static final int UNKNOWN = -2; // Transition not computed yet
+    static final int DEAD = CompiledAutomaton.NO_TRANSITION; // A pair that accepts nothing
+
+    final CompiledAutomaton a; // The first machine
+    final CompiledAutomaton b; // The second machine
+    final int operation; // UNION, INTERSECTION or DIFFERENCE
+    final SymbolMap symbolMap; // Shared classes, then the longer symbols
+    final int[] columnsA; // Column in a of each shared column, -1 if outside a's alphabet
+    final int[] columnsB; // Column in b of each shared column, -1 if outside b's alphabet
+    final int alphabetSize; // Number of shared columns
+    final long width; // Pair (p, q) is numbered p * width + q, the dead state of a machine being its number of states
+    PairIndex ids = new PairIndex(); // Product state of each built pair
+    int[] statesA = new int[16]; // State of a in each product state
+    int[] statesB = new int[16]; // State of b in each product state
+    int[] table; // Transition of state s on column g at table[s * alphabetSize + g], UNKNOWN if not computed
+    boolean[] finalStates = new boolean[16]; // True if final state
+    int numberOfStates = 0; // Number of product states built
+    int startState = UNKNOWN; // Product state of the initial pair
+
+    /** Constructor with the two machines and the operation.
+        @throws IllegalArgumentException  If the operation is unknown, or the longer symbols of the machines differ. */
+    ProductAutomaton(CompiledAutomaton a, CompiledAutomaton b, int operation)
+    {
+        if (operation < UNION || operation > DIFFERENCE)
+        {
+            throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+        this.a = a;
+        this.b = b;
+        this.operation = operation;
+        symbolMap = SymbolMap.shared(a.symbolMap, b.symbolMap);
+        columnsA = symbolMap.columnsIn(a.symbolMap);
+        columnsB = symbolMap.columnsIn(b.symbolMap);
+        alphabetSize = symbolMap.size();
+        width = b.numberOfStates + 1L;
+        table = new int[Math.max(1, alphabetSize) * 16];
+    }
+
+    /** Builds the complement of a machine over its own alphabet, as the difference of the machine that accepts every
+        string of that alphabet and the machine. The implicit dead state becomes a final state that loops on every symbol.
+        @param machine  The machine.
+        @return  The lazy complement. */
+    static ProductAutomaton complement(CompiledAutomaton machine)
+    {
+        int[] matrix = new int[machine.symbolMap.size()]; // Every symbol loops on the single state
+        boolean[] finalStates = {true};
+        return new ProductAutomaton(new CompiledAutomaton(machine.symbolMap, finalStates, matrix), machine, DIFFERENCE);
+    }
+
+    /** Retrieves the initial product state.
+        @return  The state, or DEAD if the product accepts nothing. */
+    public int start()
+    {
+        if (startState == UNKNOWN)
+        {
+            startState = state(a.numberOfStates > 0 ? 0 : a.numberOfStates, b.numberOfStates > 0 ? 0 : b.numberOfStates);
+        }
+        return startState;
+    }
+
+    /** Retrieves the product state reached from a state on one shared column, building it if needed.
+        @param state  The current product state.
+        @param column  The shared column.
+        @return  The next product state, or DEAD. */
+    public int next(int state, int column)
+    {
+        int next = table[state * alphabetSize + column];
+        if (next == UNKNOWN)
+        {
+            next = state(step(a, statesA[state], columnsA[column]), step(b, statesB[state], columnsB[column]));
+            table[state * alphabetSize + column] = next;
+        }
+        return next;
+    }
+
+    /** Checks if a product state is final.
+        @param state  The state.
+        @return  True if final, false for DEAD. */
+    public boolean isFinal(int state)
+    {
+        return state != DEAD && finalStates[state];
+    }
+
+    /** Runs a string from the initial state.
+        @param input  The input string.
+        @return  True if the string is accepted. */
+    public boolean accepts(CharSequence input)
+    {
+        return EvaluationMetrics.outcome(evaluate(input)) == EvaluationMetrics.ACCEPTED;
+    }
+
+    /** Runs a string from the initial state and tells why it is rejected.
+        @param input  The input string.
+        @return  EvaluationMetrics.ACCEPTED or the reason the string is rejected, packed with the characters read. */
+    public long evaluate(CharSequence input)
+    {
+        int[] charColumns = symbolMap.charColumns;
+        int state = start();
+        int length = input.length();
+        int i = 0;
+        while (i < length && state != DEAD)
+        {
+            int symbolIndex;
+            if (symbolMap.tokenized) // Longest match against the longer symbols
+            {
+                long token = symbolMap.match(input, i, length);
+                symbolIndex = SymbolMap.column(token);
+                i += SymbolMap.length(token);
+            }
+            else
+            {
+                symbolIndex = charColumns[input.charAt(i++)];
+            }
+            if (symbolIndex == -1)
+            {
+                return EvaluationMetrics.result(EvaluationMetrics.UNKNOWN_SYMBOL, i);
+            }
+            state = next(state, symbolIndex);
+        }
+        if (state == DEAD)
+        {
+            return EvaluationMetrics.result(EvaluationMetrics.MISSING_TRANSITION, i);
+        }
+        return EvaluationMetrics.result(finalStates[state] ? EvaluationMetrics.ACCEPTED : EvaluationMetrics.NOT_FINAL, i);
+    }
+
+    /** Builds every reachable product state into a compiled machine, the initial pair is always the first state built.
+        @param minimize  True to minimize the result.
+        @return  The compiled product. */
+    public CompiledAutomaton build(boolean minimize)
+    {
+        if (start() == DEAD) // Empty language, a single non-final state is kept as the initial state
+        {
+            int[] matrix = new int[alphabetSize];
+            Arrays.fill(matrix, CompiledAutomaton.NO_TRANSITION);
+            return new CompiledAutomaton(symbolMap, new boolean[1], matrix);
+        }
+        for (int state = 0; state < numberOfStates; state++) // States built on the way are appended and visited in turn
+        {
+            for (int column = 0; column < alphabetSize; column++)
+            {
+                next(state, column);
+            }
+        }
+        CompiledAutomaton machine = CompiledAutomaton.fromMatrix(symbolMap, Arrays.copyOf(finalStates, numberOfStates),
+            Arrays.copyOf(table, numberOfStates * alphabetSize)).withTokenTypes(tokenTypes());
+        return minimize ? Minimizer.minimize(machine) : machine;
+    }
+
+    /** Collects the token type of each built state, the smallest type of its final halves as in a lexer.
+        @return  The token types, or null if every final state of both machines has type 0. */
+    private int[] tokenTypes()
+    {
+        if (a.tokenTypes == null && b.tokenTypes == null)
+        {
+            return null;
+        }
+        int[] tokenTypes = new int[numberOfStates];
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            int p = statesA[state];
+            int q = statesB[state];
+            int typeA = p == a.numberOfStates ? Lexer.NO_TOKEN : a.tokenType(p);
+            int typeB = q == b.numberOfStates ? Lexer.NO_TOKEN : b.tokenType(q);
+            tokenTypes[state] = typeA == Lexer.NO_TOKEN || (typeB != Lexer.NO_TOKEN && typeB < typeA) ? typeB : typeA;
+        }
+        return tokenTypes;
+    }
+
+    /** Steps one machine, its dead state being its number of states. */
+    private static int step(CompiledAutomaton machine, int state, int column)
+    {
+        if (state == machine.numberOfStates || column == -1)
+        {
+            return machine.numberOfStates;
+        }
+        int next = machine.nextState(state, column);
+        return next == CompiledAutomaton.NO_TRANSITION ? machine.numberOfStates : next;
+    }
+
+    /** Retrieves the product state of a pair, building it if needed. */
+    private int state(int p, int q)
+    {
+        boolean deadA = p == a.numberOfStates;
+        boolean deadB = q == b.numberOfStates;
+        if (operation == UNION ? deadA && deadB : deadA || (operation == INTERSECTION && deadB)) // Can no longer accept
+        {
+            return DEAD;
+        }
+        int id = ids.putIfAbsent(p * width + q, numberOfStates);
+        if (id != -1)
+        {
+            return id;
+        }
+        id = numberOfStates++;
+        if (numberOfStates > finalStates.length)
+        {
+            statesA = Arrays.copyOf(statesA, 2 * numberOfStates);
+            statesB = Arrays.copyOf(statesB, 2 * numberOfStates);
+            finalStates = Arrays.copyOf(finalStates, 2 * numberOfStates);
+        }
+        if (numberOfStates * alphabetSize > table.length)
+        {
+            int oldLength = table.length;
+            table = Arrays.copyOf(table, Math.max(oldLength * 2, numberOfStates * alphabetSize));
+            Arrays.fill(table, oldLength, table.length, UNKNOWN);
+        }
+        Arrays.fill(table, id * alphabetSize, (id + 1) * alphabetSize, UNKNOWN);
+        statesA[id] = p;
+        statesB[id] = q;
+        boolean inA = !deadA && a.isFinal(p);
+        boolean inB = !deadB && b.isFinal(q);
+        finalStates[id] = operation == UNION ? inA || inB : operation == INTERSECTION ? inA && inB : inA && !inB;
+        return id;
+    }
+}
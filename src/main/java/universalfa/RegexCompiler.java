@@ -0,0 +1,324 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that compiles regular expressions to FAs by Thompson construction.
+    Supports concatenation, '|', '*', '+', '?', parentheses, '.', classes such as '[a-z0-9_]' or '[^,\n]'
+    and backslash escapes. '.' and classes match one UTF-16 char, '.' any char but a line terminator as in java.util.regex. */
+class RegexCompiler
+{
+    static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029"; // Characters '.' does not match
+    static final int CHARS = Character.MAX_VALUE + 1; // Number of UTF-16 chars, what a negated class is taken from
+
+    String pattern; // The regular expression
+    int position = 0; // Index of the next character to parse
+    int numberOfStates = 0; // Number of NFA states made so far
+    int[] edgeFrom = new int[64]; // Edge i goes from edgeFrom[i] to edgeTo[i] on characters edgeFirst[i] to edgeLast[i], -1 for epsilon
+    int[] edgeFirst = new int[64];
+    int[] edgeLast = new int[64];
+    int[] edgeTo = new int[64];
+    int numberOfEdges = 0;
+
+    /** Constructor with a pattern */
+    RegexCompiler(String pattern)
+    {
+        this.pattern = pattern;
+    }
+
+    /** Compiles a pattern into a minimal DFA over the characters it can match.
+        @param pattern  The regular expression.
+        @return  The compiled machine, a string is accepted if the whole string matches.
+        @throws IllegalArgumentException  If the pattern is malformed. */
+    static CompiledAutomaton compile(String pattern)
+    {
+        RegexCompiler compiler = new RegexCompiler(pattern);
+        int start = compiler.newState(); // State 0 is the initial state
+        int[] fragment = compiler.parseAlternation();
+        if (compiler.position < pattern.length()) // Only an unmatched ')' stops the parse early
+        {
+            throw compiler.error("Unmatched ')'");
+        }
+        compiler.addEdge(start, -1, fragment[0]);
+
+        // The alphabet is every character the pattern can match, in classes cut by the edge ranges
+        int[] ranges = new int[2 * compiler.numberOfEdges];
+        int numberOfRanges = 0;
+        for (int i = 0; i < compiler.numberOfEdges; i++)
+        {
+            if (compiler.edgeFirst[i] != -1)
+            {
+                ranges[2 * numberOfRanges] = compiler.edgeFirst[i];
+                ranges[2 * numberOfRanges + 1] = compiler.edgeLast[i];
+                numberOfRanges++;
+            }
+        }
+        SymbolMap symbolMap = SymbolMap.split(ranges, numberOfRanges, ranges, numberOfRanges, new String[0]);
+        int numberOfEdges = 0; // One NFA edge per class an edge range covers
+        for (int i = 0; i < compiler.numberOfEdges; i++)
+        {
+            numberOfEdges += compiler.edgeFirst[i] == -1 ? 1 : symbolMap.charColumns[compiler.edgeLast[i]] - symbolMap.charColumns[compiler.edgeFirst[i]] + 1;
+        }
+        int[] edgeFrom = new int[numberOfEdges];
+        int[] edgeColumn = new int[numberOfEdges];
+        int[] edgeTo = new int[numberOfEdges];
+        int edge = 0;
+        for (int i = 0; i < compiler.numberOfEdges; i++)
+        {
+            int firstColumn = compiler.edgeFirst[i] == -1 ? -1 : symbolMap.charColumns[compiler.edgeFirst[i]];
+            int lastColumn = compiler.edgeFirst[i] == -1 ? -1 : symbolMap.charColumns[compiler.edgeLast[i]];
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                edgeFrom[edge] = compiler.edgeFrom[i];
+                edgeColumn[edge] = column;
+                edgeTo[edge] = compiler.edgeTo[i];
+                edge++;
+            }
+        }
+        boolean[] finalStates = new boolean[compiler.numberOfStates];
+        finalStates[fragment[1]] = true;
+        NfaProgram nfa = new NfaProgram(symbolMap, finalStates, edgeFrom, edgeColumn, edgeTo, numberOfEdges);
+        return Minimizer.minimize(nfa.determinize(FiniteAutomataMachine.DETERMINIZE_STATE_LIMIT));
+    }
+
+    /** Parses alternatives separated by '|', iteratively so long alternations do not nest.
+        @return  The fragment as {start, end}. */
+    private int[] parseAlternation()
+    {
+        int[] first = parseConcatenation();
+        if (position == pattern.length() || pattern.charAt(position) != '|')
+        {
+            return first;
+        }
+        int start = newState();
+        int end = newState();
+        addEdge(start, -1, first[0]);
+        addEdge(first[1], -1, end);
+        while (position < pattern.length() && pattern.charAt(position) == '|')
+        {
+            position++;
+            int[] next = parseConcatenation();
+            addEdge(start, -1, next[0]);
+            addEdge(next[1], -1, end);
+        }
+        return new int[] {start, end};
+    }
+
+    /** Parses a sequence of repeated atoms, an empty sequence matches the empty string.
+        @return  The fragment as {start, end}. */
+    private int[] parseConcatenation()
+    {
+        int[] result = null;
+        while (position < pattern.length() && pattern.charAt(position) != '|' && pattern.charAt(position) != ')')
+        {
+            int[] next = parseRepetition();
+            if (result == null)
+            {
+                result = next;
+            }
+            else
+            {
+                addEdge(result[1], -1, next[0]);
+                result[1] = next[1];
+            }
+        }
+        if (result == null)
+        {
+            result = new int[] {newState(), newState()};
+            addEdge(result[0], -1, result[1]);
+        }
+        return result;
+    }
+
+    /** Parses an atom followed by any number of '*', '+' and '?'.
+        @return  The fragment as {start, end}. */
+    private int[] parseRepetition()
+    {
+        int[] fragment = parseAtom();
+        while (position < pattern.length())
+        {
+            char operator = pattern.charAt(position);
+            if (operator != '*' && operator != '+' && operator != '?')
+            {
+                break;
+            }
+            position++;
+            int start = newState();
+            int end = newState();
+            addEdge(start, -1, fragment[0]);
+            addEdge(fragment[1], -1, end);
+            if (operator != '?') // Loops back for '*' and '+'
+            {
+                addEdge(fragment[1], -1, fragment[0]);
+            }
+            if (operator != '+') // Skips the atom for '*' and '?'
+            {
+                addEdge(start, -1, end);
+            }
+            fragment = new int[] {start, end};
+        }
+        return fragment;
+    }
+
+    /** Parses a character, an escape, a class or a group.
+        @return  The fragment as {start, end}. */
+    private int[] parseAtom()
+    {
+        char c = pattern.charAt(position++);
+        if (c == '(')
+        {
+            int[] inner = parseAlternation();
+            if (position == pattern.length() || pattern.charAt(position) != ')')
+            {
+                throw error("Missing ')'");
+            }
+            position++;
+            return inner;
+        }
+        if (c == '*' || c == '+' || c == '?')
+        {
+            position--;
+            throw error("Nothing to repeat before '" + c + "'");
+        }
+        int start = newState();
+        int end = newState();
+        if (c == '[')
+        {
+            parseClass(start, end);
+        }
+        else if (c == '.')
+        {
+            BitSet members = new BitSet(CHARS);
+            members.set(0, CHARS);
+            for (int i = 0; i < LINE_TERMINATORS.length(); i++)
+            {
+                members.clear(LINE_TERMINATORS.charAt(i));
+            }
+            addEdges(start, members, end);
+        }
+        else
+        {
+            addEdge(start, c == '\\' ? parseEscape() : c, end);
+        }
+        return new int[] {start, end};
+    }
+
+    /** Parses the rest of a class such as 'a-z0-9_]' or '^,]', adding one edge per run of characters.
+        A '^' first negates the class, it takes every char that is not listed. */
+    private void parseClass(int start, int end)
+    {
+        BitSet members = new BitSet();
+        boolean negated = position < pattern.length() && pattern.charAt(position) == '^';
+        if (negated)
+        {
+            position++;
+        }
+        boolean empty = true;
+        while (position < pattern.length() && pattern.charAt(position) != ']')
+        {
+            char c = pattern.charAt(position++);
+            int from = c == '\\' ? parseEscape() : c;
+            int to = from;
+            // A '-' between two characters makes a range, a '-' first or last is a literal
+            if (position + 1 < pattern.length() && pattern.charAt(position) == '-' && pattern.charAt(position + 1) != ']')
+            {
+                position++;
+                char last = pattern.charAt(position++);
+                to = last == '\\' ? parseEscape() : last;
+                if (to < from)
+                {
+                    throw error("Range out of order");
+                }
+            }
+            members.set(from, to + 1);
+            empty = false;
+        }
+        if (position == pattern.length())
+        {
+            throw error("Missing ']'");
+        }
+        if (empty)
+        {
+            throw error("Empty class");
+        }
+        position++;
+        if (negated)
+        {
+            members.flip(0, CHARS);
+        }
+        addEdges(start, members, end);
+    }
+
+    /** Adds one edge per run of characters of a set, none if the set is empty. */
+    private void addEdges(int from, BitSet members, int to)
+    {
+        int first = members.nextSetBit(0);
+        while (first >= 0)
+        {
+            int next = members.nextClearBit(first); // One past the last character of the run
+            addEdge(from, first, next - 1, to);
+            first = members.nextSetBit(next);
+        }
+    }
+
+    /** Parses the character after a backslash.
+        @return  The escaped character, n, r and t stand for newline, return and tab, punctuation stands for itself.
+        @throws IllegalArgumentException  If another letter or a digit is escaped, such as the \d and \w classes or a back reference. */
+    private int parseEscape()
+    {
+        if (position == pattern.length())
+        {
+            throw error("Trailing '\\'");
+        }
+        char c = pattern.charAt(position++);
+        switch (c)
+        {
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))
+                {
+                    throw error("Unsupported escape '\\" + c + "'");
+                }
+                return c;
+        }
+    }
+
+    /** Makes a new NFA state. */
+    private int newState()
+    {
+        return numberOfStates++;
+    }
+
+    /** Adds an edge on a character, or an epsilon edge for label -1. */
+    private void addEdge(int from, int label, int to)
+    {
+        addEdge(from, label, label, to);
+    }
+
+    /** Adds an edge on every character from first to last, or an epsilon edge for first -1. */
+    private void addEdge(int from, int first, int last, int to)
+    {
+        if (numberOfEdges == edgeFrom.length)
+        {
+            edgeFrom = Arrays.copyOf(edgeFrom, 2 * numberOfEdges);
+            edgeFirst = Arrays.copyOf(edgeFirst, 2 * numberOfEdges);
+            edgeLast = Arrays.copyOf(edgeLast, 2 * numberOfEdges);
+            edgeTo = Arrays.copyOf(edgeTo, 2 * numberOfEdges);
+        }
+        edgeFrom[numberOfEdges] = from;
+        edgeFirst[numberOfEdges] = first;
+        edgeLast[numberOfEdges] = last;
+        edgeTo[numberOfEdges] = to;
+        numberOfEdges++;
+    }
+
+    /** Builds a parse error pointing at the current position. */
+    private IllegalArgumentException error(String message)
+    {
+        return new IllegalArgumentException(message + " at position " + position + " of '" + pattern + "'");
+    }
+}
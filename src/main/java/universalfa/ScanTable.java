@@ -0,0 +1,77 @@
+package universalfa;
+
+/** A class that holds an unanchored DFA laid out for scanning: states are stored as the offset of their row,
+    final states are numbered last so one comparison tests them, and an extra last column sends a character
+    outside the alphabet back to the start, so the scan loop has no branch besides the final test. */
+class ScanTable
+{
+    final int[] table; // Row offset of the destination of the state with row offset r on column a at table[r + a]
+    final int width; // Columns per row, the alphabet plus the reset column
+    final int start; // Row offset of the start state
+    final int firstFinal; // Row offset of the first final state, every state from it on is final
+    final boolean[] staysAtStart; // True for a character that leads from the start back to the start, skipped without a table load
+    final int onlyExit; // The one character that leaves the start, found with String.indexOf, -1 if there are more or none
+
+    /** Constructor with an unanchored DFA, where no state is dead, and the column of each character */
+    ScanTable(CompiledAutomaton dfa, int[] scanColumns)
+    {
+        int n = dfa.numberOfStates;
+        width = dfa.alphabetSize + 1;
+        int[] rows = new int[n]; // New row of each DFA state
+        int next = 0;
+        for (int pass = 0; pass < 2; pass++) // Non-final states first, final states after
+        {
+            for (int state = 0; state < n; state++)
+            {
+                if (dfa.isFinal(state) == (pass == 1))
+                {
+                    rows[state] = next++;
+                }
+            }
+        }
+        table = new int[n * width];
+        int numberOfFinal = 0;
+        for (int state = 0; state < n; state++)
+        {
+            numberOfFinal += dfa.isFinal(state) ? 1 : 0;
+            int row = rows[state] * width;
+            for (int column = 0; column < dfa.alphabetSize; column++)
+            {
+                int target = dfa.nextState(state, column);
+                table[row + column] = (target == CompiledAutomaton.NO_TRANSITION ? rows[0] : rows[target]) * width;
+            }
+            table[row + dfa.alphabetSize] = rows[0] * width;
+        }
+        start = rows[0] * width;
+        firstFinal = (n - numberOfFinal) * width;
+        staysAtStart = new boolean[scanColumns.length];
+        int exit = -1;
+        int exits = 0;
+        for (int c = 0; c < scanColumns.length; c++)
+        {
+            staysAtStart[c] = table[start + scanColumns[c]] == start;
+            if (!staysAtStart[c])
+            {
+                exit = c;
+                exits++;
+            }
+        }
+        onlyExit = exits == 1 ? exit : -1;
+    }
+
+    /** Skips forward over characters that keep the start state.
+        @return  Offset of the first character that leaves it, or length if there is none. */
+    int skipForward(CharSequence text, int from, int length)
+    {
+        if (onlyExit != -1 && text instanceof String) // A single character to look for, which indexOf finds with vector instructions
+        {
+            int found = ((String) text).indexOf(onlyExit, from);
+            return found < 0 || found > length ? length : found;
+        }
+        while (from < length && staysAtStart[text.charAt(from)])
+        {
+            from++;
+        }
+        return from;
+    }
+}
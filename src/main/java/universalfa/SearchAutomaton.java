@@ -0,0 +1,297 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that finds the matches of a compiled FA inside a text, without anchoring them at the start.
+    The forward table has an implicit .* prefix built in, so one pass finds every offset where a match ends.
+    Start offsets are carried through a forward pass by StartThreads, so no character is read more than twice
+    however long the matches are. Empty matches are never reported. Only single-character symbols are
+    supported, the same as the scan table reads them. */
+class SearchAutomaton
+{
+    final CompiledAutomaton machine; // The anchored machine, state 0 is the start
+    final ScanTable forward; // Final after reading text[0 .. e) if a match ends at e
+    final int[] charColumns; // Column of each character in the machine, -1 if none
+    final int[] scanColumns; // Column of each character in the scan table, a character outside the alphabet has the last column
+
+    /** Constructor with a compiled machine.
+        @throws IllegalStateException  If the machine has symbols longer than one character, or the table needs more
+                                       than DETERMINIZE_STATE_LIMIT states. */
+    SearchAutomaton(CompiledAutomaton machine)
+    {
+        if (machine.symbolMap.tokenized)
+        {
+            throw new IllegalStateException("Search does not support symbols longer than one character");
+        }
+        this.machine = machine;
+        this.charColumns = machine.charColumns;
+        scanColumns = new int[charColumns.length];
+        for (int c = 0; c < charColumns.length; c++)
+        {
+            scanColumns[c] = charColumns[c] == -1 ? machine.alphabetSize : charColumns[c];
+        }
+        forward = new ScanTable(build(machine), scanColumns);
+    }
+
+    /** Determinizes the machine behind a new start state that has the transitions of the old start and a self-loop
+        on every column, so it is unanchored. The new state is not final, so the empty string never matches.
+        @return  The compiled table. */
+    private static CompiledAutomaton build(CompiledAutomaton machine)
+    {
+        int n = machine.numberOfStates;
+        int alphabetSize = machine.alphabetSize;
+        int capacity = alphabetSize;
+        for (int state = 0; state < n; state++)
+        {
+            for (int column = 0; column < alphabetSize; column++)
+            {
+                if (machine.nextState(state, column) != CompiledAutomaton.NO_TRANSITION)
+                {
+                    capacity += 2;
+                }
+            }
+        }
+        int[] edgeFrom = new int[capacity];
+        int[] edgeColumn = new int[capacity];
+        int[] edgeTo = new int[capacity];
+        int numberOfEdges = 0;
+        for (int state = 0; state < n; state++) // Machine state s is state s + 1, state 0 is the new start
+        {
+            for (int column = 0; column < alphabetSize; column++)
+            {
+                int target = machine.nextState(state, column);
+                if (target == CompiledAutomaton.NO_TRANSITION)
+                {
+                    continue;
+                }
+                edgeFrom[numberOfEdges] = state + 1;
+                edgeColumn[numberOfEdges] = column;
+                edgeTo[numberOfEdges++] = target + 1;
+                if (state == 0) // Copies the edges that leave the start
+                {
+                    edgeFrom[numberOfEdges] = 0;
+                    edgeColumn[numberOfEdges] = column;
+                    edgeTo[numberOfEdges++] = target + 1;
+                }
+            }
+        }
+        for (int column = 0; column < alphabetSize; column++)
+        {
+            edgeFrom[numberOfEdges] = 0;
+            edgeColumn[numberOfEdges] = column;
+            edgeTo[numberOfEdges++] = 0;
+        }
+        boolean[] finalStates = new boolean[n + 1];
+        for (int state = 0; state < n; state++)
+        {
+            finalStates[state + 1] = machine.isFinal(state);
+        }
+        NfaProgram program = new NfaProgram(machine.symbolMap, finalStates, edgeFrom, edgeColumn, edgeTo, numberOfEdges);
+        return program.determinize(FiniteAutomataMachine.DETERMINIZE_STATE_LIMIT);
+    }
+
+    /** Finds every offset where a match ends, in one forward pass, with the leftmost start of a match ending there.
+        Matches may overlap. Only the forward table runs while no match has ended, the machine is then run from
+        every start since the table left its start, and kept in step with it until the table returns there.
+        @param text  The text.
+        @param listener  Receives the matches.
+        @return  Number of matches. */
+    public int findAll(CharSequence text, MatchListener listener)
+    {
+        int[] table = forward.table;
+        int[] scanColumns = this.scanColumns;
+        int start = forward.start;
+        int firstFinal = forward.firstFinal;
+        StartThreads threads = new StartThreads(machine);
+        int count = 0;
+        int state = start;
+        int length = text.length();
+        int end = 0;
+        int caughtUp = 0; // The threads have read text[.. caughtUp), they fall behind while no match needs them
+        while (end < length)
+        {
+            if (state == start) // Nothing in progress, skips characters that cannot begin a match
+            {
+                threads.clear();
+                end = forward.skipForward(text, end, length);
+                caughtUp = end;
+                if (end == length)
+                {
+                    break;
+                }
+            }
+            state = table[state + scanColumns[text.charAt(end++)]];
+            if (state >= firstFinal)
+            {
+                for (; caughtUp < end; caughtUp++) // Each character is read at most once more
+                {
+                    threads.add(caughtUp);
+                    threads.step(charColumns[text.charAt(caughtUp)]);
+                }
+                listener.match(threads.leftmostFinal(), end);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Finds every offset where a match ends, storing the matches in a caller-supplied buffer.
+        @param text  The text.
+        @param matches  Receives match i as (long) start << 32 | end, matches past its length are counted but not stored.
+        @return  Number of matches, more than matches.length if the buffer was too small. */
+    public int findAll(CharSequence text, long[] matches)
+    {
+        return findAll(text, store(matches));
+    }
+
+    /** Finds the leftmost-longest matches, which do not overlap, the way a lexer or a regex find loop would.
+        One forward pass runs the machine from every start at once and reads each character once past the skipped ones.
+        The starts are taken in rounds: once a start of the open round has a match, the starts that follow belong to
+        a new round, as they can only be picked after that match ends. A thread that reaches a final state gives its
+        round a match if its start is the leftmost of the round so far, or a longer end for that start, and then the
+        later rounds lie inside the match and are dropped, with every thread that started after it. Threads of two
+        rounds that meet keep the earlier start, since any match they find drops the later round. A round is reported
+        once no thread carries its starts, so matches wait while an earlier round can still grow, three ints each.
+        @param text  The text.
+        @param listener  Receives the matches.
+        @return  Number of matches. */
+    public int findLeftmostLongest(CharSequence text, MatchListener listener)
+    {
+        int length = text.length();
+        StartThreads threads = new StartThreads(machine);
+        int[] roundFrom = new int[16]; // First start of each round, round last is open and takes the new starts
+        int[] matchStart = new int[16]; // Leftmost start with a match in each round, -1 for the open round
+        int[] matchEnd = new int[16]; // Longest end of the match from that start
+        int first = 0; // Oldest round not reported yet
+        int last = 0;
+        matchStart[0] = -1;
+        int count = 0;
+        int end = 0;
+        while (end < length)
+        {
+            if (threads.size == 0) // Every round is resolved, nothing can match before the next character that leaves the start
+            {
+                for (; first < last; first++)
+                {
+                    listener.match(matchStart[first], matchEnd[first]);
+                    count++;
+                }
+                first = 0;
+                last = 0;
+                end = forward.skipForward(text, end, length);
+                if (end == length)
+                {
+                    break;
+                }
+                roundFrom[0] = end;
+                matchStart[0] = -1;
+            }
+            threads.add(end);
+            threads.step(charColumns[text.charAt(end++)]);
+            int updated = -1; // Earliest round this character gave a match or a longer end
+            for (int i = 0; i < threads.size; i++)
+            {
+                if (!machine.isFinal(threads.states[i]))
+                {
+                    continue;
+                }
+                int start = threads.starts[i];
+                int round = round(roundFrom, first, last, start);
+                if (matchStart[round] == -1 || start <= matchStart[round]) // Threads after the match start were dropped
+                {
+                    matchStart[round] = start;
+                    matchEnd[round] = end;
+                    updated = updated == -1 ? round : Math.min(updated, round);
+                }
+            }
+            if (updated != -1)
+            {
+                threads.keepUpTo(matchStart[updated]);
+                last = updated + 1;
+                if (last == roundFrom.length) // Moves the rounds not reported yet to the front, or grows the arrays
+                {
+                    int kept = last - first;
+                    int newLength = 2 * kept > roundFrom.length ? 2 * roundFrom.length : roundFrom.length;
+                    roundFrom = moveRounds(roundFrom, first, kept, newLength);
+                    matchStart = moveRounds(matchStart, first, kept, newLength);
+                    matchEnd = moveRounds(matchEnd, first, kept, newLength);
+                    first = 0;
+                    last = kept;
+                }
+                roundFrom[last] = end;
+                matchStart[last] = -1;
+            }
+            if (first < last)
+            {
+                int earliest = threads.earliest();
+                for (; first < last && earliest >= roundFrom[first + 1]; first++)
+                {
+                    listener.match(matchStart[first], matchEnd[first]);
+                    count++;
+                }
+            }
+        }
+        for (; first < last; first++) // The text ended every thread
+        {
+            listener.match(matchStart[first], matchEnd[first]);
+            count++;
+        }
+        return count;
+    }
+
+    /** Finds the round a start belongs to, by binary search.
+        @return  The last round from first to last whose first start is at or before the start. */
+    private static int round(int[] roundFrom, int first, int last, int start)
+    {
+        int low = first;
+        int high = last;
+        while (low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+            if (roundFrom[middle] <= start)
+            {
+                low = middle;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /** Copies count rounds from index first to the front of an array of the given length. */
+    private static int[] moveRounds(int[] rounds, int first, int count, int newLength)
+    {
+        int[] moved = newLength == rounds.length ? rounds : new int[newLength];
+        System.arraycopy(rounds, first, moved, 0, count);
+        return moved;
+    }
+
+    /** Finds the leftmost-longest matches, storing them in a caller-supplied buffer.
+        @param text  The text.
+        @param matches  Receives match i as (long) start << 32 | end, matches past its length are counted but not stored.
+        @return  Number of matches, more than matches.length if the buffer was too small. */
+    public int findLeftmostLongest(CharSequence text, long[] matches)
+    {
+        return findLeftmostLongest(text, store(matches));
+    }
+
+    /** Wraps a buffer as a listener that packs each match into one long. */
+    private static MatchListener store(long[] matches)
+    {
+        return new MatchListener()
+        {
+            int index = 0;
+
+            public void match(int start, int end)
+            {
+                if (index < matches.length)
+                {
+                    matches[index] = (long) start << 32 | end;
+                }
+                index++;
+            }
+        };
+    }
+}
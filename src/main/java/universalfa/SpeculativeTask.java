@@ -0,0 +1,139 @@
+package universalfa;
+
+import java.util.*;
+import java.util.concurrent.RecursiveTask;
+
+/** A fork/join task that maps every start state to its end state over a range of one string */
+class SpeculativeTask extends RecursiveTask<int[]>
+{
+    private static final long serialVersionUID = 1L;
+
+    static final int MERGE_INTERVAL = 64; // Characters between merges of runs that reached the same state
+
+    CompiledAutomaton machine; // Shared, read-only
+    CharSequence input; // Whole string
+    int from; // First index of the range
+    int to; // One past the last index of the range
+    int chunkSize; // Range length at which the task stops splitting
+    boolean fromInitial; // True for the leftmost range, only state 0 has to be mapped
+
+    /** Constructor with the machine, the string and the range to run */
+    SpeculativeTask(CompiledAutomaton machine, CharSequence input, int from, int to, int chunkSize, boolean fromInitial)
+    {
+        this.machine = machine;
+        this.input = input;
+        this.from = from;
+        this.to = to;
+        this.chunkSize = chunkSize;
+        this.fromInitial = fromInitial;
+    }
+
+    /** Splits the range in half until it is small enough, then composes the halves' mappings.
+        @return  Mapping from start state to end state, NO_TRANSITION if the run dies. */
+    protected int[] compute()
+    {
+        if (to - from <= chunkSize)
+        {
+            return fromInitial ? runFromInitial() : runFromEveryState();
+        }
+        int middle = (from + to) >>> 1;
+        SpeculativeTask left = new SpeculativeTask(machine, input, from, middle, chunkSize, fromInitial);
+        SpeculativeTask right = new SpeculativeTask(machine, input, middle, to, chunkSize, false);
+        left.fork();
+        int[] rightMapping = right.compute();
+        int[] leftMapping = left.join();
+        for (int s = 0; s < leftMapping.length; s++) // Left to right: s goes to leftMapping[s], then on through the right half
+        {
+            int middleState = leftMapping[s];
+            leftMapping[s] = middleState == CompiledAutomaton.NO_TRANSITION ? middleState : rightMapping[middleState];
+        }
+        return leftMapping;
+    }
+
+    /** Runs the range from state 0 only, the other entries are left dead. */
+    private int[] runFromInitial()
+    {
+        int[] mapping = new int[machine.numberOfStates];
+        Arrays.fill(mapping, CompiledAutomaton.NO_TRANSITION);
+        int state = 0;
+        for (int i = from; i < to && state != CompiledAutomaton.NO_TRANSITION; i++)
+        {
+            int symbolIndex = machine.charColumns[input.charAt(i)];
+            state = symbolIndex == -1 ? CompiledAutomaton.NO_TRANSITION : machine.nextState(state, symbolIndex);
+        }
+        mapping[0] = state;
+        return mapping;
+    }
+
+    /** Runs the range from every state at once, merging runs as soon as they reach the same state. */
+    private int[] runFromEveryState()
+    {
+        int numberOfStates = machine.numberOfStates;
+        int[] charColumns = machine.charColumns;
+        int[] matrix = machine.matrix;
+        int alphabetSize = machine.alphabetSize;
+        int[] active = new int[numberOfStates]; // Current state of each distinct run
+        int[] owner = new int[numberOfStates]; // Index into active of the run each start state follows
+        int[] mergedIndex = new int[numberOfStates + 1]; // Scratch for merging, slot numberOfStates is the dead state
+        for (int s = 0; s < numberOfStates; s++)
+        {
+            active[s] = s;
+            owner[s] = s;
+        }
+        int count = numberOfStates; // Number of distinct runs
+        for (int i = from; i < to; i++)
+        {
+            int symbolIndex = charColumns[input.charAt(i)];
+            for (int j = 0; j < count; j++)
+            {
+                int state = active[j];
+                if (state == CompiledAutomaton.NO_TRANSITION || symbolIndex == -1)
+                {
+                    active[j] = CompiledAutomaton.NO_TRANSITION;
+                }
+                else
+                {
+                    active[j] = matrix != null ? matrix[state * alphabetSize + symbolIndex] : machine.nextState(state, symbolIndex);
+                }
+            }
+            if (count > 1 && (i - from) % MERGE_INTERVAL == MERGE_INTERVAL - 1)
+            {
+                count = merge(active, owner, count, mergedIndex);
+            }
+        }
+        int[] mapping = new int[numberOfStates];
+        for (int s = 0; s < numberOfStates; s++)
+        {
+            mapping[s] = active[owner[s]];
+        }
+        return mapping;
+    }
+
+    /** Folds runs that reached the same state into one.
+        @return  The new number of distinct runs. */
+    private static int merge(int[] active, int[] owner, int count, int[] mergedIndex)
+    {
+        int deadSlot = mergedIndex.length - 1;
+        for (int j = 0; j < count; j++) // Clears only the slots in use
+        {
+            mergedIndex[active[j] == CompiledAutomaton.NO_TRANSITION ? deadSlot : active[j]] = -1;
+        }
+        int[] newIndex = new int[count]; // Old run index to merged run index
+        int merged = 0;
+        for (int j = 0; j < count; j++)
+        {
+            int slot = active[j] == CompiledAutomaton.NO_TRANSITION ? deadSlot : active[j];
+            if (mergedIndex[slot] == -1)
+            {
+                mergedIndex[slot] = merged;
+                active[merged++] = active[j];
+            }
+            newIndex[j] = mergedIndex[slot];
+        }
+        for (int s = 0; s < owner.length; s++)
+        {
+            owner[s] = newIndex[owner[s]];
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,140 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that runs an anchored machine from many start offsets at once, one thread per machine state.
+    Runs that reach the same state at the same offset have the same future, so only the one with the earliest
+    start is kept, which bounds the work per character by the number of states however long the matches are.
+    Scratch space for one search, the machine is only read. */
+class StartThreads
+{
+    final CompiledAutomaton machine; // The anchored machine, state 0 is the start
+    int[] states; // Machine state of each live thread
+    int[] starts; // Earliest start offset of each live thread
+    int size; // Number of live threads
+    int[] nextStates; // Threads being built by step
+    int[] nextStarts;
+    int[] slots; // Thread index of each machine state, valid if its stamp is the current generation
+    int[] stamps;
+    int generation = 0; // Bumped for every step
+
+    /** Constructor with the anchored machine */
+    StartThreads(CompiledAutomaton machine)
+    {
+        this.machine = machine;
+        int n = machine.numberOfStates;
+        states = new int[n];
+        starts = new int[n];
+        nextStates = new int[n];
+        nextStarts = new int[n];
+        slots = new int[n];
+        stamps = new int[n];
+    }
+
+    /** Drops every thread. */
+    void clear()
+    {
+        size = 0;
+    }
+
+    /** Starts a thread at the start state, unless one with an earlier start is already there.
+        @param start  Offset of the next character. */
+    void add(int start)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (states[i] == 0)
+            {
+                return;
+            }
+        }
+        states[size] = 0;
+        starts[size++] = start;
+    }
+
+    /** Moves every thread on one column, merging threads that reach the same state into the one with the earliest start.
+        @param column  The column, -1 for a character outside the alphabet, which ends every thread. */
+    void step(int column)
+    {
+        int count = 0;
+        if (column != -1)
+        {
+            if (++generation == 0) // Wrapped, so an old stamp could look current
+            {
+                Arrays.fill(stamps, -1);
+                generation = 1;
+            }
+            for (int i = 0; i < size; i++)
+            {
+                int next = machine.nextState(states[i], column);
+                if (next == CompiledAutomaton.NO_TRANSITION)
+                {
+                    continue;
+                }
+                int start = starts[i];
+                if (stamps[next] != generation)
+                {
+                    stamps[next] = generation;
+                    slots[next] = count;
+                    nextStates[count] = next;
+                    nextStarts[count++] = start;
+                    continue;
+                }
+                if (start < nextStarts[slots[next]]) // Threads are not kept in start order, the earlier one stays
+                {
+                    nextStarts[slots[next]] = start;
+                }
+            }
+        }
+        int[] swap = states;
+        states = nextStates;
+        nextStates = swap;
+        swap = starts;
+        starts = nextStarts;
+        nextStarts = swap;
+        size = count;
+    }
+
+    /** Drops the threads that started after an offset.
+        @param start  The last start that is kept. */
+    void keepUpTo(int start)
+    {
+        int count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (starts[i] <= start)
+            {
+                states[count] = states[i];
+                starts[count++] = starts[i];
+            }
+        }
+        size = count;
+    }
+
+    /** Finds the earliest start of the threads.
+        @return  The start, or Integer.MAX_VALUE if there are no threads. */
+    int earliest()
+    {
+        int earliest = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++)
+        {
+            earliest = Math.min(earliest, starts[i]);
+        }
+        return earliest;
+    }
+
+    /** Finds the earliest start of the threads in a final state.
+        @return  The start, or -1 if no thread is final. */
+    int leftmostFinal()
+    {
+        int leftmost = -1;
+        for (int i = 0; i < size; i++)
+        {
+            if (machine.isFinal(states[i]) && (leftmost == -1 || starts[i] < leftmost))
+            {
+                leftmost = starts[i];
+            }
+        }
+        return leftmost;
+    }
+}
@@ -0,0 +1,133 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that records how often a sample workload enters each state of a compiled FA and takes each transition,
+    then lays the states out so the hot ones and their usual successors share cache lines and pages. */
+class StateProfile
+{
+    final CompiledAutomaton machine; // The profiled machine
+    final long[] visits; // Times each state was entered, state 0 once per string
+    final int[] heat; // Times each transition was taken, per cell of the matrix or sparse rows, stops at Integer.MAX_VALUE
+
+    /** Constructor with a machine and every count at zero */
+    StateProfile(CompiledAutomaton machine)
+    {
+        this.machine = machine;
+        visits = new long[machine.numberOfStates];
+        heat = new int[machine.matrix != null ? machine.matrix.length : machine.rowTargets.length];
+    }
+
+    /** Runs a string and counts the states and transitions it goes through, until it is accepted or dies.
+        @param input  The input string. */
+    public void record(CharSequence input)
+    {
+        if (machine.numberOfStates == 0)
+        {
+            return;
+        }
+        SymbolMap symbolMap = machine.symbolMap;
+        int state = 0;
+        visits[0]++;
+        int length = input.length();
+        for (int i = 0; i < length; )
+        {
+            int symbolIndex;
+            if (symbolMap.tokenized)
+            {
+                long token = symbolMap.match(input, i, length);
+                symbolIndex = SymbolMap.column(token);
+                i += SymbolMap.length(token);
+            }
+            else
+            {
+                symbolIndex = machine.charColumns[input.charAt(i++)];
+            }
+            int cell = symbolIndex == -1 ? -1 : machine.cellIndex(state, symbolIndex);
+            int next = cell == -1 ? CompiledAutomaton.NO_TRANSITION : machine.nextState(state, symbolIndex);
+            if (next == CompiledAutomaton.NO_TRANSITION)
+            {
+                return;
+            }
+            if (heat[cell] != Integer.MAX_VALUE)
+            {
+                heat[cell]++;
+            }
+            state = next;
+            visits[state]++;
+        }
+    }
+
+    /** Retrieves the number of times a state was entered.
+        @param state  The state.
+        @return  The count. */
+    public long getVisits(int state)
+    {
+        return visits[state];
+    }
+
+    /** Orders the states for the new layout. State 0 comes first, then states by falling visit count, each one
+        followed by the chain of its hottest successors not placed yet. States never visited keep their order at the end.
+        @return  Old number of each new state. */
+    public int[] layout()
+    {
+        int n = machine.numberOfStates;
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        long[] byVisits = new long[n]; // Falling visits then rising state in the high and low half
+        for (int state = 0; state < n; state++)
+        {
+            byVisits[state] = (long) (Integer.MAX_VALUE - (int) Math.min(visits[state], Integer.MAX_VALUE)) << 32 | state;
+        }
+        Arrays.sort(byVisits);
+        int count = n > 0 ? placeChain(0, order, 0, placed) : 0;
+        for (long key: byVisits)
+        {
+            int state = (int) key;
+            if (visits[state] == 0)
+            {
+                break;
+            }
+            count = placeChain(state, order, count, placed);
+        }
+        for (int state = 0; state < n; state++)
+        {
+            if (!placed[state])
+            {
+                order[count++] = state;
+            }
+        }
+        return order;
+    }
+
+    /** Places a state and then, while there is one, the hottest successor not placed yet of the last state placed.
+        @return  Number of states placed so far. */
+    private int placeChain(int state, int[] order, int count, boolean[] placed)
+    {
+        while (state != -1 && !placed[state])
+        {
+            placed[state] = true;
+            order[count++] = state;
+            int hottest = -1;
+            int best = 0;
+            for (int column = 0; column < machine.alphabetSize; column++)
+            {
+                int cell = machine.cellIndex(state, column);
+                if (cell != -1 && heat[cell] > best && !placed[machine.nextState(state, column)])
+                {
+                    best = heat[cell];
+                    hottest = machine.nextState(state, column);
+                }
+            }
+            state = hottest;
+        }
+        return count;
+    }
+
+    /** Builds the machine with the states in layout order, it accepts the same language.
+        @return  The renumbered machine. */
+    public CompiledAutomaton relayout()
+    {
+        return machine.renumber(layout());
+    }
+}
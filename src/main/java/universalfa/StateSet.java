@@ -0,0 +1,27 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that wraps a sorted NFA state set as a hash key */
+class StateSet
+{
+    final int[] states; // Sorted NFA states
+    final int hash; // Cached hash code
+
+    /** Constructor with a sorted set */
+    StateSet(int[] states)
+    {
+        this.states = states;
+        this.hash = Arrays.hashCode(states);
+    }
+
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    public boolean equals(Object other)
+    {
+        return other instanceof StateSet && Arrays.equals(states, ((StateSet) other).states);
+    }
+}
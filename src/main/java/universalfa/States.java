@@ -0,0 +1,71 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that holds the set of states for the FA */
+class States
+{
+    Boolean[] states; // Array for storing states from 0 to n-1, n is the number of states that the user inputted.
+                      // True if final state, false otherwise.
+    int[] tokenTypes; // Token type a final state stands for when the FA is used as a lexer, 0 unless set
+
+    /** Constructor with a given number of states */
+    States(int numberOfStates)
+    {
+        states = new Boolean[numberOfStates];
+        for (int i = 0; i < states.length; i++)
+        {
+            states[i] = false;
+        }
+        tokenTypes = new int[numberOfStates];
+    }
+
+    /** Copy constructor */
+    States(States sta)
+    {
+        this.states = Arrays.copyOf(sta.states, sta.getNumberOfStates());
+        this.tokenTypes = Arrays.copyOf(sta.tokenTypes, sta.getNumberOfStates());
+    }
+
+    /** Retrieves the number of states in the states array.
+        @return  Number of states. */
+    public int getNumberOfStates()
+    {
+        return states.length;
+    }
+
+    /** Retrieves the states array.
+        @return  States array. */
+    public Boolean[] getArray()
+    {
+        return states;
+    }
+
+    /** Sets an existing state to be a final state.
+        @param stateIndex  A number of the state. */
+    public void setFinalState(int stateIndex)
+    {
+        states[stateIndex] = true;
+    }
+
+    /** Sets an existing state to be a final state that stands for a token type.
+        @param stateIndex  A number of the state.
+        @param type  The token type, 0 or more. */
+    public void setTokenType(int stateIndex, int type)
+    {
+        if (type < 0)
+        {
+            throw new IllegalArgumentException("Token type must not be negative");
+        }
+        states[stateIndex] = true;
+        tokenTypes[stateIndex] = type;
+    }
+
+    /** Retrieves the token type of a state.
+        @param stateIndex  A number of the state.
+        @return  The token type, or Lexer.NO_TOKEN if the state is not final. */
+    public int getTokenType(int stateIndex)
+    {
+        return states[stateIndex] ? tokenTypes[stateIndex] : Lexer.NO_TOKEN;
+    }
+}
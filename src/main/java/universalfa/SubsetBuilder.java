@@ -0,0 +1,116 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that computes NFA state sets, with scratch space for one thread */
+class SubsetBuilder
+{
+    static final int[] EMPTY = new int[0]; // The dead set
+
+    NfaProgram program; // Shared, read-only
+    int[] seen; // seen[s] == generation if s is already in the set being built
+    int generation = 0; // Bumped for every set built
+    int[] members; // States of the set being built
+    int size; // Number of states in members
+    int[] stack; // States whose epsilon transitions are not followed yet
+    int top; // Number of states on the stack
+
+    /** Constructor with the NFA */
+    SubsetBuilder(NfaProgram program)
+    {
+        this.program = program;
+        seen = new int[program.numberOfStates];
+        members = new int[program.numberOfStates];
+        stack = new int[program.numberOfStates];
+    }
+
+    /** Builds the initial set.
+        @return  The epsilon closure of state 0, sorted. */
+    public int[] start()
+    {
+        begin();
+        if (program.numberOfStates > 0)
+        {
+            add(0);
+        }
+        return finish();
+    }
+
+    /** Builds the set reached from a set on one symbol.
+        @param set  The current set, sorted.
+        @param column  The symbol column.
+        @return  The epsilon closure of the destinations, sorted, EMPTY if there are none. */
+    public int[] move(int[] set, int column)
+    {
+        begin();
+        int[] targetStart = program.targetStart;
+        int[] targets = program.targets;
+        for (int state: set)
+        {
+            int cell = state * program.alphabetSize + column;
+            for (int i = targetStart[cell]; i < targetStart[cell + 1]; i++)
+            {
+                add(targets[i]);
+            }
+        }
+        return finish();
+    }
+
+    /** Checks if a set holds a final state.
+        @param set  The set.
+        @return  True if any member is final. */
+    public boolean isFinal(int[] set)
+    {
+        for (int state: set)
+        {
+            if (program.finalStates[state])
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Starts a new set. */
+    private void begin()
+    {
+        if (++generation == Integer.MAX_VALUE) // Clears marks before the counter wraps
+        {
+            Arrays.fill(seen, 0);
+            generation = 1;
+        }
+        size = 0;
+        top = 0;
+    }
+
+    /** Adds a state to the set being built, if it is not in it yet. */
+    private void add(int state)
+    {
+        if (seen[state] != generation)
+        {
+            seen[state] = generation;
+            members[size++] = state;
+            stack[top++] = state;
+        }
+    }
+
+    /** Follows epsilon transitions and copies out the set. */
+    private int[] finish()
+    {
+        while (top > 0)
+        {
+            int state = stack[--top];
+            for (int i = program.epsilonStart[state]; i < program.epsilonStart[state + 1]; i++)
+            {
+                add(program.epsilonTargets[i]);
+            }
+        }
+        if (size == 0)
+        {
+            return EMPTY;
+        }
+        int[] set = Arrays.copyOf(members, size);
+        Arrays.sort(set); // Sorted sets compare equal regardless of discovery order
+        return set;
+    }
+}
@@ -0,0 +1,361 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that maps alphabet symbols to matrix columns.
+    Characters are grouped into classes, runs of characters that every transition treats alike, so a wide
+    range of characters takes one column. Symbols longer than one character get a column each after the classes,
+    and input is then read by longest match against a trie of them, so a code point outside the BMP or a
+    token such as '<EOF>' can be a symbol. */
+class SymbolMap
+{
+    static final long PARTIAL = 1L << 62; // Token flag, the input ended inside a longer symbol
+
+    final int numberOfClasses; // Columns 0 to numberOfClasses - 1 are character classes
+    final char[] classFirst; // Class c holds the characters classFirst[c] to classLast[c], classes are sorted and disjoint
+    final char[] classLast;
+    final String[] longSymbols; // Symbol of column numberOfClasses + i, in sorted order
+    final int[] charColumns = new int[Character.MAX_VALUE + 1]; // Column of each character, -1 if not in the alphabet
+    final HashMap<String, Integer> columns; // Column of each symbol longer than one character
+    final boolean tokenized; // True if there are longer symbols, so input has to be read with match()
+    final int longestSymbol; // Length of the longest symbol
+    final long[] symbolStarts = new long[(Character.MAX_VALUE + 1) / 64]; // Bit c is on if a longer symbol starts with character c
+    final int[] trieChildStart; // Children of trie node n are nodes trieChildStart[n] + 1 to trieChildStart[n + 1], node 0 is the root
+    final char[] trieChildChar; // Last character of node k + 1, the children of a node are sorted by it
+    final int[] trieColumn; // Column of the symbol node n spells, -1 if it is only a prefix
+
+    /** Constructor with the character classes and the symbols longer than one character */
+    SymbolMap(char[] classFirst, char[] classLast, String[] longSymbols)
+    {
+        this.numberOfClasses = classFirst.length;
+        this.classFirst = classFirst;
+        this.classLast = classLast;
+        this.longSymbols = longSymbols;
+        this.columns = new HashMap<String, Integer>(longSymbols.length * 2);
+        Arrays.fill(charColumns, -1);
+        for (int c = 0; c < numberOfClasses; c++)
+        {
+            Arrays.fill(charColumns, classFirst[c], classLast[c] + 1, c);
+        }
+        int longest = 1;
+        for (int i = 0; i < longSymbols.length; i++)
+        {
+            columns.put(longSymbols[i], numberOfClasses + i);
+            longest = Math.max(longest, longSymbols[i].length());
+            char c = longSymbols[i].charAt(0);
+            symbolStarts[c >>> 6] |= 1L << c;
+        }
+        this.tokenized = longSymbols.length > 0;
+        this.longestSymbol = longest;
+
+        // Trie of the longer symbols, nodes numbered by length then text so the children of a node are consecutive
+        TreeSet<String> prefixes = new TreeSet<String>(new Comparator<String>()
+        {
+            public int compare(String a, String b)
+            {
+                return a.length() != b.length() ? a.length() - b.length() : a.compareTo(b);
+            }
+        });
+        for (String symbol: longSymbols)
+        {
+            for (int length = 1; length <= symbol.length(); length++)
+            {
+                prefixes.add(symbol.substring(0, length));
+            }
+        }
+        HashMap<String, Integer> nodes = new HashMap<String, Integer>(prefixes.size() * 2);
+        trieChildStart = new int[prefixes.size() + 2];
+        trieChildChar = new char[prefixes.size()];
+        trieColumn = new int[prefixes.size() + 1];
+        trieColumn[0] = -1;
+        int node = 0;
+        for (String prefix: prefixes)
+        {
+            node++;
+            nodes.put(prefix, node);
+            int parent = prefix.length() == 1 ? 0 : nodes.get(prefix.substring(0, prefix.length() - 1));
+            trieChildStart[parent + 1]++; // Counts the children of each node
+            trieChildChar[node - 1] = prefix.charAt(prefix.length() - 1);
+            Integer column = columns.get(prefix);
+            trieColumn[node] = column == null ? -1 : column;
+        }
+        for (int n = 1; n < trieChildStart.length; n++) // Turns the counts into offsets
+        {
+            trieChildStart[n] += trieChildStart[n - 1];
+        }
+    }
+
+    /** Builds the classes of an alphabet, split wherever a transition range starts or ends.
+        @param ranges  Character ranges of the alphabet as first, last pairs, in any order and possibly overlapping.
+        @param numberOfRanges  Number of pairs in ranges.
+        @param cuts  Character ranges of the transitions as first, last pairs.
+        @param numberOfCuts  Number of pairs in cuts.
+        @param longSymbols  Sorted symbols longer than one character.
+        @return  The symbol lookup. */
+    static SymbolMap split(int[] ranges, int numberOfRanges, int[] cuts, int numberOfCuts, String[] longSymbols)
+    {
+        int[] depth = new int[Character.MAX_VALUE + 2]; // Change in the number of alphabet ranges covering each character
+        boolean[] boundary = new boolean[Character.MAX_VALUE + 2]; // True where a transition range starts or ends
+        for (int i = 0; i < numberOfRanges; i++)
+        {
+            depth[ranges[2 * i]]++;
+            depth[ranges[2 * i + 1] + 1]--;
+        }
+        for (int i = 0; i < numberOfCuts; i++)
+        {
+            boundary[cuts[2 * i]] = true;
+            boundary[cuts[2 * i + 1] + 1] = true;
+        }
+        char[] first = new char[16];
+        char[] last = new char[16];
+        int numberOfClasses = 0;
+        int covering = 0; // Number of alphabet ranges covering the current character
+        for (int c = 0; c <= Character.MAX_VALUE; c++)
+        {
+            boolean wasCovered = covering > 0;
+            covering += depth[c];
+            if (covering == 0)
+            {
+                continue;
+            }
+            if (wasCovered && !boundary[c]) // Same class as the previous character
+            {
+                last[numberOfClasses - 1] = (char) c;
+                continue;
+            }
+            if (numberOfClasses == first.length)
+            {
+                first = Arrays.copyOf(first, 2 * numberOfClasses);
+                last = Arrays.copyOf(last, 2 * numberOfClasses);
+            }
+            first[numberOfClasses] = (char) c;
+            last[numberOfClasses] = (char) c;
+            numberOfClasses++;
+        }
+        return new SymbolMap(Arrays.copyOf(first, numberOfClasses), Arrays.copyOf(last, numberOfClasses), longSymbols);
+    }
+
+    /** Builds the classes two alphabets cut out together, so each shared class lies inside one class of either alphabet or outside it.
+        @param a  The first symbol lookup.
+        @param b  The second symbol lookup.
+        @return  The shared lookup, followed by the longer symbols of both.
+        @throws IllegalArgumentException  If the longer symbols differ, strings would then split differently. */
+    static SymbolMap shared(SymbolMap a, SymbolMap b)
+    {
+        if (!Arrays.equals(a.longSymbols, b.longSymbols))
+        {
+            throw new IllegalArgumentException("FAs with different symbols longer than one character cannot be combined");
+        }
+        int numberOfRanges = a.numberOfClasses + b.numberOfClasses;
+        int[] ranges = new int[2 * numberOfRanges];
+        for (int c = 0; c < a.numberOfClasses; c++)
+        {
+            ranges[2 * c] = a.classFirst[c];
+            ranges[2 * c + 1] = a.classLast[c];
+        }
+        for (int c = 0; c < b.numberOfClasses; c++)
+        {
+            ranges[2 * (a.numberOfClasses + c)] = b.classFirst[c];
+            ranges[2 * (a.numberOfClasses + c) + 1] = b.classLast[c];
+        }
+        return split(ranges, numberOfRanges, ranges, numberOfRanges, a.longSymbols);
+    }
+
+    /** Maps the columns of a lookup built by shared to the columns of one it was built from.
+        @param map  One of the two lookups.
+        @return  Column in map of each column of this lookup, -1 if outside map's alphabet. */
+    int[] columnsIn(SymbolMap map)
+    {
+        int[] columns = new int[size()];
+        for (int g = 0; g < columns.length; g++)
+        {
+            columns[g] = g < numberOfClasses ? map.charColumns[classFirst[g]] : map.numberOfClasses + g - numberOfClasses;
+        }
+        return columns;
+    }
+
+    /** Sorts character ranges and joins the ones that overlap or touch.
+        @param ranges  First, last pairs.
+        @param numberOfRanges  Number of pairs.
+        @return  The joined ranges as first, last pairs in increasing order. */
+    static int[] mergeRanges(int[] ranges, int numberOfRanges)
+    {
+        long[] packed = new long[numberOfRanges]; // First in the high half so sorting orders by first
+        for (int i = 0; i < numberOfRanges; i++)
+        {
+            packed[i] = (long) ranges[2 * i] << 32 | ranges[2 * i + 1];
+        }
+        Arrays.sort(packed);
+        int[] merged = new int[2 * numberOfRanges];
+        int count = 0;
+        for (long range: packed)
+        {
+            int first = (int) (range >>> 32);
+            int last = (int) range;
+            if (count > 0 && first <= merged[2 * count - 1] + 1)
+            {
+                merged[2 * count - 1] = Math.max(merged[2 * count - 1], last);
+                continue;
+            }
+            merged[2 * count] = first;
+            merged[2 * count + 1] = last;
+            count++;
+        }
+        return Arrays.copyOf(merged, 2 * count);
+    }
+
+    /** Finds the range holding a character, by binary search.
+        @param merged  Ranges from mergeRanges.
+        @param c  The character.
+        @return  Index of the pair, or -1 if no range holds the character. */
+    static int findRange(int[] merged, int c)
+    {
+        int low = 0;
+        int high = merged.length / 2 - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            if (c < merged[2 * middle])
+            {
+                high = middle - 1;
+            }
+            else if (c > merged[2 * middle + 1])
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /** Retrieves the column of a symbol.
+        @param symbol  The symbol.
+        @return  The column, or -1 if the symbol is not in the alphabet. */
+    public int indexOf(String symbol)
+    {
+        if (symbol.length() == 1)
+        {
+            return charColumns[symbol.charAt(0)];
+        }
+        Integer column = columns.get(symbol);
+        return column == null ? -1 : column;
+    }
+
+    /** Reads the symbol at a position of the input, taking the longest symbol that matches.
+        A character that starts no longer symbol is looked up directly, so only a few characters walk the trie.
+        @param input  The input.
+        @param position  Index of the first character of the symbol.
+        @param end  Index after the last character that may be read, greater than position.
+        @return  The column, -1 if no symbol matches, and the length packed into a token, see column(), length() and isPartial(). */
+    public long match(CharSequence input, int position, int end)
+    {
+        char c = input.charAt(position);
+        long token = 1L << 32 | (charColumns[c] & 0xFFFFFFFFL); // Single character
+        if ((symbolStarts[c >>> 6] & (1L << c)) == 0)
+        {
+            return token;
+        }
+        int node = 0;
+        for (int i = position; i < end; i++)
+        {
+            int child = findChild(node, input.charAt(i));
+            if (child == -1)
+            {
+                return token;
+            }
+            node = child;
+            if (trieColumn[node] != -1)
+            {
+                token = (long) (i - position + 1) << 32 | trieColumn[node];
+            }
+        }
+        if (trieChildStart[node] < trieChildStart[node + 1]) // More input could still make a longer match
+        {
+            token |= PARTIAL;
+        }
+        return token;
+    }
+
+    /** Finds the child of a trie node on a character, by binary search.
+        @return  The child node, or -1 if there is none. */
+    private int findChild(int node, char c)
+    {
+        int low = trieChildStart[node];
+        int high = trieChildStart[node + 1] - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            if (trieChildChar[middle] < c)
+            {
+                low = middle + 1;
+            }
+            else if (trieChildChar[middle] > c)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle + 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Retrieves the column of a token from match().
+        @param token  The token.
+        @return  The column, or -1 if no symbol matched. */
+    static int column(long token)
+    {
+        return (int) token;
+    }
+
+    /** Retrieves the number of characters of a token from match().
+        @param token  The token.
+        @return  The length, 1 if no symbol matched. */
+    static int length(long token)
+    {
+        return (int) (token >>> 32) & 0x3FFFFFFF;
+    }
+
+    /** Checks if the input of match() ended where more characters could have made a longer symbol.
+        @param token  The token.
+        @return  True if the match may change once more input is known. */
+    static boolean isPartial(long token)
+    {
+        return (token & PARTIAL) != 0;
+    }
+
+    /** Retrieves the column of a single-character symbol.
+        @param c  The character.
+        @return  The column, or -1 if the character is not in the alphabet. */
+    public int indexOf(char c)
+    {
+        return charColumns[c];
+    }
+
+    /** Retrieves the name of a column, a character, a range such as 'a-z' or a longer symbol.
+        @param column  The column.
+        @return  The name. */
+    public String symbol(int column)
+    {
+        if (column >= numberOfClasses)
+        {
+            return longSymbols[column - numberOfClasses];
+        }
+        if (classFirst[column] == classLast[column])
+        {
+            return Character.toString(classFirst[column]);
+        }
+        return classFirst[column] + "-" + classLast[column];
+    }
+
+    /** Retrieves the number of columns.
+        @return  Number of columns. */
+    public int size()
+    {
+        return numberOfClasses + longSymbols.length;
+    }
+}
@@ -0,0 +1,78 @@
+package universalfa;
+
+import java.util.*;
+
+/** A class that holds tokens as parallel int arrays, reused between inputs so no object is created per token */
+class TokenBuffer
+{
+    int[] types; // Token i has type types[i] and covers starts[i] up to, not including, ends[i]
+    int[] starts;
+    int[] ends;
+    int size = 0; // Number of tokens held
+
+    /** Constructor with no tokens */
+    TokenBuffer()
+    {
+        this(64);
+    }
+
+    /** Constructor with room for a number of tokens before the arrays grow */
+    TokenBuffer(int capacity)
+    {
+        types = new int[Math.max(1, capacity)];
+        starts = new int[types.length];
+        ends = new int[types.length];
+    }
+
+    /** Appends a token, growing the arrays if they are full. */
+    void add(int type, int start, int end)
+    {
+        if (size == types.length)
+        {
+            types = Arrays.copyOf(types, 2 * size);
+            starts = Arrays.copyOf(starts, 2 * size);
+            ends = Arrays.copyOf(ends, 2 * size);
+        }
+        types[size] = type;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /** Drops every token and keeps the arrays. */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /** Retrieves the number of tokens.
+        @return  Number of tokens. */
+    public int size()
+    {
+        return size;
+    }
+
+    /** Retrieves the type of a token.
+        @param i  Index of the token.
+        @return  The token type, or Lexer.NO_TOKEN for unmatched input. */
+    public int getType(int i)
+    {
+        return types[i];
+    }
+
+    /** Retrieves the start offset of a token.
+        @param i  Index of the token.
+        @return  Offset of its first character. */
+    public int getStart(int i)
+    {
+        return starts[i];
+    }
+
+    /** Retrieves the end offset of a token.
+        @param i  Index of the token.
+        @return  Offset just past its last character. */
+    public int getEnd(int i)
+    {
+        return ends[i];
+    }
+}
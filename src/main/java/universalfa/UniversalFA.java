@@ -0,0 +1,389 @@
+package universalfa;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/** Driver class for running a simulation of an FA machine */
+public class UniversalFA
+{
+    static String inputFile = null; // Optional file input, '--file <path>' tests the whole file
+    static boolean perRecord = false; // '--records' tests each line of the file instead
+    static boolean minimize = false; // '--minimize' minimizes the FA before displaying and testing it
+
+    public static void main(String[] args) 
+    {
+        Scanner keyboard = new Scanner(System.in);
+
+        String pattern = null; // Optional regular expression, '--regex <pattern>' replaces the prompts for the FA
+        String specFile = null; // Optional spec file, '--spec <path>' replaces all prompts
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--file") && i + 1 < args.length)
+            {
+                inputFile = args[++i];
+            }
+            else if (args[i].equals("--records"))
+            {
+                perRecord = true;
+            }
+            else if (args[i].equals("--minimize"))
+            {
+                minimize = true;
+            }
+            else if (args[i].equals("--regex") && i + 1 < args.length)
+            {
+                pattern = args[++i];
+            }
+            else if (args[i].equals("--spec") && i + 1 < args.length)
+            {
+                specFile = args[++i];
+            }
+        }
+
+        // Loads the FA and test strings from a spec file, '-' for standard input, without any prompts
+        if (specFile != null)
+        {
+            try (Reader reader = specFile.equals("-") ? new InputStreamReader(System.in) : Files.newBufferedReader(Paths.get(specFile)))
+            {
+                AutomatonSpec spec = AutomatonSpec.parse(reader);
+                displayResults(spec.machine, spec.numberOfStates, spec.testStrings);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Could not read spec '" + specFile + "'");
+            }
+            catch (IllegalArgumentException e) // Reports the line of a malformed spec
+            {
+                System.out.println(e.getMessage());
+            }
+            return;
+        }
+
+        // Title
+        System.out.println("Universal FA");
+
+        // Builds the FA from the regular expression, only test strings are prompted for
+        if (pattern != null)
+        {
+            FiniteAutomataMachine FA_Machine = null;
+            try
+            {
+                FA_Machine = FiniteAutomataMachine.fromRegex(pattern);
+            }
+            catch (IllegalArgumentException e)
+            {
+                System.out.println(e.getMessage());
+                System.exit(0);
+            }
+            System.out.println("Enter test strings (enter '.....' to finish): ");
+            ArrayList<String> testStringsSet = new ArrayList<String>(); // Set of test strings
+            readTestStrings(keyboard, testStringsSet);
+            System.out.println();
+            System.out.println("regex: " + pattern);
+            displayResults(FA_Machine, FA_Machine.getNumberOfStates(), testStringsSet);
+            keyboard.close();
+            return;
+        }
+
+        // Prompts for number of states
+        int numberOfStates = 0;
+        try
+        {
+            System.out.println("Enter number of states:");
+            numberOfStates = keyboard.nextInt();
+        }
+        catch (Exception e)
+        {
+            System.out.println("You must enter an integer");
+            System.exit(0);
+        }
+        States FAstates = new States(numberOfStates);
+        keyboard.nextLine();
+
+        // Prompts for declaring final states
+        System.out.println("Enter final states:");
+        String finalStates = keyboard.nextLine(); // May enter as '0 1' or '0,1' or '0, 1' 
+        finalStates = finalStates.replaceAll(",", "\s").replaceAll("\\s+", "\s"); // Handles commas
+        String[] finalStatesModified = finalStates.split("\s"); // Handles spaces
+        for (String state: finalStatesModified)
+        {
+            // Checks if the state exists or is a valid state
+            try
+            {
+                if (Integer.parseInt(state) >= numberOfStates || Integer.parseInt(state) < 0)
+                {
+                    System.out.println("State '" + state + "' does not exist");
+                }
+                else
+                {
+                    FAstates.setFinalState(Integer.parseInt(state));
+                }
+            }
+            catch (Exception e) // Avoids crashes if the state is not an integer
+            {
+                System.out.println("State '" + state + "' does not exist");
+            }
+        }
+        
+        // Prompts for the alphabet
+        System.out.println("Enter alphabet (may include 'letters', 'numbers', and/or ranges i.e. '2-7', 'a-z', 'G-M'):");
+        String alphabet = keyboard.nextLine(); // May enter as 'a b' or 'a,b' or 'a, b' 
+        alphabet = alphabet.replaceAll(",", "\s").replaceAll("\\s+", "\s"); // Handles commas
+        String[] alphabetModified = alphabet.split("\s"); // Handles spaces
+        Alphabet FAsymbols = new Alphabet(alphabetModified.length);
+        for (String s: alphabetModified)
+        {
+            if (s.equals("letters")) // This keyword adds all letters
+            {
+                FAsymbols.addRange('a', 'z');
+                FAsymbols.addRange('A', 'Z');
+            }
+            else if (s.equals("numbers")) // This keyword adds all digits
+            {
+                FAsymbols.addRange('0', '9');
+            }
+            else if (s.matches(".+-.+")) // This keyword adds all characters within a given range
+            {
+                String[] t = s.split("-");
+                // Checks if a digit range is given
+                if ((Character.isDigit(t[0].charAt(0)) && Character.isDigit(t[1].charAt(0))) && (t[0].length() == 1 && t[1].length() == 1))
+                {
+                    int from = Integer.parseInt(t[0]);
+                    int to = Integer.parseInt(t[1]);
+                    if ((from >= 0 && from <= 9) && (to >= 0 && to <= 9))
+                    {
+                        if (from <= to) // Adds symbols with given range
+                        {
+                            FAsymbols.addRange(t[0].charAt(0), t[1].charAt(0));
+                        }
+                    }
+                    else
+                    {
+                        // Ignore range
+                        continue;
+                    }
+                }
+                // Checks if a letter range is given
+                else if ((Character.isLetter(t[0].charAt(0)) && Character.isLetter(t[1].charAt(0))) && (t[0].length() == 1 && t[1].length() == 1))
+                {
+                    char from = t[0].charAt(0);
+                    char to = t[1].charAt(0);
+                    if ((from >= 'A' && from <= 'Z' && to >= 'A' && to <= 'Z') || (from >= 'a' && from <= 'z' && to >= 'a' && to <= 'z'))
+                    {
+                        if (from <= to) // Adds symbols with given range
+                        {
+                            FAsymbols.addRange(from, to);
+                        }
+                    }
+                    else
+                    {
+                        // Ignore range
+                        continue;
+                    }
+                }
+                else
+                {
+                    // Ignore range
+                    continue;
+                }
+            }
+            else // Adds any individual digits, letters, or non-alphanumerical characters
+            {
+                FAsymbols.addSymbol(s);
+            }
+        }
+
+        // Loads the given alphabet and states into an FA
+        FiniteAutomataMachine FA_Machine = new FiniteAutomataMachine(FAsymbols, FAstates);
+
+        // Prompts for the transitions
+        System.out.println("Enter transitions in the format 'p a q' first (may also put 'letters', 'numbers', or ranges for the symbol)");
+        System.out.println("Then the test strings (enter '.....' to finish): ");
+        String transition;
+        while (true)
+        {
+            transition = keyboard.nextLine();
+            // Checks if string is in the format '(p a q)' or 'p a q'
+            // If not, assume as a test string
+            if (!transition.matches("\\(.+ .+ .+\\)") && !transition.matches(".+ .+ .+"))
+            {
+                break;
+            }
+            // Checks if string is in the format '(p letters q)' or 'p letters q'
+            else if (transition.matches("\\(.+ letters .+\\)") || transition.matches(".+ letters .+"))
+            {
+                // Removes parentheses, if there exists any
+                if (transition.charAt(0) == '(' && transition.charAt(transition.length() - 1) == ')')
+                {
+                    transition = transition.replaceAll("\\(", "").replaceAll("\\)", "");
+                }
+                String[] t = transition.split("\s"); // Handles spaces
+                // Adds all letters to the transition, one range for each case
+                FA_Machine.addTransition(t[0], 'a', 'z', t[2]);
+                FA_Machine.addTransition(t[0], 'A', 'Z', t[2]);
+            }
+            // Checks if string is in the format '(p numbers q)' or 'p numbers q'
+            else if (transition.matches("\\(.+ numbers .+\\)") || transition.matches(".+ numbers .+"))
+            {
+                // Removes parentheses, if there exists any
+                if (transition.charAt(0) == '(' && transition.charAt(transition.length() - 1) == ')')
+                {
+                    transition = transition.replaceAll("\\(", "").replaceAll("\\)", "");
+                }
+                String[] t = transition.split("\s"); // Handles spaces
+                // Adds all digits to the transition as one range
+                FA_Machine.addTransition(t[0], '0', '9', t[2]);
+            }
+            // Checks if string is given as a range in the format '(p a q)' or 'p a q'
+            else if (transition.matches("\\(.+ .+-.+ .+\\)") || transition.matches(".+ .+-.+ .+"))
+            {
+                // Removes parentheses, if there exists any
+                if (transition.charAt(0) == '(' && transition.charAt(transition.length() - 1) == ')')
+                {
+                    transition = transition.replaceAll("\\(", "").replaceAll("\\)", "");
+                }
+                String[] t = transition.split("[-\s]");
+                // Checks if a digit range is given
+                if ((Character.isDigit(t[1].charAt(0)) && Character.isDigit(t[2].charAt(0))) && (t[1].length() == 1 && t[2].length() == 1))
+                {
+                    int from = Integer.parseInt(t[1]);
+                    int to = Integer.parseInt(t[2]);
+                    if ((from >= 0 && from <= 9) && (to >= 0 && to <= 9))
+                    {
+                        if (from <= to) // Adds the digits to the transition as one range
+                        {
+                            FA_Machine.addTransition(t[0], t[1].charAt(0), t[2].charAt(0), t[3]);
+                        }
+                    }
+                    else
+                    {
+                        System.out.println("Range not accepted");
+                    }
+                }
+                // Checks if a letter range is given
+                else if ((Character.isLetter(t[1].charAt(0)) && Character.isLetter(t[2].charAt(0))) && (t[1].length() == 1 && t[2].length() == 1))
+                {
+                    char from = t[1].charAt(0);
+                    char to = t[2].charAt(0);
+                    if ((from >= 'A' && from <= 'Z' && to >= 'A' && to <= 'Z') || (from >= 'a' && from <= 'z' && to >= 'a' && to <= 'z'))
+                    {
+                        if (from <= to) // Adds the letters to the transition as one range
+                        {
+                            FA_Machine.addTransition(t[0], from, to, t[3]);
+                        }
+                    }
+                    else
+                    {
+                        System.out.println("Range not accepted");
+                    }
+                }
+                else
+                {
+                    System.out.println("Range not accepted");
+                }
+            }
+            // Adds any symbol to the transition
+            else
+            {
+                // Removes parentheses, if there exists any
+                if (transition.charAt(0) == '(' && transition.charAt(transition.length() - 1) == ')')
+                {
+                    transition = transition.replaceAll("\\(", "").replaceAll("\\)", "");
+                }
+                String[] t = transition.split("\s"); // Handles spaces
+                // Adds symbol to the transition
+                FA_Machine.addTransition(t[0], t[1], t[2]);
+            }
+        }
+
+        ArrayList<String> testStringsSet = new ArrayList<String>(); // Set of test strings
+        if (!transition.equals(".....")) // Skips adding any test strings if "....." is entered
+        {
+            System.out.println("Read as a test string, enter more test strings, ('.....' to finish): ");
+            testStringsSet.add(transition); // The user did not input in the transition format, program assumes it as a test string
+            readTestStrings(keyboard, testStringsSet);
+        }
+
+        System.out.println();
+        displayResults(FA_Machine, numberOfStates, testStringsSet);
+        keyboard.close();
+    }
+
+    /** Reads test strings until '.....' or the end of input.
+        @param keyboard  The input.
+        @param testStringsSet  The list the strings are added to. */
+    static void readTestStrings(Scanner keyboard, ArrayList<String> testStringsSet)
+    {
+        while (keyboard.hasNextLine())
+        {
+            String testString = keyboard.nextLine();
+            testString = testString.replaceAll("\s", ""); // Removes spaces, if there exists any
+            if (testString.equals(".....")) // Ends the list of test strings
+            {
+                break;
+            }
+            testStringsSet.add(testString);
+        }
+    }
+
+    /** Displays the FA and the test string results.
+        @param FA_Machine  The FA.
+        @param numberOfStates  The number of states that was entered.
+        @param testStringsSet  The test strings. */
+    static void displayResults(FiniteAutomataMachine FA_Machine, int numberOfStates, ArrayList<String> testStringsSet)
+    {
+        // Output
+        if (minimize)
+        {
+            FA_Machine = FA_Machine.minimize();
+            System.out.println("number of states: " + numberOfStates + " (" + FA_Machine.getNumberOfStates() + " after minimization)");
+        }
+        else
+        {
+            System.out.println("number of states: " + numberOfStates);
+        }
+
+        System.out.print("final states: ");
+        FA_Machine.displayFinalStates();
+
+        System.out.print("alphabet: ");
+        FA_Machine.displayAlphabet();
+
+        System.out.println("transitions: ");
+        FA_Machine.displayTransitionTable();
+
+        if (inputFile != null)
+        {
+            System.out.println("file: " + inputFile);
+            try
+            {
+                FileScanResult scan = FA_Machine.scanFile(Paths.get(inputFile), perRecord);
+                if (perRecord)
+                {
+                    System.out.println("\trecords: " + scan.records + ", accepted: " + scan.accepted + ", rejected: " + (scan.records - scan.accepted));
+                }
+                else
+                {
+                    System.out.println("\t" + (scan.accepted == 1 ? "Accept" : "Reject"));
+                }
+                System.out.println("\t" + scan.bytes + " bytes in " + String.format("%.1f", scan.elapsedNanos / 1e6) + " ms (" + String.format("%.1f", scan.getThroughput()) + " MB/s)");
+            }
+            catch (IOException e) // Avoids crashes if the file cannot be read
+            {
+                System.out.println("\tCould not read file '" + inputFile + "'");
+            }
+        }
+
+        System.out.println("strings: ");
+        if (FA_Machine.test(testStringsSet.toArray(new String[testStringsSet.size()])) == 0) // The end marker follows the message directly
+        {
+            System.out.println(".....");
+            return;
+        }
+        System.out.println("\n.....");
+    }
+}
@@ -0,0 +1,192 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Checks that machines saved by AutomatonFile load back with the same cells, in both layouts */
+class AutomatonFileTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    void denseRoundTrip() throws IOException
+    {
+        CompiledAutomaton machine = TestMachines.random(40, "abcd", 0.9, 1, 21).compile();
+        assertFalse(machine.isSparse());
+        CompiledAutomaton loaded = roundTrip(machine);
+        assertFalse(loaded.isSparse());
+        assertSameCells(machine, loaded);
+    }
+
+    /** A dense machine above the size where sparse rows are considered, loaded back dense without a second pass */
+    @Test
+    void largeDenseRoundTrip() throws IOException
+    {
+        StringBuilder symbols = new StringBuilder();
+        for (char c = 'a'; c < 'a' + 128; c++)
+        {
+            symbols.append(c);
+        }
+        FiniteAutomataMachine fa = TestMachines.random(600, symbols.toString(), 0.9, 1, 25);
+        CompiledAutomaton machine = fa.compile();
+        assertTrue((long) machine.numberOfStates * machine.alphabetSize >= CompiledAutomaton.SPARSE_MIN_CELLS);
+        assertFalse(machine.isSparse());
+        CompiledAutomaton loaded = roundTrip(machine);
+        assertFalse(loaded.isSparse());
+        assertSameCells(machine, loaded);
+        FiniteAutomataMachine unverified = FiniteAutomataMachine.load(directory.resolve("machine.ufa"), false);
+        for (String input: TestMachines.strings(200, symbols.toString(), 20, 26))
+        {
+            assertEquals(fa.accepts(input), unverified.accepts(input), input);
+        }
+    }
+
+    @Test
+    void sparseRoundTrip() throws IOException
+    {
+        StringBuilder symbols = new StringBuilder();
+        for (char c = 'a'; c < 'a' + 256; c++)
+        {
+            symbols.append(c);
+        }
+        CompiledAutomaton machine = TestMachines.random(500, symbols.toString(), 0.05, 1, 22).compile();
+        assertTrue(machine.isSparse());
+        CompiledAutomaton loaded = roundTrip(machine);
+        assertTrue(loaded.isSparse());
+        assertSameCells(machine, loaded);
+        assertTrue(Files.size(directory.resolve("machine.ufa")) < (long) machine.numberOfStates * machine.alphabetSize); // A quarter of the dense matrix
+    }
+
+    /** A sparse machine whose dense matrix would be larger than any int array */
+    @Test
+    void sparseBeyondDenseLimit() throws IOException
+    {
+        int numberOfStates = 40000;
+        int alphabetSize = 60000;
+        assertTrue((long) numberOfStates * alphabetSize > AutomatonFile.MAX_INTS);
+        char[] classFirst = new char[alphabetSize];
+        for (int c = 0; c < alphabetSize; c++)
+        {
+            classFirst[c] = (char) (c + 1);
+        }
+        SymbolMap symbolMap = new SymbolMap(classFirst, classFirst.clone(), new String[0]);
+        Random random = new Random(23);
+        boolean[] finalStates = new boolean[numberOfStates];
+        int[] rowStart = new int[numberOfStates + 1];
+        int[] rowColumns = new int[2 * numberOfStates];
+        int[] rowTargets = new int[2 * numberOfStates];
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            finalStates[state] = random.nextInt(3) == 0;
+            int first = random.nextInt(alphabetSize - 1);
+            rowColumns[2 * state] = first;
+            rowColumns[2 * state + 1] = first + 1 + random.nextInt(alphabetSize - first - 1);
+            rowTargets[2 * state] = random.nextInt(numberOfStates);
+            rowTargets[2 * state + 1] = random.nextInt(numberOfStates);
+            rowStart[state + 1] = 2 * state + 2;
+        }
+        CompiledAutomaton machine = new CompiledAutomaton(symbolMap, finalStates, rowStart, rowColumns, rowTargets);
+        CompiledAutomaton loaded = roundTrip(machine);
+        assertTrue(loaded.isSparse());
+        assertArrayEquals(rowStart, loaded.rowStart);
+        assertArrayEquals(rowColumns, loaded.rowColumns);
+        assertArrayEquals(rowTargets, loaded.rowTargets);
+        assertArrayEquals(finalStates, loaded.finalStates);
+        assertTrue(Files.size(directory.resolve("machine.ufa")) < 2L << 20);
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException
+    {
+        for (double fill: new double[] {0.9, 0.05})
+        {
+            Path path = directory.resolve("machine.ufa");
+            AutomatonFile.save(TestMachines.random(500, "abcdefghijklmnopqrstuvwxyz0123456789", fill, 1, 24).compile(), path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+            {
+                channel.truncate(channel.size() - 4);
+            }
+            assertThrows(IOException.class, () -> AutomatonFile.load(path, true));
+        }
+    }
+
+    /** A huge alphabet size in the header of a sparse file fails the check instead of sizing the symbol arrays */
+    @Test
+    void rejectsCorruptAlphabetSize() throws IOException
+    {
+        StringBuilder symbols = new StringBuilder();
+        for (char c = 'a'; c < 'a' + 256; c++)
+        {
+            symbols.append(c);
+        }
+        Path path = directory.resolve("machine.ufa");
+        CompiledAutomaton machine = TestMachines.random(500, symbols.toString(), 0.05, 1, 27).compile();
+        assertTrue(machine.isSparse());
+        for (int alphabetSize: new int[] {0x7FFFFFF7, Integer.MAX_VALUE, 1 << 20, machine.alphabetSize + 1})
+        {
+            AutomatonFile.save(machine, path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+            {
+                channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, alphabetSize), 12); // Follows the magic, version and number of states
+            }
+            assertThrows(IOException.class, () -> AutomatonFile.load(path, false), Integer.toString(alphabetSize));
+            assertThrows(IOException.class, () -> AutomatonFile.load(path, true), Integer.toString(alphabetSize));
+        }
+    }
+
+    @Test
+    void rejectsUnsortedRows() throws IOException
+    {
+        SymbolMap symbolMap = new SymbolMap(new char[] {'a', 'b'}, new char[] {'a', 'b'}, new String[0]);
+        CompiledAutomaton machine = new CompiledAutomaton(symbolMap, new boolean[] {false, true}, new int[] {0, 2, 2}, new int[] {1, 0}, new int[] {1, 0});
+        Path path = directory.resolve("machine.ufa");
+        AutomatonFile.save(machine, path);
+        assertThrows(IOException.class, () -> AutomatonFile.load(path, false));
+    }
+
+    @Test
+    void rejectsDestinationOutOfRange() throws IOException
+    {
+        SymbolMap symbolMap = new SymbolMap(new char[] {'a', 'b'}, new char[] {'a', 'b'}, new String[0]);
+        CompiledAutomaton machine = new CompiledAutomaton(symbolMap, new boolean[] {false, true}, new int[] {1, -1, 2, 0});
+        Path path = directory.resolve("machine.ufa");
+        AutomatonFile.save(machine, path);
+        assertThrows(IOException.class, () -> AutomatonFile.load(path, false));
+    }
+
+    /** Saves and loads a machine through a file of the temporary directory. */
+    private CompiledAutomaton roundTrip(CompiledAutomaton machine) throws IOException
+    {
+        Path path = directory.resolve("machine.ufa");
+        AutomatonFile.save(machine, path);
+        return AutomatonFile.load(path, true);
+    }
+
+    /** Checks the symbols, final states and every cell of two machines. */
+    private static void assertSameCells(CompiledAutomaton expected, CompiledAutomaton actual)
+    {
+        assertEquals(expected.numberOfStates, actual.numberOfStates);
+        assertEquals(expected.alphabetSize, actual.alphabetSize);
+        assertArrayEquals(expected.symbolMap.classFirst, actual.symbolMap.classFirst);
+        assertArrayEquals(expected.symbolMap.classLast, actual.symbolMap.classLast);
+        assertArrayEquals(expected.finalStates, actual.finalStates);
+        for (int state = 0; state < expected.numberOfStates; state++)
+        {
+            for (int column = 0; column < expected.alphabetSize; column++)
+            {
+                assertEquals(expected.nextState(state, column), actual.nextState(state, column));
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks how spec lines are split into tokens, commas only separating the final states and the alphabet */
+class AutomatonSpecTest
+{
+    @Test
+    void commasInTestStrings() throws IOException
+    {
+        AutomatonSpec spec = parse("3", "1, 2", "0,1", "0 0 1", "1 1 2", "(2 0 2)", "1,2,3", "0,1", "0 1", ".....");
+        assertEquals(Arrays.asList("1,2,3", "0,1", "01"), spec.testStrings);
+        FiniteAutomataMachine machine = spec.machine;
+        assertTrue(machine.accepts("0"));
+        assertTrue(machine.accepts("010"));
+        assertFalse(machine.accepts("0,1")); // The comma is not in the alphabet
+    }
+
+    @Test
+    void commaSymbol() throws IOException
+    {
+        AutomatonSpec spec = parse("3", "2", "0, 1, ,", "0 , 1", "1 0 2", "2 , 2", ",0,", ",,", ".....");
+        assertEquals(Arrays.asList(",0,", ",,"), spec.testStrings);
+        FiniteAutomataMachine machine = spec.machine;
+        assertTrue(machine.checkSymbol(","));
+        assertTrue(machine.accepts(",0,,"));
+        assertTrue(machine.accepts(spec.testStrings.get(0)));
+        assertFalse(machine.accepts(spec.testStrings.get(1)));
+    }
+
+    @Test
+    void commaSeparatedFinalStates() throws IOException
+    {
+        AutomatonSpec spec = parse("3", "0,2", "a", "0 a 1", "1 a 2", "aa", ".....");
+        assertTrue(spec.machine.accepts(""));
+        assertFalse(spec.machine.accepts("a"));
+        assertTrue(spec.machine.accepts("aa"));
+    }
+
+    @Test
+    void rejectsTransitionWithCommas()
+    {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parse("2", "1", "a", "0 a 1,", "....."));
+        assertEquals("line 4: State '1,' does not exist", e.getMessage());
+    }
+
+    /** Parses the lines of a spec. */
+    private static AutomatonSpec parse(String... lines) throws IOException
+    {
+        return AutomatonSpec.parse(new StringReader(String.join("\n", lines)));
+    }
+}
@@ -0,0 +1,118 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that the DFA state cache, the bit-parallel simulation and the switch between them give the same verdicts */
+class BackendTest
+{
+    static final int BLOWUP_DEPTH = 12; // The DFA of (a|b)*a(a|b)^12 has 2^13 states
+
+    @Test
+    void randomNfasAgreeOnEveryBackend()
+    {
+        int switches = 0; // Seeds whose cache flushed often enough to switch
+        for (int seed = 0; seed < 300; seed++)
+        {
+            FiniteAutomataMachine cached = random(seed);
+            FiniteAutomataMachine bitParallel = random(seed);
+            bitParallel.setSubsetBudget(0);
+            FiniteAutomataMachine switched = random(seed);
+            switched.setDfaCacheBytes(1); // Every new DFA state flushes the cache
+            CompiledAutomaton dfa = random(seed).compile();
+            assertFalse(cached.isDeterministic(), "seed " + seed);
+            for (String input: TestMachines.strings(50, "abcd", 20, seed))
+            {
+                long expected = dfa.evaluate(input);
+                assertEquals(expected, cached.evaluate(input), "seed " + seed + ", " + input);
+                assertEquals(expected, bitParallel.evaluate(input), "seed " + seed + ", " + input);
+                assertEquals(expected, switched.evaluate(input), "seed " + seed + ", " + input);
+                assertEquals(dfa.accepts(input), switched.accepts(input), "seed " + seed + ", " + input);
+            }
+            assertFalse(cached.isBitParallel(), "seed " + seed);
+            assertTrue(bitParallel.isBitParallel(), "seed " + seed);
+            switches += switched.isBitParallel() ? 1 : 0;
+        }
+        assertTrue(switches > 100);
+    }
+
+    /** The cache keeps flushing on a DFA that blows up, so the FA switches and keeps its verdicts */
+    @Test
+    void blowupSwitchesToBitParallel()
+    {
+        FiniteAutomataMachine machine = blowup();
+        machine.setDfaCacheBytes(4096);
+        Random random = new Random(1);
+        boolean switched = false;
+        for (int i = 0; i < 200; i++)
+        {
+            String input = TestMachines.string(BLOWUP_DEPTH + 1 + random.nextInt(100), "ab", random);
+            boolean expected = input.charAt(input.length() - BLOWUP_DEPTH - 1) == 'a';
+            assertEquals(expected, machine.accepts(input), input);
+            switched |= machine.isBitParallel();
+        }
+        assertTrue(switched);
+        assertTrue(machine.getCacheStats().flushes.sum() >= FiniteAutomataMachine.FLUSHES_BEFORE_BIT_PARALLEL);
+    }
+
+    /** A budget fixes the backend, the cache is kept however often it flushes */
+    @Test
+    void budgetFixesBackend()
+    {
+        FiniteAutomataMachine machine = blowup();
+        machine.setSubsetBudget(1 << (BLOWUP_DEPTH + 1));
+        machine.setDfaCacheBytes(4096);
+        Random random = new Random(2);
+        for (int i = 0; i < 50; i++)
+        {
+            String input = TestMachines.string(200, "ab", random);
+            assertEquals(input.charAt(input.length() - BLOWUP_DEPTH - 1) == 'a', machine.accepts(input), input);
+        }
+        assertFalse(machine.isBitParallel());
+    }
+
+    /** Changing the transitions goes back to the cache until it flushes again */
+    @Test
+    void newTransitionResetsSwitch()
+    {
+        FiniteAutomataMachine machine = blowup();
+        machine.setDfaCacheBytes(1);
+        machine.accepts(TestMachines.string(100, "ab", new Random(3)));
+        assertTrue(machine.isBitParallel());
+        machine.addTransition("0", "b", "1");
+        assertFalse(machine.isDeterministic());
+        assertFalse(machine.isBitParallel());
+    }
+
+    /** Builds (a|b)*a(a|b)^BLOWUP_DEPTH as an NFA. */
+    private static FiniteAutomataMachine blowup()
+    {
+        Alphabet alpha = new Alphabet(2);
+        alpha.addSymbol("a");
+        alpha.addSymbol("b");
+        States sta = new States(BLOWUP_DEPTH + 2);
+        sta.setFinalState(BLOWUP_DEPTH + 1);
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        machine.addTransition("0", "a", "0");
+        machine.addTransition("0", "b", "0");
+        machine.addTransition("0", "a", "1");
+        for (int state = 1; state <= BLOWUP_DEPTH; state++)
+        {
+            machine.addTransition(Integer.toString(state), "a", Integer.toString(state + 1));
+            machine.addTransition(Integer.toString(state), "b", Integer.toString(state + 1));
+        }
+        return machine;
+    }
+
+    /** Builds an NFA over a, b and c with two random destinations on most cells. */
+    private static FiniteAutomataMachine random(long seed)
+    {
+        int numberOfStates = 2 + new Random(seed).nextInt(14);
+        FiniteAutomataMachine machine = TestMachines.random(numberOfStates, "abc", 0.8, 2, seed);
+        machine.addTransition("0", "a", "0");
+        machine.addTransition("0", "a", Integer.toString(numberOfStates - 1)); // Keeps every seed nondeterministic
+        return machine;
+    }
+}
@@ -0,0 +1,125 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that the builder drops repeated transitions on insert and that build() output stays frozen */
+class BuilderTest
+{
+    @Test
+    void dropsRepeats()
+    {
+        AutomatonBuilder builder = builder(3);
+        assertTrue(builder.addTransition(0, 'a', 'a', 1));
+        assertTrue(builder.addTransition(0, "ab", 2));
+        assertTrue(builder.addTransition(1, 'a', 'c', 2));
+        assertTrue(builder.addTransition(0, FiniteAutomataMachine.EPSILON, 2));
+        assertEquals(4, builder.getNumberOfEntries());
+
+        assertFalse(builder.addTransition(0, 'a', 'a', 1));
+        assertFalse(builder.addTransition(0, "a", 1)); // Same entry through the symbol
+        assertFalse(builder.addTransition(0, "ab", 2));
+        assertFalse(builder.addTransition(1, 'a', 'c', 2));
+        assertFalse(builder.addTransition(0, FiniteAutomataMachine.EPSILON, 2));
+        assertEquals(4, builder.getNumberOfEntries());
+
+        assertTrue(builder.addTransition(1, 'a', 'b', 2)); // A different range is a different entry
+        assertTrue(builder.addTransition(0, 'a', 'a', 2));
+        assertEquals(6, builder.getNumberOfEntries());
+    }
+
+    /** Repeats are still found once the hash index has grown many times */
+    @Test
+    void dropsRepeatsAfterGrowing()
+    {
+        int numberOfStates = 2000;
+        AutomatonBuilder builder = builder(numberOfStates);
+        Random random = new Random(51);
+        int[][] entries = new int[5000][];
+        for (int i = 0; i < entries.length; i++)
+        {
+            char c = (char) ('a' + random.nextInt(3));
+            entries[i] = new int[] {random.nextInt(numberOfStates), c, random.nextInt(numberOfStates)};
+        }
+        HashSet<List<Integer>> added = new HashSet<List<Integer>>();
+        for (int[] entry: entries)
+        {
+            boolean isNew = added.add(Arrays.asList(entry[0], entry[1], entry[2]));
+            assertEquals(isNew, builder.addTransition(entry[0], entry[1], entry[1], entry[2]));
+        }
+        for (int[] entry: entries)
+        {
+            assertFalse(builder.addTransition(entry[0], entry[1], entry[1], entry[2]));
+        }
+        assertEquals(added.size(), builder.getNumberOfEntries());
+    }
+
+    @Test
+    void rejectsUnknownStatesAndSymbols()
+    {
+        AutomatonBuilder builder = builder(2);
+        assertThrows(IllegalArgumentException.class, () -> builder.addTransition(0, 'a', 'a', 2));
+        assertThrows(IllegalArgumentException.class, () -> builder.addTransition(-1, 'a', 'a', 0));
+        assertThrows(IllegalArgumentException.class, () -> builder.addTransition(0, 'd', 'd', 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.addTransition(0, 'b', 'd', 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.addTransition(0, "ba", 1));
+        assertEquals(0, builder.getNumberOfEntries());
+    }
+
+    /** A built machine keeps its language while the builder takes more states and transitions */
+    @Test
+    void buildIsFrozen()
+    {
+        AutomatonBuilder builder = new AutomatonBuilder(new int[] {'a', 'c'}, new String[0]);
+        builder.addState(true);
+        builder.addState(false);
+        builder.addTransition(0, 'a', 'a', 1);
+        builder.addTransition(1, 'b', 'b', 0);
+        CompiledAutomaton first = builder.build();
+        List<String> inputs = TestMachines.strings(300, "abc", 10, 52);
+        Map<String, Boolean> verdicts = verdicts(first, inputs);
+        assertTrue(first.accepts("abab"));
+        assertFalse(first.accepts("ac"));
+
+        int state = builder.addState(true);
+        builder.addTransition(1, 'c', 'c', state);
+        builder.addTransition(state, 'a', 'c', state);
+        builder.addTransition(0, 'a', 'a', 0); // Makes the FA nondeterministic
+        CompiledAutomaton second = builder.build();
+        assertTrue(second.accepts("ac"));
+        assertTrue(second.accepts("aacb"));
+        assertEquals(verdicts, verdicts(first, inputs));
+        assertFalse(first.accepts("ac"));
+
+        Map<String, Boolean> secondVerdicts = verdicts(second, inputs);
+        builder.addTransition(state, 'b', 'b', 1);
+        builder.addTransition(0, 'c', 'c', 1);
+        assertTrue(builder.build().accepts("cc"));
+        assertEquals(secondVerdicts, verdicts(second, inputs));
+        assertFalse(second.accepts("cc"));
+    }
+
+    /** Builds a builder over a to c and ab, with state 0 final. */
+    private static AutomatonBuilder builder(int numberOfStates)
+    {
+        AutomatonBuilder builder = new AutomatonBuilder(new int[] {'a', 'c'}, new String[] {"ab"});
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            builder.addState(state == 0);
+        }
+        return builder;
+    }
+
+    /** Evaluates a machine on each input. */
+    private static Map<String, Boolean> verdicts(CompiledAutomaton machine, List<String> inputs)
+    {
+        Map<String, Boolean> verdicts = new HashMap<String, Boolean>();
+        for (String input: inputs)
+        {
+            verdicts.put(input, machine.accepts(input));
+        }
+        return verdicts;
+    }
+}
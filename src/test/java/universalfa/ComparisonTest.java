@@ -0,0 +1,125 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that language comparisons return shortest counterexamples, against a plain breadth-first search of the product */
+class ComparisonTest
+{
+    static final String SYMBOLS = "abc"; // Every character either machine can read
+
+    @Test
+    void randomPairsGiveShortestCounterexamples()
+    {
+        for (int seed = 0; seed < 2000; seed++)
+        {
+            Random random = new Random(seed);
+            FiniteAutomataMachine a = TestMachines.random(1 + random.nextInt(5), "ab", 0.6 + random.nextDouble() * 0.4, 1 + seed % 2, seed);
+            FiniteAutomataMachine b = TestMachines.random(1 + random.nextInt(5), seed % 3 == 0 ? "abc" : "ab", 0.6 + random.nextDouble() * 0.4, 1, seed + 1);
+            check(a, b, "seed " + seed);
+        }
+    }
+
+    @Test
+    void equivalentPairsHold()
+    {
+        for (int seed = 0; seed < 200; seed++)
+        {
+            FiniteAutomataMachine a = TestMachines.random(2 + seed % 8, "ab", 0.9, 1, seed);
+            FiniteAutomataMachine b = a.minimize();
+            assertTrue(FiniteAutomataMachine.equivalent(a, b).holds(), "seed " + seed);
+            check(a, b, "seed " + seed);
+        }
+    }
+
+    /** Pairs that differ in one added transition, so the difference can lie deep behind pairs union-find already joined */
+    @Test
+    void oneAddedTransitionGivesShortestCounterexample()
+    {
+        int longest = 0; // Longest counterexample seen
+        for (int seed = 0; seed < 500; seed++)
+        {
+            Random random = new Random(seed);
+            int numberOfStates = 4 + random.nextInt(12);
+            FiniteAutomataMachine a = TestMachines.random(numberOfStates, "ab", 0.8, 1, seed);
+            FiniteAutomataMachine b = TestMachines.random(numberOfStates, "ab", 0.8, 1, seed);
+            int state = random.nextInt(numberOfStates);
+            String symbol = random.nextBoolean() ? "a" : "b";
+            if (b.NextState(state, symbol) != -1)
+            {
+                continue;
+            }
+            b.addTransition(Integer.toString(state), symbol, Integer.toString(random.nextInt(numberOfStates)));
+            check(a, b, "seed " + seed);
+            String difference = FiniteAutomataMachine.equivalent(a, b).getCounterexample();
+            longest = Math.max(longest, difference == null ? 0 : difference.length());
+        }
+        assertTrue(longest >= 6); // Some counterexamples are long enough to pass through joined pairs
+    }
+
+    /** Compares equivalent and subsetOf, both ways, with the search. */
+    private static void check(FiniteAutomataMachine a, FiniteAutomataMachine b, String message)
+    {
+        CompiledAutomaton compiledA = a.compile();
+        CompiledAutomaton compiledB = b.compile();
+        String difference = FiniteAutomataMachine.equivalent(a, b).getCounterexample();
+        assertEquals(shortest(compiledA, compiledB, true), difference == null ? -1 : difference.length(), message);
+        if (difference != null)
+        {
+            assertNotEquals(a.accepts(difference), b.accepts(difference), message);
+        }
+        String missing = FiniteAutomataMachine.subsetOf(a, b).getCounterexample();
+        assertEquals(shortest(compiledA, compiledB, false), missing == null ? -1 : missing.length(), message);
+        if (missing != null)
+        {
+            assertTrue(a.accepts(missing) && !b.accepts(missing), message);
+        }
+        missing = FiniteAutomataMachine.subsetOf(b, a).getCounterexample();
+        assertEquals(shortest(compiledB, compiledA, false), missing == null ? -1 : missing.length(), message);
+    }
+
+    /** Searches every reachable pair of states breadth-first, one character at a time, with -1 for a dead machine.
+        @param symmetric  True to look for a string accepted by exactly one machine, false for one accepted by a and not by b.
+        @return  Length of the shortest such string, -1 if there is none. */
+    private static int shortest(CompiledAutomaton a, CompiledAutomaton b, boolean symmetric)
+    {
+        int width = b.numberOfStates + 1;
+        int[] depth = new int[(a.numberOfStates + 1) * width];
+        Arrays.fill(depth, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        int start = (a.numberOfStates > 0 ? 1 : 0) * width + (b.numberOfStates > 0 ? 1 : 0); // Pair (p, q) is (p + 1) * width + q + 1
+        depth[start] = 0;
+        queue.add(start);
+        while (!queue.isEmpty())
+        {
+            int pair = queue.poll();
+            int p = pair / width - 1;
+            int q = pair % width - 1;
+            boolean finalA = p != -1 && a.isFinal(p);
+            boolean finalB = q != -1 && b.isFinal(q);
+            if (symmetric ? finalA != finalB : finalA && !finalB)
+            {
+                return depth[pair];
+            }
+            for (int i = 0; i < SYMBOLS.length(); i++)
+            {
+                int next = (step(a, p, SYMBOLS.charAt(i)) + 1) * width + step(b, q, SYMBOLS.charAt(i)) + 1;
+                if (depth[next] == -1)
+                {
+                    depth[next] = depth[pair] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Steps a machine on one character, -1 once it is dead. */
+    private static int step(CompiledAutomaton machine, int state, char c)
+    {
+        int column = machine.charColumns[c];
+        return state == -1 || column == -1 ? -1 : machine.nextState(state, column);
+    }
+}
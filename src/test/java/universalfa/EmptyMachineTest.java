@@ -0,0 +1,76 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Checks that an FA with no states rejects every string on every engine instead of failing */
+class EmptyMachineTest
+{
+    static final List<String> INPUTS = Arrays.asList("", "a", "ab", "c");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rejectsEveryString()
+    {
+        FiniteAutomataMachine machine = machine();
+        for (String input: INPUTS)
+        {
+            assertFalse(machine.accepts(input), input);
+            assertNotEquals(EvaluationMetrics.ACCEPTED, EvaluationMetrics.outcome(machine.evaluate(input)), input);
+            AutomatonRun run = machine.newRun();
+            run.feed(input);
+            assertFalse(run.finish(), input);
+            assertFalse(machine.acceptsSpeculative(input, 2, 1, 4), input);
+        }
+        assertEquals(new BitSet(), machine.acceptAll(INPUTS));
+        assertEquals(new BitSet(), machine.acceptAllParallel(INPUTS, 2, 1));
+        assertEquals(new BitSet(), new MachineSet(Arrays.asList(machine, machine)).accepts("ab"));
+    }
+
+    @Test
+    void findsNoMatches()
+    {
+        FiniteAutomataMachine machine = machine();
+        long[] matches = new long[4];
+        assertEquals(0, machine.searcher().findAll("abca", matches));
+        assertEquals(0, machine.findLeftmostLongest("abca", matches));
+        assertEquals(0, machine.tokenize("", new TokenBuffer()));
+    }
+
+    @Test
+    void comparesAndMinimizes()
+    {
+        FiniteAutomataMachine machine = machine();
+        assertEquals(1, machine.minimize().getNumberOfStates());
+        assertTrue(FiniteAutomataMachine.equivalent(machine, machine.minimize()).holds());
+        assertTrue(machine.complement(false).accepts("ab"));
+    }
+
+    @Test
+    void savesAndLoads() throws IOException
+    {
+        Path path = directory.resolve("machine.ufa");
+        machine().save(path);
+        FiniteAutomataMachine loaded = FiniteAutomataMachine.load(path);
+        for (String input: INPUTS)
+        {
+            assertFalse(loaded.accepts(input), input);
+        }
+    }
+
+    /** Builds an FA over a and b with no states. */
+    private static FiniteAutomataMachine machine()
+    {
+        Alphabet alpha = new Alphabet(2);
+        alpha.addSymbol("a");
+        alpha.addSymbol("b");
+        return new FiniteAutomataMachine(alpha, new States(0));
+    }
+}
@@ -0,0 +1,157 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Checks memory-mapped file scans against accepts on the same text */
+class FileScanTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    void dense() throws IOException
+    {
+        FiniteAutomataMachine machine = TestMachines.random(20, "abc", 0.9, 1, 31);
+        assertFalse(machine.compile().isSparse());
+        check(machine, "abc\r", 32);
+    }
+
+    @Test
+    void nondeterministic() throws IOException
+    {
+        check(TestMachines.random(8, "abc", 0.8, 2, 33), "abc\r", 34);
+    }
+
+    @Test
+    void sparse() throws IOException
+    {
+        StringBuilder symbols = new StringBuilder();
+        for (char c = ' '; c <= 0xFF; c++)
+        {
+            symbols.append(c);
+        }
+        FiniteAutomataMachine machine = TestMachines.random(400, symbols.toString(), 0.05, 1, 35);
+        assertTrue(machine.compile().isSparse());
+        check(machine, symbols.substring(0, 8) + "\r", 36);
+    }
+
+    /** Records read by longest match, a '\r' or a line end cuts a longer symbol short */
+    @Test
+    void tokenized() throws IOException
+    {
+        FiniteAutomataMachine machine = TestMachines.random(6, new String[] {"a", "b", "ab", "<EOF>", "\r"}, 0.8, 1, 37);
+        assertTrue(machine.compile().symbolMap.tokenized);
+        String[] pieces = {"a", "b", "ab", "<EOF>", "<EO", "\r", "F>"};
+        for (long seed = 0; seed < 10; seed++)
+        {
+            List<String> lines = TestMachines.strings(300, pieces, 8, seed);
+            checkText(machine, text(lines, new Random(seed)));
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException
+    {
+        FiniteAutomataMachine machine = TestMachines.random(5, "ab", 1.0, 1, 38);
+        checkText(machine, "");
+        checkText(machine, "\n");
+        checkText(machine, "\r\n\r\n");
+    }
+
+    /** Results past 2^31 records land on later pages */
+    @Test
+    void recordPages()
+    {
+        FileScanResult result = new FileScanResult();
+        result.recordPages = new ArrayList<BitSet>();
+        result.records = 1L << 33;
+        result.setAccepted(0);
+        result.setAccepted(1L << 31);
+        result.setAccepted((1L << 32) + 7);
+        result.setAccepted((1L << 33) - 1);
+        assertTrue(result.isAccepted(0));
+        assertTrue(result.isAccepted(1L << 31));
+        assertTrue(result.isAccepted((1L << 32) + 7));
+        assertTrue(result.isAccepted((1L << 33) - 1));
+        assertFalse(result.isAccepted(1));
+        assertFalse(result.isAccepted((1L << 31) + 1));
+        assertFalse(result.isAccepted(7)); // The low bits of a later record alone
+        assertFalse(result.isAccepted((1L << 33) - 2));
+        assertThrows(IllegalArgumentException.class, () -> result.isAccepted(1L << 33));
+        assertThrows(IllegalArgumentException.class, () -> result.isAccepted(-1));
+    }
+
+    /** Scans files of random lines drawn from the given characters. */
+    private void check(FiniteAutomataMachine machine, String symbols, long seed) throws IOException
+    {
+        for (long s = seed; s < seed + 10; s++)
+        {
+            checkText(machine, text(TestMachines.strings(300, symbols, 12, s), new Random(s)));
+        }
+    }
+
+    /** Joins lines with '\n' or "\r\n", the last one without a line end half the time. */
+    private static String text(List<String> lines, Random random)
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++)
+        {
+            text.append(lines.get(i));
+            if (i < lines.size() - 1 || random.nextBoolean())
+            {
+                text.append(random.nextBoolean() ? "\n" : "\r\n");
+            }
+        }
+        return text.toString();
+    }
+
+    /** Writes the text to a file and compares both scan modes with accepts. */
+    private void checkText(FiniteAutomataMachine machine, String text) throws IOException
+    {
+        Path path = directory.resolve("input.txt");
+        Files.write(path, text.getBytes(StandardCharsets.ISO_8859_1));
+
+        FileScanResult whole = machine.scanFile(path, false);
+        assertEquals(1, whole.records);
+        assertEquals(machine.accepts(text), whole.accepted == 1);
+        assertEquals(machine.accepts(text), whole.isAccepted(0));
+
+        List<String> records = records(text);
+        FileScanResult scan = machine.scanFile(path, true);
+        assertEquals(records.size(), scan.records);
+        assertEquals(text.length(), scan.bytes);
+        long accepted = 0;
+        for (int i = 0; i < records.size(); i++)
+        {
+            boolean expected = machine.accepts(records.get(i));
+            assertEquals(expected, scan.isAccepted(i), "record " + i + ", " + records.get(i));
+            accepted += expected ? 1 : 0;
+        }
+        assertEquals(accepted, scan.accepted);
+    }
+
+    /** Splits text into records at '\n', dropping a '\r' before it, a last line without '\n' is a record too. */
+    private static List<String> records(String text)
+    {
+        List<String> records = new ArrayList<String>();
+        int start = 0;
+        for (int end = text.indexOf('\n'); end != -1; end = text.indexOf('\n', start))
+        {
+            records.add(text.substring(start, end > start && text.charAt(end - 1) == '\r' ? end - 1 : end));
+            start = end + 1;
+        }
+        if (start < text.length())
+        {
+            records.add(text.substring(start));
+        }
+        return records;
+    }
+}
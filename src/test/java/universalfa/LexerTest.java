@@ -0,0 +1,138 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Checks that token types survive every operation that builds a new machine from the compiled one */
+class LexerTest
+{
+    static final int KEYWORD = 0;
+    static final int IDENTIFIER = 1;
+    static final int NUMBER = 2;
+    static final int SPACE = 3;
+    static final String INPUT = "if ig iff 42 7  if9#";
+    static final List<String> TOKENS = Arrays.asList("0:if", "3: ", "1:ig", "3: ", "1:iff", "3: ", "2:42", "3: ", "2:7", "3:  ",
+        "0:if", "2:9", "-1:#");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void nondeterministicLexer()
+    {
+        FiniteAutomataMachine lexer = lexer();
+        assertFalse(lexer.isDeterministic());
+        assertEquals(TOKENS, tokens(lexer, INPUT));
+    }
+
+    /** "if" and "ig" lead to states with the same language and different types, they must stay apart */
+    @Test
+    void minimizeKeepsTypes()
+    {
+        FiniteAutomataMachine minimized = lexer().minimize();
+        assertEquals(TOKENS, tokens(minimized, INPUT));
+        assertEquals(TOKENS, tokens(minimized.minimize(), INPUT));
+    }
+
+    @Test
+    void relayoutKeepsTypes()
+    {
+        FiniteAutomataMachine minimized = lexer().minimize();
+        assertEquals(TOKENS, tokens(minimized.relayout(minimized.profile(Arrays.asList(INPUT, "iff", "42 7"))), INPUT));
+    }
+
+    @Test
+    void saveAndLoadKeepTypes() throws IOException
+    {
+        Path path = directory.resolve("lexer.ufa");
+        lexer().minimize().save(path);
+        assertEquals(TOKENS, tokens(FiniteAutomataMachine.load(path), INPUT));
+    }
+
+    @Test
+    void productsKeepTypes()
+    {
+        FiniteAutomataMachine lexer = lexer();
+        assertEquals(TOKENS, tokens(lexer.intersection(lexer.minimize(), true), INPUT));
+        FiniteAutomataMachine nothing = new FiniteAutomataMachine(alphabet(), new States(1));
+        assertEquals(TOKENS, tokens(lexer.union(nothing, false), INPUT));
+        assertEquals(TOKENS, tokens(lexer.difference(nothing, true), INPUT));
+    }
+
+    /** Changing a type after the machine is compiled shows in the next tokenize */
+    @Test
+    void typeChangesAfterCompile()
+    {
+        FiniteAutomataMachine minimized = lexer().minimize();
+        assertEquals(TOKENS, tokens(minimized, INPUT));
+        for (int state = 0; state < minimized.getNumberOfStates(); state++)
+        {
+            if (minimized.getTokenType(state) == SPACE)
+            {
+                minimized.setTokenType(state, 9);
+            }
+        }
+        List<String> expected = new ArrayList<String>();
+        for (String token: TOKENS)
+        {
+            expected.add(token.startsWith(SPACE + ":") ? "9" + token.substring(1) : token);
+        }
+        assertEquals(expected, tokens(minimized, INPUT));
+    }
+
+    /** Builds a lexer for "if", identifiers, numbers and spaces with epsilon transitions from the initial state.
+        Numbers have two equal branches, so the DFA has redundant states of the same type. */
+    private static FiniteAutomataMachine lexer()
+    {
+        States sta = new States(12);
+        sta.setTokenType(3, KEYWORD);
+        sta.setTokenType(5, IDENTIFIER);
+        sta.setTokenType(7, NUMBER);
+        sta.setTokenType(9, SPACE);
+        sta.setTokenType(11, NUMBER);
+        FiniteAutomataMachine lexer = new FiniteAutomataMachine(alphabet(), sta);
+        for (int start: new int[] {1, 4, 6, 8, 10})
+        {
+            lexer.addTransition("0", FiniteAutomataMachine.EPSILON, Integer.toString(start));
+        }
+        lexer.addTransition("1", "i", "2");
+        lexer.addTransition("2", "f", "3");
+        lexer.addTransition("4", 'a', 'z', "5");
+        lexer.addTransition("5", 'a', 'z', "5");
+        lexer.addTransition("6", '0', '9', "7");
+        lexer.addTransition("7", '0', '9', "7");
+        lexer.addTransition("8", " ", "9");
+        lexer.addTransition("9", " ", "9");
+        lexer.addTransition("10", '0', '9', "11");
+        lexer.addTransition("11", '0', '9', "11");
+        return lexer;
+    }
+
+    /** Builds the alphabet of lowercase letters, digits and the space. */
+    private static Alphabet alphabet()
+    {
+        Alphabet alpha = new Alphabet(3);
+        alpha.addRange('a', 'z');
+        alpha.addRange('0', '9');
+        alpha.addSymbol(" ");
+        return alpha;
+    }
+
+    /** Tokenizes an input into type:text strings. */
+    private static List<String> tokens(FiniteAutomataMachine lexer, String input)
+    {
+        TokenBuffer buffer = new TokenBuffer();
+        lexer.tokenize(input, buffer);
+        List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < buffer.size(); i++)
+        {
+            tokens.add(buffer.getType(i) + ":" + input.substring(buffer.getStart(i), buffer.getEnd(i)));
+        }
+        return tokens;
+    }
+}
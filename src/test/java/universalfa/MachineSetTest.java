@@ -0,0 +1,113 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that a machine set gives every member's own verdict, with and without the lazy product */
+class MachineSetTest
+{
+    static final String[] PIECES = {"a", "b", "c", "d", "ab", "<EOF>", "<E"}; // 'd' is outside every alphabet
+
+    @Test
+    void vector()
+    {
+        for (long seed = 0; seed < 10; seed++)
+        {
+            check(machines(seed), 0, seed);
+        }
+    }
+
+    @Test
+    void product()
+    {
+        for (long seed = 0; seed < 10; seed++)
+        {
+            check(machines(seed), 64L << 20, seed);
+        }
+    }
+
+    /** A bound below one product state flushes the cache on every new state */
+    @Test
+    void productFlushes()
+    {
+        for (long seed = 0; seed < 10; seed++)
+        {
+            MachineSet set = check(machines(seed), 1, seed);
+            assertTrue(set.getCacheStats().getFlushes() > 0, "seed " + seed);
+        }
+    }
+
+    @Test
+    void productOffAgain()
+    {
+        List<FiniteAutomataMachine> machines = machines(3);
+        MachineSet set = new MachineSet(machines);
+        set.setProduct(1 << 20);
+        set.setProduct(0);
+        for (String input: TestMachines.strings(200, PIECES, 10, 3))
+        {
+            checkInput(set, machines, input, "off again");
+        }
+    }
+
+    /** Builds dense FAs over overlapping alphabets, an NFA, a sparse FA and an FA with longer symbols. */
+    private static List<FiniteAutomataMachine> machines(long seed)
+    {
+        StringBuilder symbols = new StringBuilder("abc");
+        for (char c = 'e'; c < 'e' + 200; c++)
+        {
+            symbols.append(c);
+        }
+        List<FiniteAutomataMachine> machines = new ArrayList<FiniteAutomataMachine>();
+        machines.add(TestMachines.random(6, "ab", 0.9, 1, seed));
+        machines.add(TestMachines.random(8, "bc", 0.9, 1, seed + 100));
+        machines.add(TestMachines.random(5, "abc", 0.8, 2, seed + 200));
+        FiniteAutomataMachine sparse = TestMachines.random(400, symbols.toString(), 0.05, 1, seed + 300);
+        sparse.addTransition("0", "a", "0"); // Lets it read more than the first character
+        machines.add(sparse);
+        machines.add(TestMachines.random(4, new String[] {"a", "b", "ab", "<EOF>"}, 0.9, 1, seed + 400));
+        assertTrue(sparse.compile().isSparse());
+        return machines;
+    }
+
+    /** Compares the set with each machine on random strings.
+        @param maxBytes  Memory bound of the product cache, 0 to leave it off.
+        @return  The set. */
+    private static MachineSet check(List<FiniteAutomataMachine> machines, long maxBytes, long seed)
+    {
+        MachineSet set = new MachineSet(machines);
+        if (maxBytes > 0)
+        {
+            set.setProduct(maxBytes);
+        }
+        assertEquals(machines.size(), set.size());
+        for (String input: TestMachines.strings(300, PIECES, 12, seed))
+        {
+            checkInput(set, machines, input, "seed " + seed + ", " + input);
+        }
+        return set;
+    }
+
+    /** Compares both accepts variants of the set with each machine on one string. */
+    private static void checkInput(MachineSet set, List<FiniteAutomataMachine> machines, String input, String message)
+    {
+        BitSet expected = new BitSet();
+        for (int m = 0; m < machines.size(); m++)
+        {
+            if (machines.get(m).accepts(input))
+            {
+                expected.set(m);
+            }
+        }
+        assertEquals(expected, set.accepts(input), message);
+        boolean[] results = new boolean[machines.size() + 1];
+        Arrays.fill(results, true);
+        assertEquals(expected.cardinality(), set.accepts(input, results), message);
+        for (int m = 0; m < machines.size(); m++)
+        {
+            assertEquals(expected.get(m), results[m], message);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that metrics count the characters an evaluation read, on every engine, and time strings by their length */
+class MetricsTest
+{
+    @Test
+    void dfaCountsCharactersRead()
+    {
+        checkCharactersRead(machine(false));
+    }
+
+    @Test
+    void nfaCountsCharactersRead()
+    {
+        FiniteAutomataMachine nfa = machine(true);
+        assertFalse(nfa.isDeterministic());
+        checkCharactersRead(nfa);
+    }
+
+    @Test
+    void bitParallelNfaCountsCharactersRead()
+    {
+        FiniteAutomataMachine nfa = machine(true);
+        nfa.setSubsetBudget(0);
+        assertFalse(nfa.isDeterministic());
+        checkCharactersRead(nfa);
+        assertTrue(nfa.isBitParallel());
+    }
+
+    /** Evaluates strings that end in each outcome and checks the counters. */
+    private static void checkCharactersRead(FiniteAutomataMachine machine)
+    {
+        EvaluationMetrics metrics = new EvaluationMetrics();
+        machine.setMetrics(metrics);
+        assertTrue(machine.accepts("aaaa"));
+        assertEquals(4, metrics.getCharacters());
+        assertFalse(machine.accepts("abaaaaaa")); // No transition on the b
+        assertEquals(4 + 2, metrics.getCharacters());
+        assertFalse(machine.accepts("aacaaaaa")); // c is not in the alphabet
+        assertEquals(4 + 2 + 3, metrics.getCharacters());
+        assertFalse(machine.accepts(""));
+        assertEquals(4 + 2 + 3, metrics.getCharacters());
+        assertEquals(1, metrics.getCount(EvaluationMetrics.ACCEPTED));
+        assertEquals(1, metrics.getCount(EvaluationMetrics.MISSING_TRANSITION));
+        assertEquals(1, metrics.getCount(EvaluationMetrics.UNKNOWN_SYMBOL));
+        assertEquals(1, metrics.getCount(EvaluationMetrics.NOT_FINAL));
+        assertEquals(EvaluationMetrics.result(EvaluationMetrics.MISSING_TRANSITION, 2), machine.evaluate("abaaaaaa"));
+    }
+
+    /** A long string rejected at its first character is timed with the long strings */
+    @Test
+    void latencyKeyedByStringLength()
+    {
+        FiniteAutomataMachine machine = machine(false);
+        EvaluationMetrics metrics = new EvaluationMetrics();
+        machine.setMetrics(metrics);
+        String input = "b" + "a".repeat(9999);
+        assertFalse(machine.accepts(input));
+        assertEquals(1, metrics.getCharacters());
+        int bucket = EvaluationMetrics.lengthBucket(input.length());
+        assertEquals(14, bucket);
+        for (int b = 0; b < EvaluationMetrics.LENGTH_BUCKETS; b++)
+        {
+            assertEquals(b == bucket ? 1 : 0, Arrays.stream(metrics.getLatencyHistogram(b)).sum(), "bucket " + b);
+        }
+        assertTrue(machine.accepts("aaa"));
+        assertEquals(1, Arrays.stream(metrics.getLatencyHistogram(EvaluationMetrics.lengthBucket(3))).sum());
+    }
+
+    /** Builds a+ over a and b, with an extra loop on the start that makes it nondeterministic if asked. */
+    private static FiniteAutomataMachine machine(boolean nondeterministic)
+    {
+        Alphabet alpha = new Alphabet(2);
+        alpha.addSymbol("a");
+        alpha.addSymbol("b");
+        States sta = new States(2);
+        sta.setFinalState(1);
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        machine.addTransition("0", "a", "1");
+        machine.addTransition("1", "a", "1");
+        if (nondeterministic)
+        {
+            machine.addTransition("0", "a", "0");
+        }
+        return machine;
+    }
+}
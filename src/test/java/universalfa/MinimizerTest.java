@@ -0,0 +1,174 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that minimize keeps the language and leaves no two states with the same one, against a table-filling check */
+class MinimizerTest
+{
+    static final String SYMBOLS = "abcd"; // Characters of the random strings, d is in no random alphabet
+
+    @Test
+    void randomDfasStayEquivalent()
+    {
+        for (int seed = 0; seed < 500; seed++)
+        {
+            Random random = new Random(seed);
+            FiniteAutomataMachine machine = TestMachines.random(1 + random.nextInt(20), "ab", 0.5 + random.nextDouble() * 0.5, 1, seed);
+            assertTrue(machine.isDeterministic(), "seed " + seed);
+            check(machine, SYMBOLS, "seed " + seed);
+        }
+    }
+
+    @Test
+    void randomNfasStayEquivalent()
+    {
+        for (int seed = 0; seed < 300; seed++)
+        {
+            Random random = new Random(seed);
+            FiniteAutomataMachine machine = TestMachines.random(2 + random.nextInt(10), "abc", 0.4 + random.nextDouble() * 0.5, 2, seed);
+            check(machine, SYMBOLS, "seed " + seed);
+        }
+    }
+
+    /** Binary numbers read modulo 6, accepted if divisible by 3, need only the three states of the remainder modulo 3 */
+    @Test
+    void divisibleByThree()
+    {
+        Alphabet alpha = new Alphabet(2);
+        alpha.addSymbol("0");
+        alpha.addSymbol("1");
+        States sta = new States(6);
+        sta.setFinalState(0);
+        sta.setFinalState(3);
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        for (int state = 0; state < 6; state++)
+        {
+            machine.addTransition(Integer.toString(state), "0", Integer.toString(state * 2 % 6));
+            machine.addTransition(Integer.toString(state), "1", Integer.toString((state * 2 + 1) % 6));
+        }
+        assertEquals(3, samePairs(machine.compile())); // 0 and 3, 1 and 4, 2 and 5
+        FiniteAutomataMachine minimized = machine.minimize();
+        assertEquals(3, minimized.getNumberOfStates());
+        for (int n = 0; n < 200; n++)
+        {
+            assertEquals(n % 3 == 0, minimized.accepts(Integer.toBinaryString(n)), Integer.toString(n));
+        }
+        check(machine, "01", "mod 3");
+    }
+
+    /** The NFA of (a|b)*abb has the four-state minimal DFA of the textbooks */
+    @Test
+    void endsWithAbb()
+    {
+        Alphabet alpha = new Alphabet(2);
+        alpha.addSymbol("a");
+        alpha.addSymbol("b");
+        States sta = new States(4);
+        sta.setFinalState(3);
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        machine.addTransition("0", "a", "0");
+        machine.addTransition("0", "b", "0");
+        machine.addTransition("0", "a", "1");
+        machine.addTransition("1", "b", "2");
+        machine.addTransition("2", "b", "3");
+        assertFalse(machine.isDeterministic());
+        FiniteAutomataMachine minimized = machine.minimize();
+        assertEquals(4, minimized.getNumberOfStates());
+        assertTrue(minimized.accepts("babb"));
+        assertFalse(minimized.accepts("abba"));
+        check(machine, "ab", "(a|b)*abb");
+    }
+
+    /** Unreachable states and duplicate branches of a partial DFA for ab|cb all go */
+    @Test
+    void trimsUnreachableAndMergesBranches()
+    {
+        Alphabet alpha = new Alphabet(3);
+        alpha.addSymbol("a");
+        alpha.addSymbol("b");
+        alpha.addSymbol("c");
+        States sta = new States(7);
+        sta.setFinalState(2);
+        sta.setFinalState(4);
+        sta.setFinalState(6);
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        machine.addTransition("0", "a", "1");
+        machine.addTransition("1", "b", "2");
+        machine.addTransition("0", "c", "3");
+        machine.addTransition("3", "b", "4");
+        machine.addTransition("5", "a", "6"); // 5 and 6 are unreachable
+        assertEquals(3, machine.minimize().getNumberOfStates());
+        check(machine, "abc", "ab|cb");
+    }
+
+    /** Minimizes a machine and checks the language on the comparator and on strings, then checks minimality. */
+    private static void check(FiniteAutomataMachine machine, String symbols, String message)
+    {
+        FiniteAutomataMachine minimized = machine.minimize();
+        assertTrue(FiniteAutomataMachine.equivalent(machine, minimized).holds(), message);
+        for (String input: TestMachines.strings(100, symbols, 12, message.hashCode()))
+        {
+            assertEquals(machine.accepts(input), minimized.accepts(input), message + ", " + input);
+        }
+        assertTrue(minimized.isDeterministic(), message);
+        assertEquals(minimized.getNumberOfStates(), minimized.minimize().getNumberOfStates(), message);
+        assertEquals(0, samePairs(minimized.compile()), message);
+    }
+
+    /** Counts the pairs of reachable states no string tells apart, with the table-filling algorithm.
+        The implicit dead state takes the last index, a state equal to it only counts if it is not the only state. */
+    private static int samePairs(CompiledAutomaton machine)
+    {
+        int n = machine.numberOfStates + 1;
+        int dead = n - 1;
+        boolean[] different = new boolean[n * n];
+        for (int p = 0; p < n; p++)
+        {
+            for (int q = 0; q < n; q++)
+            {
+                different[p * n + q] = (p != dead && machine.isFinal(p)) != (q != dead && machine.isFinal(q));
+            }
+        }
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (int p = 0; p < n; p++)
+            {
+                for (int q = 0; q < n; q++)
+                {
+                    for (int a = 0; a < machine.alphabetSize && !different[p * n + q]; a++)
+                    {
+                        if (different[step(machine, p, a, dead) * n + step(machine, q, a, dead)])
+                        {
+                            different[p * n + q] = true;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        int same = 0;
+        for (int p = 0; p < n; p++)
+        {
+            for (int q = p + 1; q < n; q++)
+            {
+                if (!different[p * n + q] && (q != dead || machine.numberOfStates > 1))
+                {
+                    same++;
+                }
+            }
+        }
+        return same;
+    }
+
+    /** Steps one state, the dead state on a missing transition. */
+    private static int step(CompiledAutomaton machine, int state, int column, int dead)
+    {
+        int next = state == dead ? CompiledAutomaton.NO_TRANSITION : machine.nextState(state, column);
+        return next == CompiledAutomaton.NO_TRANSITION ? dead : next;
+    }
+}
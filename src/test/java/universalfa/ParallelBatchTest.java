@@ -0,0 +1,103 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that parallel batch evaluation gives the verdicts of sequential test(String), in the original order */
+class ParallelBatchTest
+{
+    static final int[] PARALLELISM = {1, 2, 3, 8};
+    static final int[] CHUNK_SIZES = {1, 7, 64, 100000};
+
+    @Test
+    void deterministicMatchesSequential()
+    {
+        FiniteAutomataMachine machine = TestMachines.random(40, "abc", 0.8, 1, 1);
+        assertTrue(machine.isDeterministic());
+        checkAgainstSequential(machine, TestMachines.strings(3000, "abcd", 30, 2));
+    }
+
+    @Test
+    void nondeterministicMatchesSequential()
+    {
+        FiniteAutomataMachine machine = TestMachines.random(12, "abc", 0.7, 2, 3);
+        assertFalse(machine.isDeterministic());
+        assertFalse(machine.isBitParallel());
+        checkAgainstSequential(machine, TestMachines.strings(3000, "abcd", 30, 4));
+    }
+
+    @Test
+    void bitParallelMatchesSequential()
+    {
+        FiniteAutomataMachine machine = TestMachines.random(12, "abc", 0.7, 2, 5);
+        machine.setSubsetBudget(0);
+        assertTrue(machine.isBitParallel());
+        checkAgainstSequential(machine, TestMachines.strings(3000, "abcd", 30, 6));
+    }
+
+    @Test
+    void emptyBatch()
+    {
+        FiniteAutomataMachine machine = TestMachines.random(5, "ab", 1.0, 1, 7);
+        assertEquals(new BitSet(), machine.acceptAllParallel(new ArrayList<String>(), 4, 16));
+    }
+
+    @Test
+    void rejectsBadArguments()
+    {
+        FiniteAutomataMachine machine = TestMachines.random(5, "ab", 1.0, 1, 8);
+        List<String> inputs = Arrays.asList("a", "b");
+        assertThrows(IllegalArgumentException.class, () -> machine.acceptAllParallel(inputs, new boolean[1], 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> machine.acceptAllParallel(inputs, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> machine.acceptAllParallel(inputs, 2, 0));
+    }
+
+    /** Runs the batch at every parallelism and chunk size, against the verdicts test(String) prints. */
+    private static void checkAgainstSequential(FiniteAutomataMachine machine, List<String> inputs)
+    {
+        boolean[] expected = printedVerdicts(machine, inputs);
+        for (int parallelism: PARALLELISM)
+        {
+            for (int chunkSize: CHUNK_SIZES)
+            {
+                boolean[] results = new boolean[inputs.size()];
+                machine.acceptAllParallel(inputs, results, parallelism, chunkSize);
+                assertArrayEquals(expected, results, "parallelism " + parallelism + ", chunk size " + chunkSize);
+                BitSet bits = machine.acceptAllParallel(inputs, parallelism, chunkSize);
+                for (int i = 0; i < inputs.size(); i++)
+                {
+                    assertEquals(expected[i], bits.get(i), "string " + i);
+                }
+            }
+        }
+    }
+
+    /** Runs test(String) on each string and reads its verdict from the console. */
+    private static boolean[] printedVerdicts(FiniteAutomataMachine machine, List<String> inputs)
+    {
+        boolean[] verdicts = new boolean[inputs.size()];
+        PrintStream console = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured));
+        try
+        {
+            for (int i = 0; i < inputs.size(); i++)
+            {
+                captured.reset();
+                machine.test(inputs.get(i));
+                String verdict = captured.toString().trim();
+                assertTrue(verdict.equals("Accept") || verdict.equals("Reject"), verdict);
+                verdicts[i] = verdict.equals("Accept");
+            }
+        }
+        finally
+        {
+            System.setOut(console);
+        }
+        return verdicts;
+    }
+}
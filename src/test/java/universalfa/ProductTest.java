@@ -0,0 +1,102 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that union, intersection, difference and complement accept what the operation says of the two machines' verdicts */
+class ProductTest
+{
+    static final String SYMBOLS = "abcd"; // Characters of the strings, d is in no alphabet
+
+    @Test
+    void sameAlphabet()
+    {
+        for (int seed = 0; seed < 300; seed++)
+        {
+            check(random("ab", 1, seed), random("ab", 1 + seed % 2, seed + 1000), "seed " + seed);
+        }
+    }
+
+    /** Each machine rejects strings with the other's extra symbols, the product reads both alphabets */
+    @Test
+    void differentAlphabets()
+    {
+        for (int seed = 0; seed < 300; seed++)
+        {
+            check(random("ab", 1 + seed % 2, seed), random("bc", 1, seed + 1000), "seed " + seed);
+            check(random("abc", 1, seed), random("a", 1, seed + 2000), "seed " + seed);
+        }
+    }
+
+    /** The complement accepts what the machine rejects over its own alphabet, and nothing with other symbols */
+    @Test
+    void complement()
+    {
+        for (int seed = 0; seed < 300; seed++)
+        {
+            FiniteAutomataMachine machine = random(seed % 3 == 0 ? "abc" : "ab", 1 + seed % 2, seed);
+            FiniteAutomataMachine complement = machine.complement(false);
+            FiniteAutomataMachine minimized = machine.complement(true);
+            String alphabet = seed % 3 == 0 ? "abc" : "ab";
+            for (String input: TestMachines.strings(200, SYMBOLS, 10, seed))
+            {
+                boolean expected = inAlphabet(input, alphabet) && !machine.accepts(input);
+                assertEquals(expected, complement.accepts(input), "seed " + seed + ", " + input);
+                assertEquals(expected, minimized.accepts(input), "seed " + seed + ", " + input);
+            }
+            FiniteAutomataMachine twice = complement.complement(true);
+            assertTrue(FiniteAutomataMachine.equivalent(machine, twice).holds(), "seed " + seed);
+        }
+    }
+
+    /** Checks each operation, built and minimized, and the lazy product, on random strings. */
+    private static void check(FiniteAutomataMachine a, FiniteAutomataMachine b, String message)
+    {
+        FiniteAutomataMachine[] unions = {a.union(b, false), a.union(b, true)};
+        FiniteAutomataMachine[] intersections = {a.intersection(b, false), a.intersection(b, true)};
+        FiniteAutomataMachine[] differences = {a.difference(b, false), a.difference(b, true)};
+        ProductAutomaton union = a.product(b, ProductAutomaton.UNION);
+        ProductAutomaton intersection = a.product(b, ProductAutomaton.INTERSECTION);
+        ProductAutomaton difference = a.product(b, ProductAutomaton.DIFFERENCE);
+        for (String input: TestMachines.strings(200, SYMBOLS, 10, message.hashCode()))
+        {
+            boolean inA = a.accepts(input);
+            boolean inB = b.accepts(input);
+            String where = message + ", " + input;
+            for (int i = 0; i < 2; i++)
+            {
+                assertEquals(inA || inB, unions[i].accepts(input), where);
+                assertEquals(inA && inB, intersections[i].accepts(input), where);
+                assertEquals(inA && !inB, differences[i].accepts(input), where);
+            }
+            assertEquals(inA || inB, union.accepts(input), where);
+            assertEquals(inA && inB, intersection.accepts(input), where);
+            assertEquals(inA && !inB, difference.accepts(input), where);
+        }
+    }
+
+    /** Checks if every character of a string is one of the symbols. */
+    private static boolean inAlphabet(String input, String symbols)
+    {
+        for (int i = 0; i < input.length(); i++)
+        {
+            if (symbols.indexOf(input.charAt(i)) == -1)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Builds an FA of 1 to 6 states with a random destination on most cells.
+        @param symbols  The alphabet, one character per symbol.
+        @param targets  Destinations per filled cell, more than 1 makes the FA nondeterministic.
+        @param seed  Seed of the random source.
+        @return  The FA. */
+    private static FiniteAutomataMachine random(String symbols, int targets, long seed)
+    {
+        return TestMachines.random(1 + new Random(seed).nextInt(6), symbols, 0.8, targets, seed);
+    }
+}
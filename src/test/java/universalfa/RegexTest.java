@@ -0,0 +1,95 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/** Checks compiled patterns against java.util.regex on random patterns and strings */
+class RegexTest
+{
+    static final String[] ATOMS = {"a", "b", "c", ".", "\\.", "[ab]", "[a-c]", "[^a]", "[^ab\\n]", "[^.]", "[b-]"};
+    static final String CHARS = "abcd.-\n\r "; // Characters of the test strings, some no pattern mentions
+
+    @Test
+    void matchesJavaRegex()
+    {
+        Random random = new Random(10);
+        for (int p = 0; p < 500; p++)
+        {
+            String pattern = pattern(random, 3);
+            FiniteAutomataMachine machine = FiniteAutomataMachine.fromRegex(pattern);
+            Pattern expected = Pattern.compile(pattern);
+            for (int s = 0; s < 50; s++)
+            {
+                String input = string(random, random.nextInt(8));
+                assertEquals(expected.matcher(input).matches(), machine.accepts(input), "pattern " + pattern + ", string " + input);
+            }
+        }
+    }
+
+    @Test
+    void dotAndNegatedClasses()
+    {
+        FiniteAutomataMachine machine = FiniteAutomataMachine.fromRegex("[^,\\n]*(,[^,\\n]*)*");
+        assertTrue(machine.accepts("x,y\u00e9,\u4e2d,"));
+        assertFalse(machine.accepts("x\ny"));
+        machine = FiniteAutomataMachine.fromRegex("a.c");
+        assertTrue(machine.accepts("abc"));
+        assertTrue(machine.accepts("a.c"));
+        assertTrue(machine.accepts("a\u00ffc"));
+        assertFalse(machine.accepts("a\nc"));
+        assertFalse(machine.accepts("ac"));
+    }
+
+    @Test
+    void rejectsMalformedPatterns()
+    {
+        for (String pattern: new String[] {"[^]", "[]", "[a", "(a", "a)", "*a", "a\\"})
+        {
+            assertThrows(IllegalArgumentException.class, () -> FiniteAutomataMachine.fromRegex(pattern), pattern);
+        }
+    }
+
+    /** Classes such as \d mean something else in java.util.regex, so they fail instead of standing for the letter */
+    @Test
+    void rejectsUnsupportedEscapes()
+    {
+        for (String pattern: new String[] {"\\d+", "a\\w", "[\\s]", "\\b", "(a)\\1", "\\Q"})
+        {
+            assertThrows(IllegalArgumentException.class, () -> FiniteAutomataMachine.fromRegex(pattern), pattern);
+        }
+        FiniteAutomataMachine machine = FiniteAutomataMachine.fromRegex("\\n\\t\\r\\.\\*\\[\\\\-");
+        assertTrue(machine.accepts("\n\t\r.*[\\-"));
+        assertFalse(machine.accepts("nt r.*[\\-"));
+    }
+
+    /** Builds a random pattern of atoms, concatenation, alternation, repetition and groups. */
+    private static String pattern(Random random, int depth)
+    {
+        int choice = depth == 0 ? 0 : random.nextInt(5);
+        switch (choice)
+        {
+            case 1:
+                return pattern(random, depth - 1) + pattern(random, depth - 1);
+            case 2:
+                return "(" + pattern(random, depth - 1) + "|" + pattern(random, depth - 1) + ")";
+            case 3:
+                return "(" + pattern(random, depth - 1) + ")" + "*+?".charAt(random.nextInt(3));
+            default:
+                return ATOMS[random.nextInt(ATOMS.length)];
+        }
+    }
+
+    /** Builds a random string of the test characters. */
+    private static String string(Random random, int length)
+    {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            builder.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that a run fed its input in pieces ends where accepts does */
+class RunTest
+{
+    static final int CHAR_ARRAY = 0;
+    static final int CHAR_SEQUENCE = 1;
+    static final int BYTE_BUFFER = 2;
+
+    @Test
+    void dense()
+    {
+        for (long seed = 0; seed < 10; seed++)
+        {
+            check(TestMachines.random(12, "abc", 0.85, 1, seed), seed);
+        }
+    }
+
+    @Test
+    void sparse()
+    {
+        StringBuilder symbols = new StringBuilder("abcd");
+        for (char c = 'e'; c < 'e' + 250; c++)
+        {
+            symbols.append(c);
+        }
+        FiniteAutomataMachine machine = TestMachines.random(300, symbols.toString(), 0.05, 1, 41);
+        List<String> missing = new ArrayList<String>();
+        for (int state = 0; state < 300; state++) // Fills most cells of a, b and c so runs live long enough to cross pieces
+        {
+            for (String symbol: TestMachines.characters("abc"))
+            {
+                if ((state + symbol.charAt(0)) % 7 != 0 && machine.NextState(state, symbol) == -1)
+                {
+                    missing.add(state + " " + symbol);
+                }
+            }
+        }
+        Random random = new Random(41);
+        for (String cell: missing)
+        {
+            String[] t = cell.split(" ");
+            machine.addTransition(t[0], t[1], Integer.toString(random.nextInt(300)));
+        }
+        assertTrue(machine.compile().isSparse());
+        check(machine, 42);
+    }
+
+    @Test
+    void nondeterministic()
+    {
+        for (long seed = 0; seed < 10; seed++)
+        {
+            FiniteAutomataMachine machine = TestMachines.random(6, "abc", 0.8, 2, seed);
+            assertFalse(machine.isDeterministic());
+            check(machine, seed);
+        }
+    }
+
+    /** Once a transition is missing the run stays dead and stops counting characters */
+    @Test
+    void failsFast()
+    {
+        Alphabet alpha = new Alphabet(2);
+        alpha.addSymbol("a");
+        alpha.addSymbol("b");
+        States sta = new States(1);
+        sta.setFinalState(0);
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        machine.addTransition("0", "a", "0");
+        AutomatonRun run = machine.newRun();
+        assertTrue(run.feed("aa"));
+        assertFalse(run.isDead());
+        assertFalse(run.feed("aba".toCharArray(), 0, 3));
+        assertTrue(run.isDead());
+        assertEquals(4, run.getOffset()); // Up to and including the b
+        assertFalse(run.feed("aaa"));
+        assertFalse(run.feed(ByteBuffer.wrap("aaa".getBytes(StandardCharsets.ISO_8859_1))));
+        assertFalse(run.feed('a'));
+        assertEquals(4, run.getOffset());
+        assertFalse(run.finish());
+        run.reset();
+        assertFalse(run.isDead());
+        assertEquals(0, run.getOffset());
+        assertTrue(run.feed('a'));
+        assertTrue(run.finish());
+    }
+
+    /** Feeds random strings in pieces of every kind, with each piece cut at a random point. */
+    private static void check(FiniteAutomataMachine machine, long seed)
+    {
+        Random random = new Random(seed);
+        CompiledAutomaton compiled = machine.compile();
+        AutomatonRun run = machine.newRun();
+        for (String input: TestMachines.strings(300, "abcd", 40, seed))
+        {
+            run.reset();
+            int position = 0;
+            while (position < input.length() && !run.isDead())
+            {
+                int end = position + random.nextInt(input.length() - position + 1);
+                boolean alive = feed(run, input, position, end, random.nextInt(3));
+                assertEquals(!run.isDead(), alive, input);
+                position = end;
+            }
+            int dies = deadAt(compiled, input);
+            String message = "seed " + seed + ", " + input;
+            assertEquals(dies == -1 ? input.length() : dies + 1, run.getOffset(), message);
+            assertEquals(dies != -1, run.isDead(), message);
+            assertEquals(machine.accepts(input), run.finish(), message);
+        }
+    }
+
+    /** Feeds the characters from start to end as one piece of the given kind. */
+    private static boolean feed(AutomatonRun run, String input, int start, int end, int kind)
+    {
+        switch (kind)
+        {
+            case CHAR_ARRAY:
+                char[] buf = new char[end - start + 4];
+                input.getChars(start, end, buf, 2);
+                return run.feed(buf, 2, end - start);
+            case CHAR_SEQUENCE:
+                return run.feed(input.subSequence(start, end));
+            default:
+                ByteBuffer buffer = ByteBuffer.wrap(input.substring(start, end).getBytes(StandardCharsets.ISO_8859_1));
+                long offset = run.getOffset();
+                boolean alive = run.feed(buffer);
+                assertEquals(run.getOffset() - offset, buffer.position()); // A dead run leaves the buffer after the failing byte
+                return alive;
+        }
+    }
+
+    /** Finds the character whose transition is missing.
+        @return  Its index, or -1 if the whole string has transitions. */
+    private static int deadAt(CompiledAutomaton machine, String input)
+    {
+        int state = 0;
+        for (int i = 0; i < input.length(); i++)
+        {
+            int column = machine.charColumns[input.charAt(i)];
+            state = column == -1 ? CompiledAutomaton.NO_TRANSITION : machine.nextState(state, column);
+            if (state == CompiledAutomaton.NO_TRANSITION)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,233 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks unanchored search against matching every substring, and that long runs stay linear */
+class SearchTest
+{
+    static final int RUN_LENGTH = 1 << 20; // Long enough that rescanning each match would not finish in time
+
+    @Test
+    void matchesEverySubstring()
+    {
+        for (int seed = 0; seed < 200; seed++)
+        {
+            Random random = new Random(seed);
+            FiniteAutomataMachine machine = TestMachines.random(1 + random.nextInt(6), "abc", 0.5 + random.nextDouble() / 2, 1 + seed % 2, seed);
+            for (int i = 0; i < 10; i++)
+            {
+                String text = TestMachines.string(random.nextInt(30), "abcd", random); // 'd' is outside the alphabet
+                assertArrayEquals(allMatches(machine, text), find(machine, text, false), "seed " + seed + ", text " + text);
+                assertArrayEquals(leftmostLongest(machine, text), find(machine, text, true), "seed " + seed + ", text " + text);
+            }
+        }
+    }
+
+    /** Long texts, where a 'd' outside the alphabet ends every run in even seeds and runs may last the whole text in odd ones */
+    @Test
+    void leftmostLongestOnLongTexts()
+    {
+        for (int seed = 0; seed < 10; seed++)
+        {
+            Random random = new Random(seed);
+            FiniteAutomataMachine machine = TestMachines.random(2 + random.nextInt(5), "abc", 0.7, 1 + seed % 2, seed);
+            StringBuilder text = new StringBuilder();
+            while (text.length() < 1 << 17)
+            {
+                text.append(TestMachines.string(random.nextInt(40), "abc", random)).append(seed % 2 == 0 ? "d" : "");
+            }
+            assertArrayEquals(greedy(machine.compile(), text.toString()), find(machine, text.toString(), true), "seed " + seed);
+        }
+    }
+
+    /** a+ over a run of a's, where every end has a match from the start of the run */
+    @Test
+    void longRunOfOneMatch()
+    {
+        FiniteAutomataMachine machine = machine(2, new int[] {1});
+        machine.addTransition("0", "a", "1");
+        machine.addTransition("1", "a", "1");
+        String text = "a".repeat(RUN_LENGTH);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+        {
+            long[] matches = new long[RUN_LENGTH];
+            assertEquals(RUN_LENGTH, machine.searcher().findAll(text, matches));
+            for (int end = 1; end <= RUN_LENGTH; end++)
+            {
+                assertEquals(end, matches[end - 1]); // Start 0
+            }
+            assertEquals(1, machine.findLeftmostLongest(text, matches));
+            assertEquals(RUN_LENGTH, matches[0]);
+        });
+    }
+
+    /** a|a[a-z]*Z over lowercase text, where every a could start a long match that never ends */
+    @Test
+    void longRunWithoutLongestEnd()
+    {
+        FiniteAutomataMachine machine = machine(4, new int[] {1, 3});
+        machine.addTransition("0", "a", "1");
+        machine.addTransition("1", 'a', 'z', "2");
+        machine.addTransition("1", "Z", "3");
+        machine.addTransition("2", 'a', 'z', "2");
+        machine.addTransition("2", "Z", "3");
+        String text = "ab".repeat(RUN_LENGTH / 2);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+        {
+            long[] matches = new long[RUN_LENGTH];
+            assertEquals(RUN_LENGTH / 2, machine.searcher().findAll(text, matches));
+            assertEquals(RUN_LENGTH / 2, machine.findLeftmostLongest(text, matches));
+            for (int i = 0; i < RUN_LENGTH / 2; i++)
+            {
+                assertEquals((long) (2 * i) << 32 | (2 * i + 1), matches[i]);
+            }
+        });
+    }
+
+    /** a*b over a run of a's with no b, where every start stays open to the end of the text */
+    @Test
+    void longRunWithoutMatch()
+    {
+        FiniteAutomataMachine machine = FiniteAutomataMachine.fromRegex("a*b");
+        String run = "a".repeat(1 << 22);
+        int[] reads = new int[1];
+        CharSequence text = new CharSequence()
+        {
+            public int length()
+            {
+                return run.length();
+            }
+
+            public char charAt(int index)
+            {
+                reads[0]++;
+                return run.charAt(index);
+            }
+
+            public CharSequence subSequence(int start, int end)
+            {
+                return run.subSequence(start, end);
+            }
+        };
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+        {
+            assertEquals(0, machine.findLeftmostLongest(text, new long[1]));
+        });
+        assertTrue(reads[0] <= 2 * run.length(), reads[0] + " reads"); // Each character at most twice, never once per start
+        assertEquals(2, machine.findLeftmostLongest(run + "b" + run + "b", new long[2]));
+    }
+
+    /** Builds an FA over a to z and Z with the given final states and no transitions. */
+    private static FiniteAutomataMachine machine(int numberOfStates, int[] finalStates)
+    {
+        Alphabet alpha = new Alphabet(27);
+        for (char c = 'a'; c <= 'z'; c++)
+        {
+            alpha.addSymbol(Character.toString(c));
+        }
+        alpha.addSymbol("Z");
+        States sta = new States(numberOfStates);
+        for (int state: finalStates)
+        {
+            sta.setFinalState(state);
+        }
+        return new FiniteAutomataMachine(alpha, sta);
+    }
+
+    /** Runs one of the searches into a buffer of the exact size. */
+    private static long[] find(FiniteAutomataMachine machine, String text, boolean leftmostLongest)
+    {
+        long[] matches = new long[text.length() + 1];
+        int count = leftmostLongest ? machine.findLeftmostLongest(text, matches) : machine.searcher().findAll(text, matches);
+        return Arrays.copyOf(matches, count);
+    }
+
+    /** Every end with a match, paired with the smallest start, by testing every substring. */
+    private static long[] allMatches(FiniteAutomataMachine machine, String text)
+    {
+        List<Long> matches = new ArrayList<Long>();
+        for (int end = 1; end <= text.length(); end++)
+        {
+            for (int start = 0; start < end; start++)
+            {
+                if (machine.accepts(text.substring(start, end)))
+                {
+                    matches.add((long) start << 32 | end);
+                    break;
+                }
+            }
+        }
+        return toArray(matches);
+    }
+
+    /** Leftmost-longest matches, by testing every substring from the current offset, longest first. */
+    private static long[] leftmostLongest(FiniteAutomataMachine machine, String text)
+    {
+        List<Long> matches = new ArrayList<Long>();
+        int position = 0;
+        while (position < text.length())
+        {
+            int end = text.length();
+            while (end > position && !machine.accepts(text.substring(position, end)))
+            {
+                end--;
+            }
+            if (end > position)
+            {
+                matches.add((long) position << 32 | end);
+                position = end;
+            }
+            else
+            {
+                position++;
+            }
+        }
+        return toArray(matches);
+    }
+
+    /** Leftmost-longest matches, by running the compiled machine from each offset until it is dead. */
+    private static long[] greedy(CompiledAutomaton machine, String text)
+    {
+        List<Long> matches = new ArrayList<Long>();
+        int position = 0;
+        while (position < text.length())
+        {
+            int longest = -1;
+            int state = 0;
+            for (int i = position; i < text.length() && state != CompiledAutomaton.NO_TRANSITION; i++)
+            {
+                int column = machine.charColumns[text.charAt(i)];
+                state = column == -1 ? CompiledAutomaton.NO_TRANSITION : machine.nextState(state, column);
+                if (state != CompiledAutomaton.NO_TRANSITION && machine.isFinal(state))
+                {
+                    longest = i + 1;
+                }
+            }
+            if (longest != -1)
+            {
+                matches.add((long) position << 32 | longest);
+                position = longest;
+            }
+            else
+            {
+                position++;
+            }
+        }
+        return toArray(matches);
+    }
+
+    /** Copies the matches to an array. */
+    private static long[] toArray(List<Long> list)
+    {
+        long[] array = new long[list.size()];
+        for (int i = 0; i < array.length; i++)
+        {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
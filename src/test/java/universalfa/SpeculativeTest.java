@@ -0,0 +1,160 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/** Checks that speculative evaluation of one string gives exactly the sequential result */
+class SpeculativeTest
+{
+    static final int[] PARALLELISM = {2, 4};
+    static final int M = SpeculativeTask.MERGE_INTERVAL;
+    static final int[] CHUNK_SIZES = {1, 2, 7, M - 1, M, M + 1, 3 * M};
+    static final int[] LENGTHS = {0, 1, 2, M - 1, M, M + 1, 2 * M, 3 * M + 1, 1000, 4099};
+
+    @Test
+    void denseMatchesSequential()
+    {
+        FiniteAutomataMachine machine = TestMachines.random(30, "abcd", 1.0, 1, 11);
+        assertFalse(machine.compile().isSparse());
+        checkAgainstSequential(machine, 12);
+    }
+
+    @Test
+    void missingTransitionsMatchSequential()
+    {
+        FiniteAutomataMachine machine = TestMachines.random(30, "abcd", 0.85, 1, 13); // Runs die partway, the dead state has to carry over
+        checkAgainstSequential(machine, 14);
+    }
+
+    @Test
+    void sparseMatchesSequential()
+    {
+        StringBuilder symbols = new StringBuilder();
+        for (char c = 'a'; c < 'a' + 256; c++)
+        {
+            symbols.append(c);
+        }
+        FiniteAutomataMachine machine = TestMachines.random(300, symbols.toString(), 0.1, 1, 15);
+        assertTrue(machine.compile().isSparse());
+        checkAgainstSequential(machine, 16);
+    }
+
+    @Test
+    void mappingMatchesEveryStartState()
+    {
+        CompiledAutomaton machine = TestMachines.random(50, "abc", 0.9, 1, 17).compile();
+        Random random = new Random(18);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            for (int length: LENGTHS)
+            {
+                String input = TestMachines.string(length, "abc", random);
+                for (int chunkSize: CHUNK_SIZES)
+                {
+                    int[] mapping = pool.invoke(new SpeculativeTask(machine, input, 0, length, chunkSize, false));
+                    for (int s = 0; s < machine.numberOfStates; s++)
+                    {
+                        assertEquals(run(machine, s, input), mapping[s], "start " + s + ", length " + length + ", chunk size " + chunkSize);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void fallsBackAboveMaxStates()
+    {
+        FiniteAutomataMachine machine = TestMachines.random(30, "abcd", 0.9, 1, 19);
+        Random random = new Random(20);
+        for (int i = 0; i < 200; i++)
+        {
+            String input = walk(machine.compile(), 1 + random.nextInt(500), random);
+            boolean expected = machine.accepts(input);
+            assertEquals(expected, machine.acceptsSpeculative(input, 4, 8, 29));
+            assertEquals(expected, machine.acceptsSpeculative(input, 4, 8, 0));
+            assertEquals(expected, machine.acceptsSpeculative(input, 1, 8, 30));
+        }
+    }
+
+    /** Runs walks, mutated walks and random strings at every length, parallelism and chunk size. */
+    private static void checkAgainstSequential(FiniteAutomataMachine machine, long seed)
+    {
+        CompiledAutomaton compiled = machine.compile();
+        Random random = new Random(seed);
+        int accepted = 0;
+        for (int length: LENGTHS)
+        {
+            List<String> inputs = new ArrayList<String>();
+            for (int i = 0; i < 4; i++)
+            {
+                String walk = walk(compiled, length, random);
+                inputs.add(walk);
+                if (length > 0)
+                {
+                    int position = random.nextInt(length); // Anywhere, often at a chunk or merge boundary for the short lengths
+                    char symbol = random.nextBoolean() ? 'z' + 1 : walk.charAt(random.nextInt(length)); // Unknown symbol or another symbol
+                    inputs.add(walk.substring(0, position) + symbol + walk.substring(position + 1));
+                }
+                inputs.add(TestMachines.string(length, "abcd", random));
+            }
+            for (String input: inputs)
+            {
+                boolean expected = machine.accepts(input);
+                accepted += expected ? 1 : 0;
+                for (int parallelism: PARALLELISM)
+                {
+                    for (int chunkSize: CHUNK_SIZES)
+                    {
+                        assertEquals(expected, machine.acceptsSpeculative(input, parallelism, chunkSize, Integer.MAX_VALUE),
+                                     "length " + length + ", parallelism " + parallelism + ", chunk size " + chunkSize);
+                    }
+                }
+            }
+        }
+        assertTrue(accepted > 0, "no accepted input, the check would be one-sided");
+    }
+
+    /** Builds a string by following random transitions from state 0, stopping early where there are none. */
+    private static String walk(CompiledAutomaton machine, int length, Random random)
+    {
+        StringBuilder input = new StringBuilder(length);
+        int state = 0;
+        while (input.length() < length)
+        {
+            int column = random.nextInt(machine.alphabetSize);
+            int next = machine.nextState(state, column);
+            for (int k = 1; next == CompiledAutomaton.NO_TRANSITION && k < machine.alphabetSize; k++)
+            {
+                column = (column + 1) % machine.alphabetSize;
+                next = machine.nextState(state, column);
+            }
+            if (next == CompiledAutomaton.NO_TRANSITION) // A state with no way out, the rest is random
+            {
+                input.append(TestMachines.string(length - input.length(), "abcd", random));
+                break;
+            }
+            input.append(machine.symbolMap.classFirst[column]);
+            state = next;
+        }
+        return input.toString();
+    }
+
+    /** Runs a string sequentially from a given state. */
+    private static int run(CompiledAutomaton machine, int state, String input)
+    {
+        for (int i = 0; i < input.length() && state != CompiledAutomaton.NO_TRANSITION; i++)
+        {
+            int column = machine.charColumns[input.charAt(i)];
+            state = column == -1 ? CompiledAutomaton.NO_TRANSITION : machine.nextState(state, column);
+        }
+        return state;
+    }
+}
@@ -0,0 +1,175 @@
+package universalfa;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+/** Checks that input is read by longest match against symbols longer than one character */
+class SymbolTest
+{
+    static final String EMOJI = "😀"; // A code point outside the BMP, two chars
+    static final String[] SYMBOLS = {"a", "b", "ab", "abb", "ba", "<EOF>", EMOJI};
+    static final String[] PIECES = {"a", "b", "ab", "abb", "ba", "<EOF>", "<EO", "<", "F>", EMOJI, "\uD83D", "c"}; // Prefixes and strays too
+
+    @Test
+    void matchesGreedyTokenizer()
+    {
+        for (long seed = 0; seed < 40; seed++)
+        {
+            FiniteAutomataMachine machine = TestMachines.random(1 + (int) (seed % 12), SYMBOLS, 0.8, 1, seed);
+            CompiledAutomaton compiled = machine.compile();
+            for (String input: TestMachines.strings(200, PIECES, 10, seed))
+            {
+                boolean expected = greedy(compiled, input);
+                assertEquals(expected, machine.accepts(input), "seed " + seed + ", " + input);
+                assertEquals(expected, compiled.accepts(input), "seed " + seed + ", " + input);
+                assertEquals(expected, compiled.evaluate(input) == EvaluationMetrics.result(EvaluationMetrics.ACCEPTED, input.length()), "seed " + seed + ", " + input);
+            }
+        }
+    }
+
+    @Test
+    void nondeterministicMatchesGreedyTokenizer()
+    {
+        for (long seed = 0; seed < 20; seed++)
+        {
+            FiniteAutomataMachine machine = TestMachines.random(2 + (int) (seed % 6), SYMBOLS, 0.7, 2, seed);
+            CompiledAutomaton compiled = machine.compile();
+            for (String input: TestMachines.strings(200, PIECES, 10, seed))
+            {
+                assertEquals(greedy(compiled, input), machine.accepts(input), "seed " + seed + ", " + input);
+            }
+        }
+    }
+
+    /** Pieces fed to a run split the input anywhere, also inside a longer symbol or a surrogate pair */
+    @Test
+    void runsSplitInsideSymbols()
+    {
+        for (long seed = 0; seed < 20; seed++)
+        {
+            Random random = new Random(seed);
+            FiniteAutomataMachine machine = TestMachines.random(1 + (int) (seed % 8), SYMBOLS, 0.8, 1 + (int) (seed % 2), seed);
+            CompiledAutomaton compiled = machine.compile();
+            for (String input: TestMachines.strings(100, PIECES, 10, seed))
+            {
+                boolean expected = greedy(compiled, input);
+                AutomatonRun run = machine.newRun();
+                int position = 0;
+                while (position < input.length())
+                {
+                    int end = position + 1 + random.nextInt(input.length() - position);
+                    if (!run.feed(input.subSequence(position, end)))
+                    {
+                        break;
+                    }
+                    position = end;
+                }
+                assertEquals(expected, run.finish(), "seed " + seed + ", " + input);
+            }
+        }
+    }
+
+    @Test
+    void longestMatchWins()
+    {
+        Alphabet alpha = new Alphabet(3);
+        alpha.addSymbol("a");
+        alpha.addSymbol("ab");
+        alpha.addSymbol("b");
+        States sta = new States(3);
+        sta.setFinalState(1);
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        machine.addTransition("0", "ab", "1");
+        machine.addTransition("0", "a", "2");
+        machine.addTransition("2", "b", "2");
+        assertTrue(machine.accepts("ab")); // Not a then b
+        assertFalse(machine.accepts("a"));
+        AutomatonRun run = machine.newRun();
+        run.feed('a');
+        run.feed('b');
+        assertTrue(run.finish());
+    }
+
+    /** A leading separator on the alphabet line used to become an empty symbol that crashed the tokenizer */
+    @Test
+    void leadingSpaceInAlphabetLine()
+    {
+        String output = runCli("1\n0\n a, b\n0 a 0\naa\n.....\n");
+        assertTrue(output.contains("aa\t\t\tAccept"), output);
+    }
+
+    /** Runs the interactive CLI on a script of input lines.
+        @return  What it printed. */
+    private static String runCli(String script)
+    {
+        InputStream in = System.in;
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        try
+        {
+            System.setIn(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)));
+            System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+            UniversalFA.main(new String[0]);
+        }
+        finally
+        {
+            System.setIn(in);
+            System.setOut(out);
+        }
+        return printed.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Reference run: at each position takes the longest alphabet symbol the input starts with, then steps the table. */
+    private static boolean greedy(CompiledAutomaton machine, String input)
+    {
+        SymbolMap map = machine.symbolMap;
+        int state = 0;
+        for (int i = 0; i < input.length(); )
+        {
+            String longest = null;
+            for (int column = 0; column < map.size(); column++)
+            {
+                for (String symbol: symbolsOf(map, column))
+                {
+                    if (input.startsWith(symbol, i) && (longest == null || symbol.length() > longest.length()))
+                    {
+                        longest = symbol;
+                    }
+                }
+            }
+            if (longest == null)
+            {
+                return false;
+            }
+            state = machine.nextState(state, map.indexOf(longest));
+            if (state == CompiledAutomaton.NO_TRANSITION)
+            {
+                return false;
+            }
+            i += longest.length();
+        }
+        return machine.isFinal(state);
+    }
+
+    /** Lists the symbols of a column, each character of a class on its own. */
+    private static List<String> symbolsOf(SymbolMap map, int column)
+    {
+        if (column >= map.numberOfClasses)
+        {
+            return Collections.singletonList(map.longSymbols[column - map.numberOfClasses]);
+        }
+        List<String> symbols = new ArrayList<String>();
+        for (int c = map.classFirst[column]; c <= map.classLast[column]; c++)
+        {
+            symbols.add(Character.toString((char) c));
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,121 @@
+package universalfa;
+
+import java.util.*;
+
+/** Random machines and inputs for the tests */
+class TestMachines
+{
+    /** Builds an FA with a random destination on each symbol of each state.
+        @param numberOfStates  Number of states.
+        @param symbols  The alphabet, one character per symbol.
+        @param fill  Share of the cells that get a transition.
+        @param targets  Destinations per filled cell, more than 1 makes the FA nondeterministic.
+        @param seed  Seed of the random source.
+        @return  The FA. */
+    static FiniteAutomataMachine random(int numberOfStates, String symbols, double fill, int targets, long seed)
+    {
+        return random(numberOfStates, characters(symbols), fill, targets, seed);
+    }
+
+    /** Builds an FA with a random destination on each symbol of each state, symbols may be longer than one character.
+        @param numberOfStates  Number of states.
+        @param symbols  The alphabet.
+        @param fill  Share of the cells that get a transition.
+        @param targets  Destinations per filled cell, more than 1 makes the FA nondeterministic.
+        @param seed  Seed of the random source.
+        @return  The FA. */
+    static FiniteAutomataMachine random(int numberOfStates, String[] symbols, double fill, int targets, long seed)
+    {
+        Random random = new Random(seed);
+        Alphabet alpha = new Alphabet(symbols.length);
+        for (String symbol: symbols)
+        {
+            alpha.addSymbol(symbol);
+        }
+        States sta = new States(numberOfStates);
+        for (int i = 0; i < numberOfStates; i++)
+        {
+            if (random.nextInt(3) == 0)
+            {
+                sta.setFinalState(i);
+            }
+        }
+        FiniteAutomataMachine machine = new FiniteAutomataMachine(alpha, sta);
+        for (int state = 0; state < numberOfStates; state++)
+        {
+            for (String symbol: symbols)
+            {
+                if (random.nextDouble() >= fill)
+                {
+                    continue;
+                }
+                for (int k = 0; k < targets; k++)
+                {
+                    machine.addTransition(Integer.toString(state), symbol, Integer.toString(random.nextInt(numberOfStates)));
+                }
+            }
+        }
+        return machine;
+    }
+
+    /** Builds random strings.
+        @param count  Number of strings.
+        @param symbols  Characters to draw from.
+        @param maxLength  Strings are shorter than this.
+        @param seed  Seed of the random source.
+        @return  The strings. */
+    static List<String> strings(int count, String symbols, int maxLength, long seed)
+    {
+        Random random = new Random(seed);
+        List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+        {
+            strings.add(string(random.nextInt(maxLength), symbols, random));
+        }
+        return strings;
+    }
+
+    /** Builds one random string. */
+    static String string(int length, String symbols, Random random)
+    {
+        StringBuilder string = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            string.append(symbols.charAt(random.nextInt(symbols.length())));
+        }
+        return string.toString();
+    }
+
+    /** Builds random strings out of pieces, so longer symbols and their prefixes show up whole.
+        @param count  Number of strings.
+        @param pieces  Strings to draw from.
+        @param maxPieces  Strings have fewer pieces than this.
+        @param seed  Seed of the random source.
+        @return  The strings. */
+    static List<String> strings(int count, String[] pieces, int maxPieces, long seed)
+    {
+        Random random = new Random(seed);
+        List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+        {
+            StringBuilder string = new StringBuilder();
+            for (int length = random.nextInt(maxPieces); length > 0; length--)
+            {
+                string.append(pieces[random.nextInt(pieces.length)]);
+            }
+            strings.add(string.toString());
+        }
+        return strings;
+    }
+
+    /** Splits a string into its characters. */
+    static String[] characters(String symbols)
+    {
+        String[] characters = new String[symbols.length()];
+        for (int i = 0; i < symbols.length(); i++)
+        {
+            characters[i] = Character.toString(symbols.charAt(i));
+        }
+        return characters;
+    }
+}